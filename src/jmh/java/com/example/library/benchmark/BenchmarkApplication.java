@@ -0,0 +1,122 @@
+package com.example.library.benchmark;
+
+import com.example.library.LibraryApiApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Boots the application without a web server against a private in-memory H2 database,
+ * and seeds it with a synthetic dataset through plain JDBC batches.
+ */
+final class BenchmarkApplication {
+    // Matches the allocationSize of the entity sequence generators
+    private static final int SEQUENCE_ALLOCATION = 50;
+    private static final int SEED_BATCH = 10_000;
+
+    // The schema comes from the Flyway migrations, as in production
+    private static final String[] ARGS = {
+            "--spring.profiles.active=benchmark",
+            "--spring.datasource.url=jdbc:h2:mem:benchmark;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+            "--spring.datasource.username=sa",
+            "--spring.datasource.password=",
+            "--spring.jpa.hibernate.ddl-auto=none",
+            "--spring.jpa.show-sql=false",
+            "--spring.jpa.properties.hibernate.format_sql=false",
+            "--library.search.rebuild-interval=PT24H",
+            "--logging.level.root=WARN"};
+
+    private BenchmarkApplication() {
+    }
+
+    static ConfigurableApplicationContext start() {
+        return new SpringApplicationBuilder(LibraryApiApplication.class)
+                .main(LibraryApiApplication.class) // Not deducible on a JMH thread; AOT needs it
+                .web(WebApplicationType.NONE)
+                .logStartupInfo(false)
+                .run(ARGS);
+    }
+
+    /**
+     * Boots the whole application, web server included, on a random port, as it starts in production.
+     *
+     * @param overrides Further {@code --name=value} properties; they replace defaults of the same name
+     */
+    static ConfigurableApplicationContext startServer(String... overrides) {
+        List<String> args = new ArrayList<>();
+        for (String arg : concat(ARGS, "--server.port=0")) {
+            String name = arg.substring(0, arg.indexOf('=') + 1);
+            if (Arrays.stream(overrides).noneMatch(override -> override.startsWith(name))) {
+                args.add(arg);
+            }
+        }
+        args.addAll(Arrays.asList(overrides));
+        return new SpringApplicationBuilder(LibraryApiApplication.class)
+                .main(LibraryApiApplication.class)
+                .logStartupInfo(false)
+                .run(args.toArray(String[]::new));
+    }
+
+    /**
+     * Inserts {@code books} available books, {@code borrowers} borrowers and {@code history} returned
+     * loans spread randomly over them, then moves the ID sequences past the seeded rows.
+     * IDs start at 1, so book IDs are 1..books and borrower IDs are 1..borrowers.
+     */
+    static void seed(ConfigurableApplicationContext context, int books, int borrowers, int history) {
+        JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+        Random random = new Random(42);
+
+        Timestamp seeded = Timestamp.from(Instant.now());
+        insertInBatches(jdbc, "insert into book (id, isbn, title, author, is_borrowed, updated_at) values (?, ?, ?, ?, false, ?)",
+                books, i -> new Object[]{i, String.format("978%010d", i), "Title " + i, "Author " + (i % 1000), seeded});
+        insertInBatches(jdbc, "insert into borrower (id, name, email) values (?, ?, ?)",
+                borrowers, i -> new Object[]{i, "Borrower " + i, "borrower" + i + "@example.com"});
+
+        LocalDate today = LocalDate.now();
+        insertInBatches(jdbc, "insert into borrowing_record (id, book_id, borrower_id, borrow_date, return_date) values (?, ?, ?, ?, ?)",
+                history, i -> {
+                    LocalDate borrowed = today.minusDays(30 + random.nextInt(3650));
+                    return new Object[]{i, 1 + random.nextInt(books), 1 + random.nextInt(borrowers),
+                            Date.valueOf(borrowed), Date.valueOf(borrowed.plusDays(1 + random.nextInt(28)))};
+                });
+
+        jdbc.execute("alter sequence book_seq restart with " + (books + SEQUENCE_ALLOCATION));
+        jdbc.execute("alter sequence borrower_seq restart with " + (borrowers + SEQUENCE_ALLOCATION));
+        jdbc.execute("alter sequence borrowing_record_seq restart with " + (history + SEQUENCE_ALLOCATION));
+    }
+
+    private static void insertInBatches(JdbcTemplate jdbc, String sql, int rows, RowFactory factory) {
+        List<Object[]> batch = new ArrayList<>(SEED_BATCH);
+        for (long i = 1; i <= rows; i++) {
+            batch.add(factory.row(i));
+            if (batch.size() == SEED_BATCH) {
+                jdbc.batchUpdate(sql, batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            jdbc.batchUpdate(sql, batch);
+        }
+    }
+
+    private static String[] concat(String[] args, String... more) {
+        String[] all = Arrays.copyOf(args, args.length + more.length);
+        System.arraycopy(more, 0, all, args.length, more.length);
+        return all;
+    }
+
+    @FunctionalInterface
+    private interface RowFactory {
+        Object[] row(long index);
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.library.benchmark;
+
+import com.example.library.event.BooksRegisteredEvent;
+import com.example.library.model.Book;
+import com.example.library.search.BookSearchIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency distribution of BookSearchIndex queries over a large in-memory index, without Spring or a
+ * database. Sampled, so JMH reports percentiles; p0.99 is the figure to watch for broad queries.
+ * <p>
+ * Titles are drawn from a small vocabulary plus a numbered volume, so common words match a large
+ * share of the catalogue and prefixes such as {@code vo} expand to more terms than the cap, e.g.
+ * {@code -Dbenchmark.args="BookSearch -p query=vo"}. The default 2M books need a few GB of heap.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class BookSearchBenchmark {
+    private static final String[] WORDS = {
+            "clean", "code", "design", "patterns", "domain", "driven", "refactoring", "java", "concurrency",
+            "practice", "effective", "modern", "systems", "distributed", "data", "intensive", "applications",
+            "algorithms", "structures", "programming", "pragmatic", "programmer", "software", "architecture",
+            "microservices", "testing", "continuous", "delivery", "release", "engineering", "reliable", "scalable"};
+    private static final String[] FIRST_NAMES = {
+            "Robert", "Martin", "Eric", "Chris", "Brian", "Joshua", "Alan", "Kent", "Rebecca", "Grace",
+            "Barbara", "Donald", "Margaret", "Edsger", "Leslie", "Niklaus"};
+    private static final int LAST_NAMES = 5000;
+    private static final int VOLUMES = 1000;
+    private static final int CHUNK_SIZE = 10_000;
+
+    @Param("2000000")
+    int bookCount;
+    @Param({"clean", "clean code", "vo", "978000"})
+    String query;
+    @Param("0")
+    int offset;
+    @Param("20")
+    int limit;
+
+    private BookSearchIndex index;
+
+    @Setup(Level.Trial)
+    public void index() {
+        index = new BookSearchIndex();
+        List<Book> chunk = new ArrayList<>(CHUNK_SIZE);
+        for (long id = 1; id <= bookCount; id++) {
+            String title = WORDS[(int) (id % WORDS.length)] + ' ' + WORDS[(int) (id / 7 % WORDS.length)]
+                    + " vol" + id % VOLUMES;
+            String author = FIRST_NAMES[(int) (id % FIRST_NAMES.length)] + " Author" + id % LAST_NAMES;
+            chunk.add(new Book(id, String.format("978%010d", id), title, author, false, null));
+            if (chunk.size() == CHUNK_SIZE) {
+                index.onBooksRegistered(new BooksRegisteredEvent(chunk));
+                chunk = new ArrayList<>(CHUNK_SIZE);
+            }
+        }
+        index.onBooksRegistered(new BooksRegisteredEvent(chunk));
+    }
+
+    @Benchmark
+    public BookSearchIndex.Hits search() {
+        return index.search(query, offset, limit);
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.library.benchmark;
+
+import com.example.library.dto.BookPage;
+import com.example.library.model.Book;
+import com.example.library.service.LibraryService;
+import com.example.library.service.impl.LibraryServiceImpl;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latency of the LibraryService hot paths against a seeded in-memory database.
+ * <p>
+ * {@code historySize} controls how many returned loans exist. returnBook must stay flat as it
+ * grows, e.g. {@code -p historySize=10000,1000000,10000000} (the largest needs a few GB of heap).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class LibraryServiceBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Library {
+        @Param("10000")
+        int catalogueSize;
+        @Param("1000")
+        int borrowerCount;
+        @Param("10000")
+        int historySize;
+
+        ConfigurableApplicationContext context;
+        LibraryService libraryService;
+        private final AtomicLong nextBook = new AtomicLong();
+        private final AtomicLong nextIsbn = new AtomicLong();
+
+        @Setup(Level.Trial)
+        public void start() {
+            context = BenchmarkApplication.start();
+            BenchmarkApplication.seed(context, catalogueSize, borrowerCount, historySize);
+            libraryService = context.getBean(LibraryService.class);
+        }
+
+        @TearDown(Level.Trial)
+        public void stop() {
+            context.close();
+        }
+
+        long nextBookId() {
+            return 1 + nextBook.getAndIncrement() % catalogueSize;
+        }
+
+        long randomBorrowerId() {
+            return 1 + ThreadLocalRandom.current().nextInt(borrowerCount);
+        }
+
+        String nextIsbn() {
+            return String.format("979%010d", nextIsbn.incrementAndGet());
+        }
+    }
+
+    /**
+     * An available book, returned again after each invocation so the catalogue never runs out.
+     */
+    @State(Scope.Thread)
+    public static class AvailableBook {
+        long bookId;
+        long borrowerId;
+
+        @Setup(Level.Invocation)
+        public void pick(Library library) {
+            bookId = library.nextBookId();
+            borrowerId = library.randomBorrowerId();
+        }
+
+        @TearDown(Level.Invocation)
+        public void release(Library library) {
+            library.libraryService.returnBook(borrowerId, bookId);
+        }
+    }
+
+    /**
+     * A book borrowed just before each invocation.
+     */
+    @State(Scope.Thread)
+    public static class BorrowedBook {
+        long bookId;
+        long borrowerId;
+
+        @Setup(Level.Invocation)
+        public void borrow(Library library) {
+            bookId = library.nextBookId();
+            borrowerId = library.randomBorrowerId();
+            library.libraryService.borrowBook(borrowerId, bookId);
+        }
+    }
+
+    @Benchmark
+    public String borrowBook(Library library, AvailableBook book) {
+        return library.libraryService.borrowBook(book.borrowerId, book.bookId);
+    }
+
+    @Benchmark
+    public String returnBook(Library library, BorrowedBook book) {
+        return library.libraryService.returnBook(book.borrowerId, book.bookId);
+    }
+
+    @Benchmark
+    public BookPage getBooks(Library library) {
+        long after = ThreadLocalRandom.current().nextLong(library.catalogueSize);
+        return library.libraryService.getBooks(LibraryServiceImpl.encodeCursor(after), 50);
+    }
+
+    @Benchmark
+    public Book registerBook(Library library) {
+        return library.libraryService.registerBook(new Book(null, library.nextIsbn(), "New Title", "New Author", false, null));
+    }
+}
@@ -0,0 +1,409 @@
+package com.example.library.benchmark;
+
+import com.example.library.availability.AvailabilityCounters;
+import com.example.library.dedup.BorrowerEmails;
+import com.example.library.search.BookSearchIndex;
+import com.example.library.service.impl.LibraryServiceImpl;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * Closed-loop load test of the REST API over real HTTP, JSON and SQL.
+ * <p>
+ * Boots the whole application against an in-memory H2 database seeded by
+ * {@link BenchmarkApplication#seed}, then runs {@code users} simulated clients. Each client sends a
+ * weighted mix of browse, search, borrow, return and register requests back to back, for
+ * {@code warmup} and then {@code duration}. Only requests started after the warmup are counted. The
+ * dataset and each client's sequence of requests come from {@code seed}, so runs on the same machine
+ * are comparable.
+ * <p>
+ * Prints throughput, p50/p95/p99/max latency and error rates per operation, and writes them to
+ * {@code result}. If {@code baseline} exists the run is compared with it and the process exits with 1
+ * on a regression beyond {@code tolerance}. {@code --save-baseline} makes this run the new baseline.
+ * Options are {@code --name=value}; those starting with {@code --spring.}, {@code --server.} or
+ * {@code --library.} go to the application, e.g. {@code --spring.threads.virtual.enabled=true}.
+ * Rate limiting is off, because every client has the same address.
+ */
+public final class LoadTest {
+    // Latency changes smaller than this are noise at any percentile
+    private static final double LATENCY_NOISE_FLOOR_MILLIS = 1.0;
+    // Error rates may rise by this much (0.1 percentage points) before it counts as a regression
+    private static final double ERROR_RATE_NOISE_FLOOR = 0.001;
+
+    enum Operation {
+        BROWSE, SEARCH, BORROW, RETURN, REGISTER
+    }
+
+    record Options(int books, int borrowers, int history, int users, Duration warmup, Duration duration,
+                   long seed, Map<Operation, Integer> mix, double tolerance, Path result, Path baseline,
+                   boolean saveBaseline, List<String> applicationArgs) {
+    }
+
+    record OperationResult(long requests, long errors, long conflicts, double throughput, double errorRate,
+                           double p50Millis, double p95Millis, double p99Millis, double maxMillis) {
+    }
+
+    record Result(Instant finishedAt, Map<String, String> setup, Map<Operation, OperationResult> operations,
+                  OperationResult total) {
+    }
+
+    private static final ObjectMapper JSON = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .enable(SerializationFeature.INDENT_OUTPUT);
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = parse(args);
+        List<String> applicationArgs = new ArrayList<>(options.applicationArgs());
+        applicationArgs.add("--library.rate-limit.enabled=false");
+
+        Result result;
+        try (ConfigurableApplicationContext context = BenchmarkApplication.startServer(applicationArgs.toArray(String[]::new))) {
+            BenchmarkApplication.seed(context, options.books(), options.borrowers(), options.history());
+            // The in-memory structures were loaded from the empty database on startup
+            context.getBean(BookSearchIndex.class).rebuild();
+            context.getBean(AvailabilityCounters.class).reconcile();
+            context.getBean(BorrowerEmails.class).rebuild();
+
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            result = run(options, "http://localhost:" + port + "/api");
+        }
+
+        print(result);
+        Files.createDirectories(options.result().toAbsolutePath().getParent());
+        JSON.writeValue(options.result().toFile(), result);
+        System.out.println("Results written to " + options.result());
+
+        List<String> regressions = List.of();
+        if (Files.exists(options.baseline())) {
+            Result baseline = JSON.readValue(options.baseline().toFile(), Result.class);
+            regressions = compare(baseline, result, options.tolerance());
+        } else if (!options.saveBaseline()) {
+            System.out.println("No baseline at " + options.baseline() + "; run with --save-baseline to record one");
+        }
+        if (options.saveBaseline()) {
+            JSON.writeValue(options.baseline().toFile(), result);
+            System.out.println("Baseline saved to " + options.baseline());
+        }
+        System.exit(regressions.isEmpty() || options.saveBaseline() ? 0 : 1);
+    }
+
+    private static Result run(Options options, String baseUrl) throws InterruptedException {
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        long start = System.nanoTime() + Duration.ofMillis(100).toNanos();
+        long measureFrom = start + options.warmup().toNanos();
+        long end = measureFrom + options.duration().toNanos();
+
+        List<User> users = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch(options.users());
+        for (int i = 0; i < options.users(); i++) {
+            User user = new User(i, options, client, baseUrl, measureFrom, end);
+            users.add(user);
+            Thread.ofPlatform().name("loadtest-user-" + i).start(() -> {
+                try {
+                    user.run(start);
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+
+        double seconds = options.duration().toNanos() / 1e9;
+        Map<Operation, OperationResult> operations = new EnumMap<>(Operation.class);
+        LongStream.Builder all = LongStream.builder();
+        long errors = 0;
+        long conflicts = 0;
+        for (Operation operation : Operation.values()) {
+            LongStream.Builder latencies = LongStream.builder();
+            long operationErrors = 0;
+            long operationConflicts = 0;
+            for (User user : users) {
+                user.latencies.get(operation).build().forEach(latency -> {
+                    latencies.add(latency);
+                    all.add(latency);
+                });
+                operationErrors += user.errors.get(operation);
+                operationConflicts += user.conflicts.get(operation);
+            }
+            operations.put(operation, summarize(latencies.build().toArray(), operationErrors, operationConflicts, seconds));
+            errors += operationErrors;
+            conflicts += operationConflicts;
+        }
+
+        // Everything that makes two runs comparable
+        Map<String, String> setup = new LinkedHashMap<>();
+        setup.put("books", String.valueOf(options.books()));
+        setup.put("borrowers", String.valueOf(options.borrowers()));
+        setup.put("history", String.valueOf(options.history()));
+        setup.put("users", String.valueOf(options.users()));
+        setup.put("warmup", options.warmup().toString());
+        setup.put("duration", options.duration().toString());
+        setup.put("seed", String.valueOf(options.seed()));
+        setup.put("mix", options.mix().toString());
+        setup.put("applicationArgs", String.join(" ", options.applicationArgs()));
+        setup.put("processors", String.valueOf(Runtime.getRuntime().availableProcessors()));
+        setup.put("java", System.getProperty("java.version"));
+        return new Result(Instant.now(), setup, operations, summarize(all.build().toArray(), errors, conflicts, seconds));
+    }
+
+    /**
+     * One simulated client. It only returns books it borrowed itself, so returns normally succeed;
+     * with nothing to return it borrows instead.
+     */
+    private static class User {
+        final Map<Operation, LongStream.Builder> latencies = new EnumMap<>(Operation.class);
+        final Map<Operation, Long> errors = new EnumMap<>(Operation.class);
+        final Map<Operation, Long> conflicts = new EnumMap<>(Operation.class);
+
+        private final int index;
+        private final Options options;
+        private final HttpClient client;
+        private final String baseUrl;
+        private final long measureFrom;
+        private final long end;
+        private final Random random;
+        private final Operation[] weighted;
+        // Book and borrower IDs of the loans this client holds, and of its last borrow request
+        private final List<long[]> loans = new ArrayList<>();
+        private long[] borrowed;
+        private int registered;
+
+        User(int index, Options options, HttpClient client, String baseUrl, long measureFrom, long end) {
+            this.index = index;
+            this.options = options;
+            this.client = client;
+            this.baseUrl = baseUrl;
+            this.measureFrom = measureFrom;
+            this.end = end;
+            this.random = new Random(options.seed() + index);
+            this.weighted = options.mix().entrySet().stream()
+                    .flatMap(entry -> Stream.generate(entry::getKey).limit(entry.getValue()))
+                    .toArray(Operation[]::new);
+            for (Operation operation : Operation.values()) {
+                latencies.put(operation, LongStream.builder());
+                errors.put(operation, 0L);
+                conflicts.put(operation, 0L);
+            }
+        }
+
+        void run(long start) {
+            LockSupport.parkNanos(start - System.nanoTime());
+            long now;
+            while ((now = System.nanoTime()) < end) {
+                Operation operation = weighted[random.nextInt(weighted.length)];
+                if (operation == Operation.RETURN && loans.isEmpty()) {
+                    operation = Operation.BORROW;
+                }
+                long[] loan = operation == Operation.RETURN ? loans.remove(random.nextInt(loans.size())) : null;
+                HttpRequest request = request(operation, loan);
+
+                int status;
+                try {
+                    status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                } catch (IOException e) {
+                    status = -1;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                long latency = System.nanoTime() - now;
+
+                if (operation == Operation.BORROW && status == 200) {
+                    loans.add(borrowed);
+                }
+                if (now < measureFrom) {
+                    continue;
+                }
+                if (status >= 200 && status < 300) {
+                    latencies.get(operation).add(latency);
+                } else if (status == 409 && operation == Operation.BORROW) {
+                    // Another client has the book; a normal outcome, not an error
+                    latencies.get(operation).add(latency);
+                    conflicts.merge(operation, 1L, Long::sum);
+                } else {
+                    errors.merge(operation, 1L, Long::sum);
+                }
+            }
+        }
+
+        private HttpRequest request(Operation operation, long[] loan) {
+            return switch (operation) {
+                case BROWSE -> get("/books?size=50&cursor="
+                        + LibraryServiceImpl.encodeCursor((long) random.nextInt(options.books())));
+                case SEARCH -> get("/books/search?q=" + (1 + random.nextInt(options.books())));
+                case BORROW -> {
+                    borrowed = new long[]{1 + random.nextInt(options.books()), 1 + random.nextInt(options.borrowers())};
+                    yield post("/borrowers/" + borrowed[1] + "/books/" + borrowed[0] + "/borrow", "");
+                }
+                case RETURN -> post("/borrowers/" + loan[1] + "/return/" + loan[0], "");
+                case REGISTER -> post("/borrowers", String.format(
+                        "{\"name\":\"Load Test %d\",\"email\":\"user%d-%d@loadtest.example.com\"}",
+                        index, index, ++registered));
+            };
+        }
+
+        private HttpRequest get(String path) {
+            return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                    .header("Accept", "application/json")
+                    .build();
+        }
+
+        private HttpRequest post(String path, String body) {
+            return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+        }
+    }
+
+    private static OperationResult summarize(long[] latencies, long errors, long conflicts, double seconds) {
+        Arrays.sort(latencies);
+        long requests = latencies.length + errors;
+        return new OperationResult(requests, errors, conflicts, requests / seconds,
+                requests == 0 ? 0 : (double) errors / requests,
+                percentile(latencies, 0.50), percentile(latencies, 0.95), percentile(latencies, 0.99),
+                latencies.length == 0 ? 0 : latencies[latencies.length - 1] / 1e6);
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, rank)] / 1e6;
+    }
+
+    /**
+     * Lists where the run is worse than the baseline: lower throughput, higher p95 or p99 latency, or a
+     * higher error rate, each beyond the tolerance and noise floor.
+     */
+    static List<String> compare(Result baseline, Result current, double tolerance) {
+        if (!baseline.setup().equals(current.setup())) {
+            System.out.println("WARNING: baseline setup differs: " + baseline.setup());
+        }
+        List<String> regressions = new ArrayList<>();
+        Map<String, OperationResult[]> pairs = new LinkedHashMap<>();
+        baseline.operations().forEach((operation, before) -> {
+            OperationResult after = current.operations().get(operation);
+            if (after != null && before.requests() > 0) {
+                pairs.put(operation.name().toLowerCase(Locale.ROOT), new OperationResult[]{before, after});
+            }
+        });
+        pairs.put("total", new OperationResult[]{baseline.total(), current.total()});
+
+        pairs.forEach((name, pair) -> {
+            OperationResult before = pair[0];
+            OperationResult after = pair[1];
+            if (after.throughput() < before.throughput() * (1 - tolerance)) {
+                regressions.add(String.format(Locale.ROOT, "%s throughput %.1f/s vs %.1f/s", name,
+                        after.throughput(), before.throughput()));
+            }
+            checkLatency(regressions, name, "p95", before.p95Millis(), after.p95Millis(), tolerance);
+            checkLatency(regressions, name, "p99", before.p99Millis(), after.p99Millis(), tolerance);
+            if (after.errorRate() > before.errorRate() + ERROR_RATE_NOISE_FLOOR) {
+                regressions.add(String.format(Locale.ROOT, "%s error rate %.2f%% vs %.2f%%", name,
+                        100 * after.errorRate(), 100 * before.errorRate()));
+            }
+        });
+
+        if (regressions.isEmpty()) {
+            System.out.printf(Locale.ROOT, "No regressions against the baseline of %s (tolerance %.0f%%)%n",
+                    baseline.finishedAt(), 100 * tolerance);
+        }
+        regressions.forEach(regression -> System.out.println("REGRESSION " + regression));
+        return regressions;
+    }
+
+    private static void checkLatency(List<String> regressions, String name, String percentile,
+                                     double before, double after, double tolerance) {
+        if (after > before * (1 + tolerance) && after - before > LATENCY_NOISE_FLOOR_MILLIS) {
+            regressions.add(String.format(Locale.ROOT, "%s %s %.2f ms vs %.2f ms", name, percentile, after, before));
+        }
+    }
+
+    private static void print(Result result) {
+        System.out.printf("%n%-10s %9s %9s %9s %9s %9s %9s %8s %9s%n",
+                "operation", "requests", "req/s", "p50 ms", "p95 ms", "p99 ms", "max ms", "errors", "conflicts");
+        result.operations().forEach((operation, row) -> print(operation.name().toLowerCase(Locale.ROOT), row));
+        print("total", result.total());
+        System.out.println();
+    }
+
+    private static void print(String name, OperationResult row) {
+        System.out.printf(Locale.ROOT, "%-10s %9d %9.1f %9.2f %9.2f %9.2f %9.2f %7.2f%% %9d%n", name,
+                row.requests(), row.throughput(), row.p50Millis(), row.p95Millis(), row.p99Millis(),
+                row.maxMillis(), 100 * row.errorRate(), row.conflicts());
+    }
+
+    static Options parse(String[] args) {
+        Map<String, String> values = new LinkedHashMap<>();
+        List<String> applicationArgs = new ArrayList<>();
+        boolean saveBaseline = false;
+        for (String arg : args) {
+            if (arg.startsWith("--spring.") || arg.startsWith("--server.") || arg.startsWith("--library.")) {
+                applicationArgs.add(arg);
+            } else if (arg.equals("--save-baseline")) {
+                saveBaseline = true;
+            } else if (arg.startsWith("--") && arg.contains("=")) {
+                values.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            } else {
+                throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+
+        Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+        for (String weight : values.getOrDefault("mix", "browse:50,search:10,borrow:15,return:15,register:10").split(",")) {
+            String[] parts = weight.split(":");
+            mix.put(Operation.valueOf(parts[0].trim().toUpperCase(Locale.ROOT)), Integer.parseInt(parts[1].trim()));
+        }
+        Options options = new Options(
+                Integer.parseInt(values.getOrDefault("books", "10000")),
+                Integer.parseInt(values.getOrDefault("borrowers", "1000")),
+                Integer.parseInt(values.getOrDefault("history", "100000")),
+                Integer.parseInt(values.getOrDefault("users", "16")),
+                Duration.parse(values.getOrDefault("warmup", "PT15S")),
+                Duration.parse(values.getOrDefault("duration", "PT60S")),
+                Long.parseLong(values.getOrDefault("seed", "42")),
+                mix,
+                Double.parseDouble(values.getOrDefault("tolerance", "0.10")),
+                Path.of(values.getOrDefault("result", "target/loadtest-result.json")),
+                Path.of(values.getOrDefault("baseline", "loadtest-baseline.json")),
+                saveBaseline,
+                applicationArgs);
+        values.keySet().removeAll(List.of("books", "borrowers", "history", "users", "warmup", "duration", "seed",
+                "mix", "tolerance", "result", "baseline"));
+        if (!values.isEmpty()) {
+            throw new IllegalArgumentException("Unknown options: " + values.keySet());
+        }
+        return options;
+    }
+}
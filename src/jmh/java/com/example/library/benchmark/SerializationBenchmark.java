@@ -0,0 +1,57 @@
+package com.example.library.benchmark;
+
+import com.example.library.dto.BookPage;
+import com.example.library.model.Book;
+import com.example.library.model.Borrower;
+import com.example.library.model.BorrowingRecord;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+/**
+ * Cost of turning responses into JSON, with the same ObjectMapper defaults Spring MVC uses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+    private ObjectMapper objectMapper;
+    private Book book;
+    private BorrowingRecord record;
+    private BookPage page;
+
+    @Setup
+    public void setup() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        book = new Book(1L, "9780132350884", "Clean Code", "Robert C. Martin", false, null);
+        Borrower borrower = new Borrower(1L, "Alice Johnson", "alice@example.com");
+        record = new BorrowingRecord(1L, borrower, book, LocalDate.of(2024, 1, 2), LocalDate.of(2024, 1, 16), LocalDate.of(2024, 1, 15));
+        page = new BookPage(LongStream.rangeClosed(1, 50)
+                .mapToObj(id -> new Book(id, "9780132350884", "Title " + id, "Author " + id, id % 3 == 0, null))
+                .toList(), "Ym9vazo1MA");
+    }
+
+    @Benchmark
+    public byte[] book() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(book);
+    }
+
+    @Benchmark
+    public byte[] borrowingRecord() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(record);
+    }
+
+    @Benchmark
+    public byte[] bookPage() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(page);
+    }
+}
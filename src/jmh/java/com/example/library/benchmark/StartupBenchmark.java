@@ -0,0 +1,48 @@
+package com.example.library.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to first request: from the start of {@code main} until the first catalogue page has been
+ * served, in a fresh JVM each time, so class loading and context refresh are measured cold. JVM
+ * boot itself comes before the measurement and is not included.
+ * <p>
+ * Compare startup options by passing JVM flags to the forks, e.g.
+ * {@code -jvmArgsAppend -Dspring.aot.enabled=true} after building with {@code -Paot}, or a CDS
+ * archive as described in the README.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+@State(Scope.Benchmark)
+public class StartupBenchmark {
+    private ConfigurableApplicationContext context;
+
+    @Benchmark
+    public int firstRequest() throws Exception {
+        context = BenchmarkApplication.startServer();
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        HttpResponse<Void> response = HttpClient.newHttpClient().send(
+                HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/books?size=1")).build(),
+                HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("First request failed with " + response.statusCode());
+        }
+        return response.statusCode();
+    }
+
+    @TearDown(Level.Iteration)
+    public void stop() {
+        context.close();
+    }
+}
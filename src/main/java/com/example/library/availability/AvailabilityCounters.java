@@ -0,0 +1,161 @@
+package com.example.library.availability;
+
+import com.example.library.dto.Availability;
+import com.example.library.event.BooksRegisteredEvent;
+import com.example.library.event.LoansChangedEvent;
+import com.example.library.model.Book;
+import com.example.library.repository.BookRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Copies owned and on loan per ISBN, kept in memory so availability is answered without touching
+ * the book table.
+ * <p>
+ * Counters move as registrations, borrows and returns commit. They are recomputed from the database
+ * with one grouped query on startup and every {@code library.availability.reconcile-interval}, which
+ * corrects any drift (e.g. changes made on other nodes or directly in the database). Every change is
+ * numbered, and the reconciliation notes the last number before it queries. A counter changed after
+ * that may or may not be in the query's result, so it keeps its live value and is corrected the next
+ * time; the others are set to the database counts.
+ */
+@Slf4j
+@Component
+public class AvailabilityCounters {
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    private final Map<String, Counts> counters = new ConcurrentHashMap<>();
+    // Numbers the changes, so a reconciliation can tell which counters moved while it queried
+    private final AtomicLong changes = new AtomicLong();
+
+    /**
+     * Returns the counts for an ISBN, with or without hyphens.
+     *
+     * @return The counts, or empty if the library owns no copy of the ISBN
+     */
+    public Optional<Availability> get(String isbn) {
+        String key = normalize(isbn);
+        Counts counts = counters.get(key);
+        if (counts == null) {
+            return Optional.empty();
+        }
+        long total = counts.total.sum();
+        long onLoan = counts.onLoan.sum();
+        return Optional.of(new Availability(key, total, onLoan, total - onLoan));
+    }
+
+    /**
+     * Counts committed books as new copies.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBooksRegistered(BooksRegisteredEvent event) {
+        for (Book book : event.getBooks()) {
+            apply(book.getIsbn(), 1, book.isBorrowed() ? 1 : 0);
+        }
+    }
+
+    /**
+     * Moves committed borrows and returns between available and on loan.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onLoansChanged(LoansChangedEvent event) {
+        int delta = event.isBorrowed() ? 1 : -1;
+        for (String isbn : event.getIsbns()) {
+            apply(isbn, 0, delta);
+        }
+    }
+
+    /**
+     * Sets every counter that did not change during the query to the database counts, and drops
+     * counters of ISBNs the database no longer has.
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${library.availability.reconcile-interval:PT5M}")
+    public void reconcile() {
+        long start = System.nanoTime();
+        long mark = changes.get();
+        Map<String, long[]> database = new HashMap<>();
+        for (Availability row : bookRepository.countCopiesByIsbn()) {
+            // Books without an ISBN have no counter to reconcile, as in apply()
+            if (row.getIsbn() == null) {
+                continue;
+            }
+            long[] counts = database.computeIfAbsent(normalize(row.getIsbn()), k -> new long[2]);
+            counts[0] += row.getTotal();
+            counts[1] += row.getOnLoan();
+        }
+
+        int corrected = 0;
+        int skipped = 0;
+        for (Map.Entry<String, long[]> entry : database.entrySet()) {
+            Counts counts = counters.computeIfAbsent(entry.getKey(), k -> new Counts());
+            if (counts.lastChange.get() > mark) {
+                skipped++;
+            } else if (counts.set(entry.getValue()[0], entry.getValue()[1])) {
+                corrected++;
+            }
+        }
+        for (Map.Entry<String, Counts> entry : counters.entrySet()) {
+            if (!database.containsKey(entry.getKey()) && entry.getValue().lastChange.get() <= mark
+                    && counters.remove(entry.getKey(), entry.getValue())) {
+                corrected++;
+            }
+        }
+        log.info("Availability counters reconciled for {} ISBNs ({} corrected, {} changed meanwhile) in {} ms",
+                database.size(), corrected, skipped, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private void apply(String isbn, long total, long onLoan) {
+        if (isbn == null) {
+            return;
+        }
+        counters.computeIfAbsent(normalize(isbn), k -> new Counts()).add(total, onLoan, changes.incrementAndGet());
+    }
+
+    /**
+     * Removes hyphens and spaces so "978-0132350884" and "9780132350884" share a counter.
+     */
+    static String normalize(String isbn) {
+        return isbn.replaceAll("[\\s-]", "").toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * Striped counters, so concurrent borrows of different copies of a popular ISBN do not contend.
+     */
+    static class Counts {
+        final LongAdder total = new LongAdder();
+        final LongAdder onLoan = new LongAdder();
+        // Highest number of the changes applied
+        final AtomicLong lastChange = new AtomicLong();
+
+        void add(long totalDelta, long onLoanDelta, long change) {
+            // Numbered before counting, so a reconciliation never overwrites a change it saw as older
+            lastChange.accumulateAndGet(change, Math::max);
+            total.add(totalDelta);
+            onLoan.add(onLoanDelta);
+        }
+
+        /**
+         * @return Whether the counts differed
+         */
+        boolean set(long newTotal, long newOnLoan) {
+            long totalDelta = newTotal - total.sum();
+            long onLoanDelta = newOnLoan - onLoan.sum();
+            total.add(totalDelta);
+            onLoan.add(onLoanDelta);
+            return totalDelta != 0 || onLoanDelta != 0;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.library.config;
+
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+/**
+ * Enables the read-through catalogue cache.
+ * The provider is Spring Boot's auto-configured CacheManager (Caffeine by default, see
+ * {@code spring.cache.*}); a multi-node deployment can switch {@code spring.cache.type} to a
+ * distributed provider without code changes.
+ * The caching advice runs outside the transaction advice, so {@code @CacheEvict} on a
+ * transactional service method only evicts once the write has committed.
+ */
+@Configuration
+@EnableCaching(order = Ordered.HIGHEST_PRECEDENCE)
+public class CacheConfig {
+    public static final String BOOKS = "books";
+    public static final String BORROWERS = "borrowers";
+}
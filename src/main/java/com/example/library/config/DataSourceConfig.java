@@ -0,0 +1,97 @@
+package com.example.library.config;
+
+import com.example.library.datasource.ReplicaProperties;
+import com.example.library.datasource.ReplicaReadAspect;
+import com.example.library.datasource.ReplicaRouter;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sends {@code @Transactional(readOnly = true)} service methods to the read replicas listed under
+ * {@code library.datasource.replicas}, and everything else to the primary {@code spring.datasource}.
+ * Without replicas this configuration is skipped and Spring Boot's single pool is used as before.
+ * <p>
+ * The application's data source is a {@link LazyConnectionDataSourceProxy}, which only takes a
+ * connection once the transaction's first statement runs and by then knows whether the transaction
+ * is read-only. Each route has its own Hikari pool, named {@code primary} or after the replica, so
+ * the {@code hikaricp.connections.*} metrics are reported per route.
+ */
+@Configuration
+@ConditionalOnProperty("library.datasource.replicas[0].url")
+@EnableConfigurationProperties(ReplicaProperties.class)
+public class DataSourceConfig {
+    /**
+     * The pool for writes and for every read outside a read-only service method. Not a candidate for
+     * injection, so everything goes through the routing proxy.
+     */
+    @Bean(autowireCandidate = false)
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties, MeterRegistry meterRegistry) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName(ReplicaRouter.PRIMARY);
+        dataSource.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+        return dataSource;
+    }
+
+    /**
+     * A pool per replica, each read-only and sized like the primary unless configured otherwise. A
+     * replica that is down when the application starts only stays out of rotation.
+     */
+    @Bean(autowireCandidate = false)
+    public ReplicaRouter replicaRouter(DataSourceProperties dataSourceProperties, ReplicaProperties properties,
+                                       MeterRegistry meterRegistry) {
+        HikariDataSource primary = primaryDataSource(dataSourceProperties, meterRegistry);
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        List<ReplicaProperties.Replica> configured = properties.getReplicas();
+        for (int i = 0; i < configured.size(); i++) {
+            ReplicaProperties.Replica replica = configured.get(i);
+            String name = replica.getName() != null ? replica.getName() : "replica-" + (i + 1);
+            HikariDataSource dataSource = new HikariDataSource();
+            dataSource.setPoolName(name);
+            dataSource.setJdbcUrl(replica.getUrl());
+            dataSource.setUsername(replica.getUsername() != null ? replica.getUsername() : primary.getUsername());
+            dataSource.setPassword(replica.getPassword() != null ? replica.getPassword() : primary.getPassword());
+            dataSource.setMaximumPoolSize(replica.getMaximumPoolSize() != null
+                    ? replica.getMaximumPoolSize() : primary.getMaximumPoolSize());
+            dataSource.setConnectionTimeout(primary.getConnectionTimeout());
+            dataSource.setReadOnly(true);
+            dataSource.setInitializationFailTimeout(-1);
+            dataSource.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+            replicas.put(name, dataSource);
+        }
+        return new ReplicaRouter(primary, replicas, properties.getLagQuery(), properties.getMaxLag(),
+                properties.getLagCheckInterval(), meterRegistry);
+    }
+
+    /**
+     * The application's data source: the primary, or a replica for read-only transactions.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(DataSourceProperties dataSourceProperties, ReplicaProperties properties,
+                                 MeterRegistry meterRegistry) {
+        LazyConnectionDataSourceProxy dataSource =
+                new LazyConnectionDataSourceProxy(primaryDataSource(dataSourceProperties, meterRegistry));
+        dataSource.setReadOnlyDataSource(replicaRouter(dataSourceProperties, properties, meterRegistry));
+        return dataSource;
+    }
+
+    @Bean
+    public ReplicaReadAspect replicaReadAspect() {
+        return new ReplicaReadAspect();
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.library.config;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Metrics beyond what Spring Boot Actuator binds on its own (HTTP requests, Hikari pool, caches,
+ * Hibernate statistics, JVM). Scrape everything at {@code /actuator/prometheus}.
+ */
+@Configuration
+public class MetricsConfig {
+    /**
+     * Records {@code @Timed} methods, e.g. the {@code library.service} timer tagged by method and exception.
+     */
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry registry) {
+        return new TimedAspect(registry);
+    }
+}
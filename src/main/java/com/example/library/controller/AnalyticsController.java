@@ -0,0 +1,64 @@
+package com.example.library.controller;
+
+import com.example.library.dto.AuthorLoanDuration;
+import com.example.library.dto.DailyBorrows;
+import com.example.library.dto.TitleBorrows;
+import com.example.library.service.AnalyticsService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * REST controller for circulation reports. The reports are aggregated by the database.
+ */
+@RestController
+@RequestMapping("/api/analytics")
+public class AnalyticsController {
+    @Autowired
+    private AnalyticsService analyticsService;
+
+    /**
+     * Retrieves the most borrowed titles.
+     *
+     * @param limit The number of titles to return.
+     * @param from The earliest borrow date to count (ISO date); omit both dates for all-time counts.
+     * @param to The latest borrow date to count (ISO date).
+     * @return The titles, most borrowed first, with HTTP 200 OK.
+     */
+    @GetMapping("/top-titles")
+    public ResponseEntity<List<TitleBorrows>> getTopTitles(@RequestParam(defaultValue = "10") int limit,
+                                                           @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                           @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return ResponseEntity.ok(analyticsService.getTopTitles(limit, from, to));
+    }
+
+    /**
+     * Retrieves the average loan length per author.
+     *
+     * @param from The earliest borrow date to include (ISO date); defaults to 30 days before {@code to}.
+     * @param to The latest borrow date to include (ISO date); defaults to today.
+     * @return The authors with their returned loans and average loan days, with HTTP 200 OK.
+     */
+    @GetMapping("/loan-duration")
+    public ResponseEntity<List<AuthorLoanDuration>> getLoanDurationByAuthor(@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                                            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return ResponseEntity.ok(analyticsService.getLoanDurationByAuthor(from, to));
+    }
+
+    /**
+     * Retrieves the number of loans started per day.
+     *
+     * @param from The first day (ISO date); defaults to 30 days before {@code to}.
+     * @param to The last day (ISO date); defaults to today.
+     * @return The days that had loans, oldest first, with HTTP 200 OK.
+     */
+    @GetMapping("/borrows-per-day")
+    public ResponseEntity<List<DailyBorrows>> getBorrowsPerDay(@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                               @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return ResponseEntity.ok(analyticsService.getBorrowsPerDay(from, to));
+    }
+}
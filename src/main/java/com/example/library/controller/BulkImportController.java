@@ -0,0 +1,50 @@
+package com.example.library.controller;
+
+import com.example.library.dto.ImportReport;
+import com.example.library.service.BulkImportService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.InputStream;
+
+/**
+ * REST controller for bulk imports of books and borrowers.
+ * The body is read as a stream, so imports of any size run in constant memory.
+ */
+@RestController
+@RequestMapping("/api")
+public class BulkImportController {
+    @Autowired
+    private BulkImportService bulkImportService;
+
+    /**
+     * Imports books from a CSV (isbn,title,author header), JSON array or NDJSON body.
+     *
+     * @param contentType The content type of the body.
+     * @param body The rows to import.
+     * @return The import report with HTTP 200 OK.
+     */
+    @PostMapping(value = "/books/import",
+            consumes = {"text/csv", MediaType.APPLICATION_JSON_VALUE, LibraryController.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<ImportReport> importBooks(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                                    InputStream body) {
+        return ResponseEntity.ok(bulkImportService.importBooks(body, contentType));
+    }
+
+    /**
+     * Imports borrowers from a CSV (name,email header), JSON array or NDJSON body.
+     *
+     * @param contentType The content type of the body.
+     * @param body The rows to import.
+     * @return The import report with HTTP 200 OK.
+     */
+    @PostMapping(value = "/borrowers/import",
+            consumes = {"text/csv", MediaType.APPLICATION_JSON_VALUE, LibraryController.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<ImportReport> importBorrowers(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                                        InputStream body) {
+        return ResponseEntity.ok(bulkImportService.importBorrowers(body, contentType));
+    }
+}
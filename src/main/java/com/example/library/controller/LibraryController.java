@@ -1,13 +1,34 @@
 package com.example.library.controller;
 
+import com.example.library.dto.Availability;
+import com.example.library.dto.BatchLoanRequest;
+import com.example.library.dto.BatchLoanResult;
+import com.example.library.dto.BookChanges;
+import com.example.library.dto.BookPage;
+import com.example.library.dto.BookSearchPage;
+import com.example.library.dto.HoldStatus;
+import com.example.library.dto.LoanStatus;
+import com.example.library.dto.LoanSummary;
 import com.example.library.model.Book;
+import com.example.library.model.BookCirculation;
+import com.example.library.model.BorrowerActivity;
 import com.example.library.model.Borrower;
 import com.example.library.service.LibraryService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Locale;
 
 /**
  * REST controller for managing library-related operations such as
@@ -16,8 +37,12 @@ import java.util.List;
 @RestController
 @RequestMapping("/api")
 public class LibraryController {
+    static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
     @Autowired
     private LibraryService libraryService;
+    @Autowired
+    private ObjectMapper objectMapper;
 
     /**
      * Registers a new book.
@@ -32,14 +57,93 @@ public class LibraryController {
     }
 
     /**
-     * Retrieves the list of all books.
+     * Retrieves one page of books, ordered by ID, as JSON or, for Accept: application/cbor, as CBOR.
+     * The page carries a weak ETag, so a client revalidating with If-None-Match gets 304 Not Modified
+     * while none of its books has changed.
+     *
+     * @param cursor The nextCursor of the previous page; omit for the first page.
+     * @param size The maximum number of books in the page.
+     * @return The page of books and the next cursor with HTTP 200 OK.
+     */
+    @GetMapping(value = "/books", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public ResponseEntity<BookPage> getBooks(@RequestParam(required = false) String cursor,
+                                             @RequestParam(defaultValue = "50") int size) {
+        BookPage page = libraryService.getBooks(cursor, size);
+        return ResponseEntity.ok().eTag(etag(page.getItems(), page.getNextCursor())).body(page);
+    }
+
+    /**
+     * Retrieves the books registered, borrowed or returned since a sync token, as JSON or CBOR,
+     * so that clients keeping a copy of the catalogue only download what changed.
+     *
+     * @param since The next token of the previous call; omit to start with the whole catalogue.
+     * @param size The maximum number of books to return.
+     * @return The changed books and the token to continue from with HTTP 200 OK, or 304 Not Modified
+     *         if the client's If-None-Match shows it already has this response.
+     */
+    @GetMapping(value = "/books/changes", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public ResponseEntity<BookChanges> getBookChanges(@RequestParam(required = false) String since,
+                                                      @RequestParam(defaultValue = "500") int size) {
+        BookChanges changes = libraryService.getBookChanges(since, size);
+        return ResponseEntity.ok().eTag(etag(changes.getItems(), changes.getNext())).body(changes);
+    }
+
+    /**
+     * Streams the whole catalogue as newline-delimited JSON, one book per line,
+     * when the client asks for application/x-ndjson.
+     *
+     * @return The streamed catalogue with HTTP 200 OK.
+     */
+    @GetMapping(value = "/books", produces = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllBooks() {
+        StreamingResponseBody body = out -> libraryService.streamAllBooks(book -> {
+            try {
+                out.write(objectMapper.writeValueAsBytes(book));
+                out.write('\n');
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        });
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE)).body(body);
+    }
+
+    /**
+     * Searches books by title, author and ISBN, best match first.
+     * Every term must match a whole word or the start of one, so partial input works for autocomplete.
+     *
+     * @param q The search terms.
+     * @param page The zero-based page number.
+     * @param size The maximum number of books in the page.
+     * @return The page of matching books with HTTP 200 OK.
+     */
+    @GetMapping("/books/search")
+    public ResponseEntity<BookSearchPage> searchBooks(@RequestParam String q,
+                                                      @RequestParam(defaultValue = "0") int page,
+                                                      @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(libraryService.searchBooks(q, page, size));
+    }
+
+    /**
+     * Retrieves how many copies of an ISBN the library owns, how many are on loan and how many are available.
+     *
+     * @param isbn The ISBN, with or without hyphens.
+     * @return The copy counts with HTTP 200 OK.
+     */
+    @GetMapping("/books/availability/{isbn}")
+    public ResponseEntity<Availability> getAvailability(@PathVariable String isbn) {
+        return ResponseEntity.ok(libraryService.getAvailability(isbn));
+    }
+
+    /**
+     * Retrieves the circulation of a book: whether it is on loan, to whom, and how often it has been borrowed.
+     * Served from a read model that trails borrows and returns by a few seconds.
      *
-     * @return List of books with HTTP 200 OK.
+     * @param bookId The ID of the book.
+     * @return The circulation with HTTP 200 OK.
      */
-    @GetMapping("/books")
-    public ResponseEntity<List<Book>> getAllBooks() {
-        List<Book> books = libraryService.getAllBooks();
-        return ResponseEntity.ok(books);
+    @GetMapping("/books/{bookId}/circulation")
+    public ResponseEntity<BookCirculation> getCirculation(@PathVariable Long bookId) {
+        return ResponseEntity.ok(libraryService.getCirculation(bookId));
     }
 
     /**
@@ -54,6 +158,40 @@ public class LibraryController {
         return ResponseEntity.ok(savedBorrower);
     }
 
+    /**
+     * Retrieves a borrower's loans, newest first.
+     *
+     * @param borrowerId The ID of the borrower.
+     * @param status Which loans to include: active, returned or all.
+     * @param from The earliest borrow date to include (ISO date); omit for no lower bound.
+     * @param to The latest borrow date to include (ISO date); omit for no upper bound.
+     * @param page The zero-based page number.
+     * @param size The maximum number of loans in the page.
+     * @return The page of loans with HTTP 200 OK.
+     */
+    @GetMapping("/borrowers/{borrowerId}/loans")
+    public ResponseEntity<List<LoanSummary>> getLoans(@PathVariable Long borrowerId,
+                                                      @RequestParam(defaultValue = "all") String status,
+                                                      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                      @RequestParam(defaultValue = "0") int page,
+                                                      @RequestParam(defaultValue = "50") int size) {
+        LoanStatus loanStatus = LoanStatus.valueOf(status.toUpperCase(Locale.ROOT)); // IllegalArgumentException -> 400
+        return ResponseEntity.ok(libraryService.getLoans(borrowerId, loanStatus, from, to, page, size));
+    }
+
+    /**
+     * Retrieves a borrower's loan activity: active and total loans and the latest activity.
+     * Served from a read model that trails borrows and returns by a few seconds.
+     *
+     * @param borrowerId The ID of the borrower.
+     * @return The activity with HTTP 200 OK.
+     */
+    @GetMapping("/borrowers/{borrowerId}/activity")
+    public ResponseEntity<BorrowerActivity> getActivity(@PathVariable Long borrowerId) {
+        return ResponseEntity.ok(libraryService.getActivity(borrowerId));
+    }
+
     /**
      * Borrows a book for a specific borrower.
      *
@@ -79,4 +217,74 @@ public class LibraryController {
         String message = libraryService.returnBook(borrowerId, bookId); // Will throw exceptions if needed
         return ResponseEntity.ok(message);
     }
+
+    /**
+     * Borrows several books for a specific borrower in one transaction.
+     *
+     * @param borrowerId The ID of the borrower.
+     * @param request The IDs of the books to be borrowed.
+     * @return The outcome for each book with HTTP 200 OK; books that cannot be borrowed do not stop the others.
+     */
+    @PostMapping("/borrowers/{borrowerId}/borrow")
+    public ResponseEntity<BatchLoanResult> borrowBooks(@PathVariable Long borrowerId, @RequestBody BatchLoanRequest request) {
+        return ResponseEntity.ok(libraryService.borrowBooks(borrowerId, request.getBookIds()));
+    }
+
+    /**
+     * Returns several borrowed books in one transaction.
+     *
+     * @param borrowerId The ID of the borrower returning the books.
+     * @param request The IDs of the books being returned.
+     * @return The outcome for each book with HTTP 200 OK; books that cannot be returned do not stop the others.
+     */
+    @PostMapping("/borrowers/{borrowerId}/return")
+    public ResponseEntity<BatchLoanResult> returnBooks(@PathVariable Long borrowerId, @RequestBody BatchLoanRequest request) {
+        return ResponseEntity.ok(libraryService.returnBooks(borrowerId, request.getBookIds()));
+    }
+
+    /**
+     * Places a hold on a borrowed book; the book is lent to the borrower automatically when their turn comes.
+     *
+     * @param borrowerId The ID of the borrower.
+     * @param bookId The ID of the book to hold.
+     * @return The hold and its place in the queue with HTTP 200 OK.
+     */
+    @PostMapping("/borrowers/{borrowerId}/holds/{bookId}")
+    public ResponseEntity<HoldStatus> placeHold(@PathVariable Long borrowerId, @PathVariable Long bookId) {
+        return ResponseEntity.ok(libraryService.placeHold(borrowerId, bookId));
+    }
+
+    /**
+     * Retrieves the status of a hold and its place in the queue.
+     *
+     * @param holdId The ID of the hold.
+     * @return The hold status with HTTP 200 OK.
+     */
+    @GetMapping("/holds/{holdId}")
+    public ResponseEntity<HoldStatus> getHold(@PathVariable Long holdId) {
+        return ResponseEntity.ok(libraryService.getHold(holdId));
+    }
+
+    /**
+     * Cancels a waiting hold.
+     *
+     * @param holdId The ID of the hold.
+     * @return Success message with HTTP 200 OK.
+     */
+    @DeleteMapping("/holds/{holdId}")
+    public ResponseEntity<String> cancelHold(@PathVariable Long holdId) {
+        return ResponseEntity.ok(libraryService.cancelHold(holdId));
+    }
+
+    /**
+     * Weak ETag over the state of the given books and the continuation token. It does not depend on
+     * the encoding, so JSON and CBOR responses for the same books share it.
+     */
+    static String etag(List<Book> books, String token) {
+        StringBuilder state = new StringBuilder(books.size() * 32).append(token).append('|');
+        for (Book book : books) {
+            state.append(book.getId()).append(book.isBorrowed() ? 'b' : 'a').append(book.getUpdatedAt()).append(',');
+        }
+        return "W/\"" + DigestUtils.md5DigestAsHex(state.toString().getBytes(StandardCharsets.UTF_8)) + '"';
+    }
 }
@@ -0,0 +1,27 @@
+package com.example.library.controller;
+
+import com.example.library.outbox.OutboxDispatcher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * REST controller for operating the loan event outbox.
+ */
+@RestController
+@RequestMapping("/api/outbox")
+public class OutboxController {
+    @Autowired
+    private OutboxDispatcher outboxDispatcher;
+
+    /**
+     * Queues a sink's dead letters for delivery again, for instance once its consumer has been fixed.
+     *
+     * @param sink The name of the sink, such as {@code webhook}.
+     * @return The number of events queued again, with HTTP 200 OK.
+     */
+    @PostMapping("/{sink}/dead-letters/replay")
+    public ResponseEntity<Integer> replayDeadLetters(@PathVariable String sink) {
+        return ResponseEntity.ok(outboxDispatcher.replayDeadLetters(sink));
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.library.controller;
+
+import com.example.library.model.LoanEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Stands in for the campus system locally: the dev profile points the outbox webhook here. It logs
+ * each batch and, to try out retries and dead letters, fails a share of them given by
+ * {@code library.outbox.stub.failure-rate} with 503.
+ */
+@Slf4j
+@Profile("dev")
+@RestController
+public class StubWebhookController {
+    @Value("${library.outbox.stub.failure-rate:0}")
+    private double failureRate;
+
+    @PostMapping("/stub/loan-events")
+    public ResponseEntity<Void> receive(@RequestBody List<LoanEvent> events) {
+        if (ThreadLocalRandom.current().nextDouble() < failureRate) {
+            log.info("Stub webhook rejected {} loan events", events.size());
+            return ResponseEntity.status(503).build();
+        }
+        log.info("Stub webhook received {} loan events, IDs {} to {}",
+                events.size(), events.get(0).getId(), events.get(events.size() - 1).getId());
+        return ResponseEntity.noContent().build();
+    }
+}
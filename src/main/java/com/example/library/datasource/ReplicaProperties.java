@@ -0,0 +1,46 @@
+package com.example.library.datasource;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read replicas for {@code @Transactional(readOnly = true)} work, under {@code library.datasource}.
+ * With no replicas listed, everything runs on the primary {@code spring.datasource}.
+ */
+@Data
+@ConfigurationProperties("library.datasource")
+public class ReplicaProperties {
+    private List<Replica> replicas = new ArrayList<>();
+    /**
+     * A replica further behind the primary than this stops receiving reads until it catches up.
+     */
+    private Duration maxLag = Duration.ofSeconds(2);
+    /**
+     * How often each replica's lag is measured. A measurement older than three intervals takes the
+     * replica out of rotation.
+     */
+    private Duration lagCheckInterval = Duration.ofSeconds(1);
+    /**
+     * Returns the replica's replication lag in seconds. The default is for PostgreSQL streaming
+     * replication; it reports 0 on a primary, so a replica pointing at the primary is always current.
+     */
+    private String lagQuery = """
+            select case when pg_is_in_recovery()
+                then coalesce(extract(epoch from now() - pg_last_xact_replay_timestamp()), 0) else 0 end""";
+
+    @Data
+    public static class Replica {
+        private String name;
+        private String url;
+        private String username;
+        private String password;
+        /**
+         * Defaults to the primary's {@code spring.datasource.hikari.maximum-pool-size}.
+         */
+        private Integer maximumPoolSize;
+    }
+}
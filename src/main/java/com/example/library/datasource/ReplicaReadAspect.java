@@ -0,0 +1,26 @@
+package com.example.library.datasource;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Marks the {@code @Transactional(readOnly = true)} methods of {@code @Service} beans as reads that
+ * {@link ReplicaRouter} may send to a replica.
+ */
+@Aspect
+public class ReplicaReadAspect {
+    @Around("@within(org.springframework.stereotype.Service) && @annotation(transactional)")
+    public Object markServiceRead(ProceedingJoinPoint joinPoint, Transactional transactional) throws Throwable {
+        if (!transactional.readOnly() || ReplicaRouter.SERVICE_READ.get() != null) {
+            return joinPoint.proceed();
+        }
+        ReplicaRouter.SERVICE_READ.set(Boolean.TRUE);
+        try {
+            return joinPoint.proceed();
+        } finally {
+            ReplicaRouter.SERVICE_READ.remove();
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.example.library.datasource;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands out connections for read-only service transactions, round-robin over the replicas that are
+ * caught up with the primary, and from the primary when none is. Other read-only transactions, such
+ * as the ones Spring Data opens around a bare repository call, stay on the primary: their results
+ * feed the caches and in-memory counters, which must not go back in time.
+ * <p>
+ * Each replica's lag is measured every {@code library.datasource.lag-check-interval}, on a thread of
+ * the router's own, so that busy scheduled jobs cannot delay it. A replica starts out of rotation
+ * until its first check, leaves it when it falls more than {@code library.datasource.max-lag} behind
+ * or cannot be queried, and rejoins once it has caught up. A replica that fails to give a connection
+ * leaves the rotation at once, and one whose last measurement is older than
+ * {@value #STALE_AFTER_CHECKS} check intervals gets no reads until it is measured again. Reads are counted per route
+ * in {@code library.datasource.reads}, and the measured lag is gauged in
+ * {@code library.datasource.replica.lag}.
+ */
+@Slf4j
+public class ReplicaRouter extends AbstractDataSource implements InitializingBean, DisposableBean {
+    public static final String PRIMARY = "primary";
+    static final int STALE_AFTER_CHECKS = 3;
+
+    // Set while a @Transactional(readOnly = true) service method runs; see ReplicaReadAspect
+    static final ThreadLocal<Boolean> SERVICE_READ = new ThreadLocal<>();
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final String lagQuery;
+    private final double maxLagSeconds;
+    private final Duration lagCheckInterval;
+    private final long staleAfterNanos;
+    private final MeterRegistry meterRegistry;
+    private final AtomicInteger next = new AtomicInteger();
+    private ScheduledExecutorService lagChecker;
+
+    public ReplicaRouter(DataSource primary, Map<String, DataSource> replicas, String lagQuery, Duration maxLag,
+                         Duration lagCheckInterval, MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.replicas = replicas.entrySet().stream().map(e -> new Replica(e.getKey(), e.getValue())).toList();
+        this.lagQuery = lagQuery;
+        this.maxLagSeconds = maxLag.toMillis() / 1000.0;
+        this.lagCheckInterval = lagCheckInterval;
+        this.staleAfterNanos = lagCheckInterval.toNanos() * STALE_AFTER_CHECKS;
+        this.meterRegistry = meterRegistry;
+        for (Replica replica : this.replicas) {
+            Gauge.builder("library.datasource.replica.lag", replica, r -> r.lagSeconds)
+                    .tag("replica", replica.name)
+                    .baseUnit("seconds")
+                    .register(meterRegistry);
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return route(DataSource::getConnection);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return route(dataSource -> dataSource.getConnection(username, password));
+    }
+
+    /**
+     * Opens the connection on the data source the current transaction reads from.
+     */
+    private Connection route(ConnectionOpener opener) throws SQLException {
+        if (SERVICE_READ.get() == null) {
+            return opener.open(primary);
+        }
+        int start = next.getAndIncrement();
+        long now = System.nanoTime();
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get(Math.floorMod(start + i, replicas.size()));
+            if (!isCurrent(replica, now)) {
+                continue;
+            }
+            try {
+                Connection connection = opener.open(replica.dataSource);
+                count(replica.name);
+                return connection;
+            } catch (SQLException | RuntimeException ex) {
+                replica.inRotation = false;
+                log.warn("Replica {} taken out of rotation: {}", replica.name, ex.getMessage());
+            }
+        }
+        count(PRIMARY);
+        return opener.open(primary);
+    }
+
+    /**
+     * Starts measuring the replicas' lag, if there are any.
+     */
+    @Override
+    public void afterPropertiesSet() {
+        if (replicas.isEmpty()) {
+            return;
+        }
+        lagChecker = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform()
+                .name("replica-lag-check").daemon().factory());
+        lagChecker.scheduleWithFixedDelay(this::checkLag, 0, lagCheckInterval.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Measures each replica's lag and puts it in or out of rotation accordingly.
+     */
+    public void checkLag() {
+        for (Replica replica : replicas) {
+            boolean wasInRotation = replica.inRotation;
+            try (Connection connection = replica.dataSource.getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet result = statement.executeQuery(lagQuery)) {
+                result.next();
+                replica.lagSeconds = result.getDouble(1);
+                replica.measuredAt = System.nanoTime();
+                replica.inRotation = replica.lagSeconds <= maxLagSeconds;
+            } catch (SQLException | RuntimeException ex) {
+                replica.lagSeconds = Double.NaN;
+                replica.inRotation = false;
+            }
+            if (replica.inRotation != wasInRotation) {
+                log.info("Replica {} {} rotation (lag {} s)", replica.name,
+                        replica.inRotation ? "back in" : "taken out of", replica.lagSeconds);
+            }
+        }
+    }
+
+    /**
+     * Names of the replicas currently receiving reads.
+     */
+    public List<String> inRotation() {
+        long now = System.nanoTime();
+        return replicas.stream().filter(r -> isCurrent(r, now)).map(r -> r.name).toList();
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (lagChecker != null) {
+            lagChecker.shutdownNow();
+        }
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    /**
+     * In rotation as of a measurement recent enough to trust; a stalled check must not keep a replica
+     * that has since fallen behind receiving reads.
+     */
+    private boolean isCurrent(Replica replica, long now) {
+        return replica.inRotation && now - replica.measuredAt <= staleAfterNanos;
+    }
+
+    private void count(String route) {
+        meterRegistry.counter("library.datasource.reads", "route", route).increment();
+    }
+
+    @FunctionalInterface
+    private interface ConnectionOpener {
+        Connection open(DataSource dataSource) throws SQLException;
+    }
+
+    private static class Replica {
+        final String name;
+        final DataSource dataSource;
+        volatile boolean inRotation;
+        volatile double lagSeconds = Double.NaN;
+        // System.nanoTime() of the last successful measurement
+        volatile long measuredAt;
+
+        Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.library.dedup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread-safe Bloom filter of strings. {@link #mightContain} never misses a string that was added,
+ * and wrongly reports one that was not at about the false-positive rate it was sized for, as long as
+ * no more than the expected number of strings are added.
+ * <p>
+ * Each string is hashed once to 64 bits; the bit positions are derived from its two halves by
+ * double hashing.
+ */
+class BloomFilter {
+    private final AtomicLongArray words;
+    private final long bits;
+    private final int hashes;
+
+    BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        long optimalBits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        words = new AtomicLongArray((int) Math.max(1, (optimalBits + 63) / 64));
+        bits = words.length() * 64L;
+        hashes = (int) Math.max(1, Math.round((double) bits / expectedInsertions * Math.log(2)));
+    }
+
+    void add(String value) {
+        long hash = hash(value);
+        for (int i = 1; i <= hashes; i++) {
+            long bit = bit(hash, i);
+            long mask = 1L << bit;
+            words.accumulateAndGet((int) (bit >>> 6), mask, (word, m) -> word | m);
+        }
+    }
+
+    boolean mightContain(String value) {
+        long hash = hash(value);
+        for (int i = 1; i <= hashes; i++) {
+            long bit = bit(hash, i);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long bit(long hash, int i) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        return Math.floorMod(h1 + (long) i * h2, bits);
+    }
+
+    /**
+     * FNV-1a over the UTF-8 bytes, finished with the SplitMix64 mixer so that both halves are well spread.
+     */
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+        }
+        hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+        return hash ^ (hash >>> 31);
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.library.dedup;
+
+import com.example.library.model.Borrower;
+import com.example.library.repository.BorrowerRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Answers whether emails are already registered without asking the database about new ones.
+ * <p>
+ * A Bloom filter of every registered email rules most new emails out in memory. Only the emails it
+ * cannot rule out, which are mostly real duplicates, are looked up, all in one query through the
+ * unique index on {@code borrower.email}. Registrations therefore reject duplicates before inserting
+ * anything, and bulk imports reject them without failing a whole batch.
+ * <p>
+ * The filter is sized for {@code library.borrowers.email-filter.expected-emails} at
+ * {@code library.borrowers.email-filter.false-positive-rate}, or twice the registered emails if that is
+ * more. It is rebuilt from the database on startup and every
+ * {@code library.borrowers.email-filter.rebuild-interval}, which picks up borrowers registered on other
+ * nodes. Until the first build completes every email is looked up. The unique index stays the final
+ * check, for emails registered elsewhere since the last rebuild.
+ */
+@Slf4j
+@Component
+public class BorrowerEmails {
+    private static final int REBUILD_CHUNK_SIZE = 1000;
+
+    @Autowired
+    private BorrowerRepository borrowerRepository;
+
+    @Value("${library.borrowers.email-filter.expected-emails:1000000}")
+    private long expectedEmails;
+    @Value("${library.borrowers.email-filter.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    // Null until the first rebuild completes
+    private volatile BloomFilter current;
+    // Filter being rebuilt, if any; emails registered meanwhile are added to it as well
+    private volatile BloomFilter building;
+    private final AtomicLong registered = new AtomicLong();
+
+    /**
+     * Finds which of the given emails are already registered.
+     *
+     * @return The registered ones among them
+     */
+    public Set<String> findRegistered(Collection<String> emails) {
+        BloomFilter filter = current;
+        List<String> candidates = emails.stream()
+                .filter(email -> filter == null || filter.mightContain(email))
+                .distinct()
+                .toList();
+        if (candidates.isEmpty()) {
+            return Set.of();
+        }
+        return new HashSet<>(borrowerRepository.findRegisteredEmails(candidates));
+    }
+
+    /**
+     * Adds emails being registered. They may be added before they are committed; if the
+     * transaction rolls back, they only cost a lookup later.
+     */
+    public void addAll(Collection<String> emails) {
+        BloomFilter filter = current;
+        BloomFilter rebuilding = building;
+        for (String email : emails) {
+            if (filter != null) {
+                filter.add(email);
+            }
+            if (rebuilding != null) {
+                rebuilding.add(email);
+            }
+        }
+        registered.addAndGet(emails.size());
+    }
+
+    /**
+     * Rebuilds the filter from the database in keyset chunks, then swaps it in.
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${library.borrowers.email-filter.rebuild-interval:PT1H}")
+    public void rebuild() {
+        long start = System.nanoTime();
+        BloomFilter rebuilt = new BloomFilter(Math.max(expectedEmails, 2 * registered.get()), falsePositiveRate);
+        building = rebuilt;
+        long count = 0;
+        try {
+            long lastId = 0;
+            List<Borrower> chunk;
+            do {
+                chunk = borrowerRepository.findByIdGreaterThanOrderByIdAsc(lastId, Limit.of(REBUILD_CHUNK_SIZE));
+                for (Borrower borrower : chunk) {
+                    if (borrower.getEmail() != null) {
+                        rebuilt.add(borrower.getEmail());
+                        count++;
+                    }
+                    lastId = borrower.getId();
+                }
+            } while (chunk.size() == REBUILD_CHUNK_SIZE);
+            current = rebuilt;
+            registered.set(count);
+        } finally {
+            building = null;
+        }
+        log.info("Borrower email filter rebuilt with {} emails in {} ms", count, (System.nanoTime() - start) / 1_000_000);
+    }
+}
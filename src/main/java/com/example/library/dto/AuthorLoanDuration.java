@@ -0,0 +1,15 @@
+package com.example.library.dto;
+
+import lombok.*;
+
+/**
+ * Returned loans of one author's books and how many days they lasted on average.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AuthorLoanDuration {
+    private String author;
+    private long loans;
+    private double averageDays;
+}
@@ -0,0 +1,16 @@
+package com.example.library.dto;
+
+import lombok.*;
+
+/**
+ * Copies of one ISBN: how many the library owns, how many are on loan and how many can be borrowed.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Availability {
+    private String isbn;
+    private long total;
+    private long onLoan;
+    private long available;
+}
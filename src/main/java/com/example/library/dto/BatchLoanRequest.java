@@ -0,0 +1,16 @@
+package com.example.library.dto;
+
+import lombok.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The books a borrower checks out or returns in one go.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchLoanRequest {
+    private List<Long> bookIds = new ArrayList<>();
+}
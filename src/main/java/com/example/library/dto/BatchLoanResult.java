@@ -0,0 +1,36 @@
+package com.example.library.dto;
+
+import lombok.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a batch borrow or return: one item per distinct book, in request order.
+ * Books that fail do not affect the others.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchLoanResult {
+    private int succeeded;
+    private int failed;
+    private List<Item> items = new ArrayList<>();
+
+    public enum Outcome {
+        BORROWED,
+        RETURNED,
+        NOT_FOUND,
+        ALREADY_BORROWED,
+        NOT_BORROWED
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Item {
+        private Long bookId;
+        private Outcome outcome;
+        private String message;
+    }
+}
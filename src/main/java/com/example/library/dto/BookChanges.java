@@ -0,0 +1,20 @@
+package com.example.library.dto;
+
+import com.example.library.model.Book;
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * Books registered, borrowed or returned since a sync token, oldest change first. Pass {@code next}
+ * as {@code since} on the following call; while {@code complete} is false there are more changes
+ * to fetch straight away.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookChanges {
+    private List<Book> items;
+    private String next;
+    private boolean complete;
+}
@@ -0,0 +1,17 @@
+package com.example.library.dto;
+
+import com.example.library.model.Book;
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * One keyset page of the catalogue. {@code nextCursor} is null on the last page.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookPage {
+    private List<Book> items;
+    private String nextCursor;
+}
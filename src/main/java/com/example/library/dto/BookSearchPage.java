@@ -0,0 +1,22 @@
+package com.example.library.dto;
+
+import com.example.library.model.Book;
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * One page of search results, best match first. {@code total} counts all matches, unless
+ * {@code truncated} is set: then a search term had too many prefix expansions and {@code total}
+ * is a lower bound.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookSearchPage {
+    private List<Book> items;
+    private int page;
+    private int size;
+    private long total;
+    private boolean truncated;
+}
@@ -0,0 +1,16 @@
+package com.example.library.dto;
+
+import lombok.*;
+
+import java.time.LocalDate;
+
+/**
+ * Number of loans that started on one day.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DailyBorrows {
+    private LocalDate date;
+    private long borrows;
+}
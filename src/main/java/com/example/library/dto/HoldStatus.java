@@ -0,0 +1,19 @@
+package com.example.library.dto;
+
+import com.example.library.model.Hold;
+import lombok.*;
+
+/**
+ * Where a hold stands. Position 1 is next in line; position and queue length are 0 once the hold
+ * has been fulfilled or cancelled.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class HoldStatus {
+    private Long holdId;
+    private Long bookId;
+    private Hold.Status status;
+    private int position;
+    private int queueLength;
+}
@@ -0,0 +1,32 @@
+package com.example.library.dto;
+
+import lombok.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a bulk import: how many rows were stored or rejected, why rows were rejected,
+ * and the throughput achieved.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportReport {
+    private long accepted;
+    private long rejected;
+    private List<RowError> errors = new ArrayList<>();
+    private long elapsedMillis;
+    private double rowsPerSecond;
+
+    /**
+     * A rejected row. Row numbers are 1-based and count data rows only (not the CSV header).
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RowError {
+        private long row;
+        private String message;
+    }
+}
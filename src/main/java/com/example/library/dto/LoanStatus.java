@@ -0,0 +1,10 @@
+package com.example.library.dto;
+
+/**
+ * Filter for a borrower's loan history.
+ */
+public enum LoanStatus {
+    ACTIVE,
+    RETURNED,
+    ALL
+}
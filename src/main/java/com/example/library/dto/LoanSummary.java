@@ -0,0 +1,20 @@
+package com.example.library.dto;
+
+import lombok.*;
+
+import java.time.LocalDate;
+
+/**
+ * One loan of a borrower, read as a projection (only these columns are selected).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoanSummary {
+    private Long loanId;
+    private Long bookId;
+    private String isbn;
+    private String title;
+    private LocalDate borrowDate;
+    private LocalDate returnDate;
+}
@@ -0,0 +1,17 @@
+package com.example.library.dto;
+
+import lombok.*;
+
+import java.time.LocalDate;
+
+/**
+ * An open loan read by the overdue job. The due date is null for loans made before due dates were recorded.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OverdueLoan {
+    private Long loanId;
+    private LocalDate borrowDate;
+    private LocalDate dueDate;
+}
@@ -0,0 +1,16 @@
+package com.example.library.dto;
+
+import lombok.*;
+
+/**
+ * How often the copies of one title (ISBN) were borrowed.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TitleBorrows {
+    private String isbn;
+    private String title;
+    private String author;
+    private long borrows;
+}
@@ -0,0 +1,16 @@
+package com.example.library.event;
+
+import com.example.library.model.Book;
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Published when new books have been saved, either one at a time or by a bulk import batch.
+ * Listeners that keep derived state in memory should use
+ * {@code @TransactionalEventListener} so they only see committed books.
+ */
+@Value
+public class BooksRegisteredEvent {
+    List<Book> books;
+}
@@ -0,0 +1,13 @@
+package com.example.library.event;
+
+import lombok.Value;
+
+/**
+ * Published when a hold stops waiting, because it was fulfilled or cancelled, or when it turns out to
+ * have been closed elsewhere. The in-memory queues drop it once the transaction commits.
+ */
+@Value
+public class HoldClosedEvent {
+    Long bookId;
+    Long holdId;
+}
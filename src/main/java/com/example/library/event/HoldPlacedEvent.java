@@ -0,0 +1,13 @@
+package com.example.library.event;
+
+import lombok.Value;
+
+/**
+ * Published when a hold has been queued. The hold joins the in-memory queue inside the transaction,
+ * so a return that commits next already sees it; listeners undo that if the transaction rolls back.
+ */
+@Value
+public class HoldPlacedEvent {
+    Long bookId;
+    Long holdId;
+}
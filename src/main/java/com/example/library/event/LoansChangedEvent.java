@@ -0,0 +1,16 @@
+package com.example.library.event;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Published when books have been borrowed ({@code borrowed = true}) or returned. Carries the ISBN of
+ * each book that changed state, one entry per book. Like {@link BooksRegisteredEvent}, listeners keeping
+ * derived state should use {@code @TransactionalEventListener}.
+ */
+@Value
+public class LoansChangedEvent {
+    List<String> isbns;
+    boolean borrowed;
+}
@@ -0,0 +1,39 @@
+package com.example.library.exception;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The error body every endpoint returns. Shared by {@link GlobalExceptionHandler} and the servlet
+ * filters in front of the controllers, which the handler does not reach.
+ */
+public final class ErrorResponses {
+    private ErrorResponses() {
+    }
+
+    public static Map<String, Object> body(HttpStatus status, String message) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("timestamp", LocalDateTime.now());
+        body.put("status", status.value());
+        body.put("error", status.getReasonPhrase());
+        body.put("message", message);
+        return body;
+    }
+
+    /**
+     * Writes an error response directly, for use outside Spring MVC.
+     */
+    public static void write(HttpServletResponse response, ObjectMapper objectMapper, HttpStatus status,
+                             String message) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), body(status, message));
+    }
+}
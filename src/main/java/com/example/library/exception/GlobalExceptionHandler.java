@@ -1,42 +1,65 @@
 package com.example.library.exception;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.filter.ServerHttpObservationFilter;
 
-import java.time.LocalDateTime;
-import java.util.HashMap;
-import java.util.Map;
-
+/**
+ * Maps exceptions to error responses. Every handled exception is also counted in
+ * {@code library.errors} (tagged by outcome, exception and status) and attached to the request's
+ * observation, so that {@code http.server.requests} carries the exception tag even though the
+ * exception never leaves Spring MVC.
+ */
 @RestControllerAdvice
 public class GlobalExceptionHandler {
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @ExceptionHandler(ResourceNotFoundException.class)
-    public ResponseEntity<Object> handleResourceNotFound(ResourceNotFoundException ex) {
-        return buildResponse(HttpStatus.NOT_FOUND, ex.getMessage());
+    public ResponseEntity<Object> handleResourceNotFound(ResourceNotFoundException ex, HttpServletRequest request) {
+        return buildResponse(HttpStatus.NOT_FOUND, ex.getMessage(), "not_found", ex, request);
     }
 
     @ExceptionHandler(BookAlreadyBorrowedException.class)
-    public ResponseEntity<Object> handleBookAlreadyBorrowed(BookAlreadyBorrowedException ex) {
-        return buildResponse(HttpStatus.CONFLICT, ex.getMessage());
+    public ResponseEntity<Object> handleBookAlreadyBorrowed(BookAlreadyBorrowedException ex, HttpServletRequest request) {
+        return buildResponse(HttpStatus.CONFLICT, ex.getMessage(), "already_borrowed", ex, request);
+    }
+
+    @ExceptionHandler(DuplicateResourceException.class)
+    public ResponseEntity<Object> handleDuplicateResource(DuplicateResourceException ex, HttpServletRequest request) {
+        return buildResponse(HttpStatus.CONFLICT, ex.getMessage(), "duplicate", ex, request);
     }
 
     @ExceptionHandler(IllegalStateException.class)
-    public ResponseEntity<Object> handleIllegalState(IllegalStateException ex) {
-        return buildResponse(HttpStatus.BAD_REQUEST, ex.getMessage());
+    public ResponseEntity<Object> handleIllegalState(IllegalStateException ex, HttpServletRequest request) {
+        return buildResponse(HttpStatus.BAD_REQUEST, ex.getMessage(), "invalid_state", ex, request);
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Object> handleIllegalArgument(IllegalArgumentException ex, HttpServletRequest request) {
+        return buildResponse(HttpStatus.BAD_REQUEST, ex.getMessage(), "invalid_request", ex, request);
     }
 
     @ExceptionHandler(Exception.class)
-    public ResponseEntity<Object> handleGeneral(Exception ex) {
-        return buildResponse(HttpStatus.INTERNAL_SERVER_ERROR, "Unexpected error: " + ex.getMessage());
+    public ResponseEntity<Object> handleGeneral(Exception ex, HttpServletRequest request) {
+        return buildResponse(HttpStatus.INTERNAL_SERVER_ERROR, "Unexpected error: " + ex.getMessage(), "error", ex, request);
     }
 
-    private ResponseEntity<Object> buildResponse(HttpStatus status, String message) {
-        Map<String, Object> body = new HashMap<>();
-        body.put("timestamp", LocalDateTime.now());
-        body.put("status", status.value());
-        body.put("error", status.getReasonPhrase());
-        body.put("message", message);
+    private ResponseEntity<Object> buildResponse(HttpStatus status, String message, String outcome,
+                                                 Exception ex, HttpServletRequest request) {
+        ServerHttpObservationFilter.findObservationContext(request).ifPresent(context -> context.setError(ex));
+        meterRegistry.counter("library.errors",
+                "outcome", outcome,
+                "exception", ex.getClass().getSimpleName(),
+                "status", String.valueOf(status.value())).increment();
+        return buildResponse(status, message);
+    }
 
-        return new ResponseEntity<>(body, status);
+    private ResponseEntity<Object> buildResponse(HttpStatus status, String message) {
+        return new ResponseEntity<>(ErrorResponses.body(status, message), status);
     }
 }
@@ -0,0 +1,141 @@
+package com.example.library.hold;
+
+import com.example.library.event.HoldClosedEvent;
+import com.example.library.event.HoldPlacedEvent;
+import com.example.library.model.Hold;
+import com.example.library.repository.HoldRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory FIFO queues of waiting holds, one per book, that answer a hold's position and its
+ * queue's length without a count query. Who a returned book goes to is decided from the
+ * {@code hold} table, so these are only used for reporting.
+ * <p>
+ * Each queue is a skip list keyed by hold ID, so holds are ordered as they were placed and
+ * enqueue and cancel are lock-free O(log n) even for titles with thousands of holds. A position
+ * is the number of holds ahead, counted by walking the head of the queue, so it costs
+ * O(position) rather than O(queue). Queue lengths are kept in a counter because a skip list's
+ * size is itself a walk.
+ * <p>
+ * Empty queues are kept rather than removed, so adding a hold never races a queue being dropped;
+ * there is at most one per book that has ever been held. The queues are loaded from the database
+ * on startup and, like the other in-memory structures, only see holds placed on this node.
+ */
+@Slf4j
+@Component
+public class HoldQueues {
+    private static final int WARM_CHUNK_SIZE = 1000;
+
+    @Autowired
+    private HoldRepository holdRepository;
+
+    private final Map<Long, Queue> queues = new ConcurrentHashMap<>();
+    // Hold ID to book ID, for looking up a hold's position by ID alone
+    private final Map<Long, Long> books = new ConcurrentHashMap<>();
+
+    /**
+     * Adds a waiting hold to the back of its book's queue.
+     */
+    public void add(Long bookId, Long holdId, Long borrowerId) {
+        Queue queue = queues.computeIfAbsent(bookId, id -> new Queue());
+        if (queue.holds.putIfAbsent(holdId, borrowerId) == null) {
+            queue.length.incrementAndGet();
+        }
+        books.put(holdId, bookId);
+    }
+
+    /**
+     * Removes a hold from its book's queue, wherever it is.
+     */
+    public void remove(Long bookId, Long holdId) {
+        books.remove(holdId);
+        Queue queue = queues.get(bookId);
+        if (queue == null) {
+            return;
+        }
+        if (queue.holds.remove(holdId) != null) {
+            queue.length.decrementAndGet();
+        }
+    }
+
+    /**
+     * The book a waiting hold is for, or null if the hold is not waiting.
+     */
+    public Long bookOf(Long holdId) {
+        return books.get(holdId);
+    }
+
+    /**
+     * The hold's place in its queue, 1 being next in line, or 0 if it is not waiting.
+     */
+    public int position(Long bookId, Long holdId) {
+        Queue queue = queues.get(bookId);
+        if (queue == null || !queue.holds.containsKey(holdId)) {
+            return 0;
+        }
+        return queue.holds.headMap(holdId).size() + 1;
+    }
+
+    /**
+     * Number of holds waiting for the book.
+     */
+    public int length(Long bookId) {
+        Queue queue = queues.get(bookId);
+        return queue == null ? 0 : queue.length.get();
+    }
+
+    /**
+     * Drops holds that were fulfilled or cancelled, once that is committed.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onHoldClosed(HoldClosedEvent event) {
+        remove(event.getBookId(), event.getHoldId());
+    }
+
+    /**
+     * Takes back a hold queued by a transaction that then rolled back.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_ROLLBACK)
+    public void onHoldPlacedRolledBack(HoldPlacedEvent event) {
+        remove(event.getBookId(), event.getHoldId());
+    }
+
+    /**
+     * Loads the waiting holds from the database in keyset chunks.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warm() {
+        long start = System.nanoTime();
+        int count = 0;
+        long lastId = 0;
+        List<Hold> chunk;
+        do {
+            chunk = holdRepository.findWaitingAfter(lastId, Limit.of(WARM_CHUNK_SIZE));
+            for (Hold hold : chunk) {
+                add(hold.getBook().getId(), hold.getId(), hold.getBorrower().getId());
+                lastId = hold.getId();
+            }
+            count += chunk.size();
+        } while (chunk.size() == WARM_CHUNK_SIZE);
+        log.info("Hold queues loaded with {} waiting holds in {} ms", count, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static class Queue {
+        // Hold ID to borrower ID
+        final ConcurrentSkipListMap<Long, Long> holds = new ConcurrentSkipListMap<>();
+        final AtomicInteger length = new AtomicInteger();
+    }
+}
@@ -0,0 +1,279 @@
+package com.example.library.idempotency;
+
+import com.example.library.exception.ErrorResponses;
+import com.example.library.ratelimit.RateLimitFilter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.Principal;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Makes retried loans safe and cheap. A borrow, return or hold request that carries an
+ * {@code Idempotency-Key} header runs once; a retry with the same key gets the original response
+ * back, marked with {@code Idempotent-Replayed: true}, without reaching the controller or the
+ * database. A retried return therefore succeeds like the original instead of failing because the
+ * book is no longer borrowed, and a retried borrow cannot record a second loan.
+ * <p>
+ * The body is read into memory to fingerprint it, so keyed requests with a body over
+ * {@code library.idempotency.max-body-size} get 413, and other endpoints (bulk imports in
+ * particular) are not filtered at all. Responses below 500 are kept for
+ * {@code library.idempotency.ttl} in an in-memory store bounded to
+ * {@code library.idempotency.max-size} bytes; server errors are not kept, so they can be retried.
+ * A retry that arrives while the original is still running gets 409, and reusing a key for a
+ * different request (method, path or body) gets 422. Keys are only known to the node that served
+ * the original request, so retries should reach the same node.
+ * <p>
+ * Keys are scoped to the client that sent them: the authenticated principal or, without one, the
+ * remote address, as {@link RateLimitFilter} identifies clients. Two clients that happen to pick the
+ * same key therefore never see each other's responses.
+ * <p>
+ * The filter runs after {@link RateLimitFilter}, so the rate limit wins: a throttled request is
+ * rejected before its key is looked at, and its 429 or 503 is never kept and replayed for the key.
+ * Replays do count against the client's write budget.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 20) // After RateLimitFilter, so throttled requests never claim a key
+public class IdempotencyFilter extends OncePerRequestFilter {
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    static final int MAX_KEY_LENGTH = 255;
+    // Fixed per-entry cost on top of the key, fingerprint and body: object headers, map node, timestamps
+    private static final int ENTRY_OVERHEAD = 128;
+
+    // LibraryController's loan endpoints: borrow, return, place and cancel holds
+    private static final List<String> LOAN_ENDPOINTS = List.of(
+            "/api/borrowers/*/books/*/borrow",
+            "/api/borrowers/*/return/*",
+            "/api/borrowers/*/borrow",
+            "/api/borrowers/*/return",
+            "/api/borrowers/*/holds/*",
+            "/api/holds/*");
+    private static final AntPathMatcher PATH_MATCHER = new AntPathMatcher();
+
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${library.idempotency.ttl:PT24H}")
+    private Duration ttl;
+    @Value("${library.idempotency.max-size:64MB}")
+    private DataSize maxSize;
+    @Value("${library.idempotency.max-body-size:64KB}")
+    private DataSize maxBodySize;
+
+    private Cache<String, Entry> responses;
+
+    @Override
+    protected void initFilterBean() {
+        responses = Caffeine.newBuilder()
+                .maximumWeight(maxSize.toBytes())
+                .weigher((String key, Entry entry) -> 2 * key.length() + entry.weight())
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String method = request.getMethod();
+        if (request.getHeader(HEADER) == null || !("POST".equals(method) || "DELETE".equals(method))) {
+            return true;
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return LOAN_ENDPOINTS.stream().noneMatch(pattern -> PATH_MATCHER.match(pattern, path));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String header = request.getHeader(HEADER);
+        if (header.isBlank() || header.length() > MAX_KEY_LENGTH) {
+            sendError(response, HttpStatus.BAD_REQUEST,
+                    HEADER + " must be 1 to " + MAX_KEY_LENGTH + " characters", "invalid");
+            return;
+        }
+        String key = client(request) + '\n' + header;
+        // Checked before and after reading, since a chunked body has no declared length
+        long limit = maxBodySize.toBytes();
+        CachedBodyRequest cachedRequest = null;
+        if (request.getContentLengthLong() <= limit) {
+            cachedRequest = new CachedBodyRequest(request, limit);
+        }
+        if (cachedRequest == null || cachedRequest.body.length > limit) {
+            sendError(response, HttpStatus.PAYLOAD_TOO_LARGE,
+                    "Requests with an " + HEADER + " are limited to " + limit + " bytes", "too_large");
+            return;
+        }
+        byte[] fingerprint = fingerprint(request, cachedRequest.body);
+
+        Entry claimed = new Entry(fingerprint, null);
+        Entry existing = responses.asMap().putIfAbsent(key, claimed);
+        if (existing != null) {
+            if (!Arrays.equals(existing.fingerprint(), fingerprint)) {
+                sendError(response, HttpStatus.UNPROCESSABLE_ENTITY,
+                        HEADER + " was already used for a different request", "mismatch");
+            } else if (existing.response() == null) {
+                sendError(response, HttpStatus.CONFLICT,
+                        "A request with this " + HEADER + " is still in progress", "in_progress");
+            } else {
+                replay(response, existing.response());
+            }
+            return;
+        }
+
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        boolean kept = false;
+        try {
+            chain.doFilter(cachedRequest, wrapper);
+            if (wrapper.getStatus() < 500) {
+                responses.put(key, new Entry(fingerprint,
+                        new StoredResponse(wrapper.getStatus(), wrapper.getContentType(), wrapper.getContentAsByteArray())));
+                kept = true;
+            }
+        } finally {
+            if (!kept) {
+                responses.asMap().remove(key, claimed);
+            }
+            wrapper.copyBodyToResponse();
+        }
+    }
+
+    private void replay(HttpServletResponse response, StoredResponse stored) throws IOException {
+        meterRegistry.counter("library.idempotency", "outcome", "replayed").increment();
+        response.setStatus(stored.status());
+        if (stored.contentType() != null) {
+            response.setContentType(stored.contentType());
+        }
+        response.setHeader(REPLAYED_HEADER, "true");
+        response.setContentLength(stored.body().length);
+        response.getOutputStream().write(stored.body());
+    }
+
+    private void sendError(HttpServletResponse response, HttpStatus status, String message, String outcome)
+            throws IOException {
+        meterRegistry.counter("library.idempotency", "outcome", outcome).increment();
+        ErrorResponses.write(response, objectMapper, status, message);
+    }
+
+    /**
+     * Who sent the request, with a prefix so that a principal cannot pose as an address.
+     */
+    private static String client(HttpServletRequest request) {
+        Principal principal = request.getUserPrincipal();
+        return principal != null ? "principal:" + principal.getName() : "address:" + request.getRemoteAddr();
+    }
+
+    private static byte[] fingerprint(HttpServletRequest request, byte[] body) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((request.getMethod() + ' ' + request.getRequestURI() + '\n').getBytes(StandardCharsets.UTF_8));
+            return digest.digest(body);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * What a key is stored against: the request it was first used for and, once that has completed,
+     * its response.
+     */
+    private record Entry(byte[] fingerprint, StoredResponse response) {
+        int weight() {
+            return ENTRY_OVERHEAD + fingerprint.length + (response == null ? 0 : response.body().length);
+        }
+    }
+
+    private record StoredResponse(int status, String contentType, byte[] body) {
+    }
+
+    /**
+     * Reads the body up front, so it can be fingerprinted, and serves it again to the controller.
+     * Reads at most one byte past the limit, so an oversized body is detected without buffering it.
+     */
+    private static class CachedBodyRequest extends HttpServletRequestWrapper {
+        final byte[] body;
+
+        CachedBodyRequest(HttpServletRequest request, long limit) throws IOException {
+            super(request);
+            body = request.getInputStream().readNBytes((int) Math.min(limit + 1, Integer.MAX_VALUE - 8));
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return in.read(b, off, len);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                // The whole body is already in memory, so it is all available at once
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    try {
+                        if (!isFinished()) {
+                            listener.onDataAvailable();
+                        }
+                        if (isFinished()) {
+                            listener.onAllDataRead();
+                        }
+                    } catch (IOException | RuntimeException ex) {
+                        listener.onError(ex);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding();
+            return new BufferedReader(new InputStreamReader(getInputStream(),
+                    encoding == null ? StandardCharsets.UTF_8 : Charset.forName(encoding)));
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.library.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import org.springframework.stereotype.Component;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+
+/**
+ * Moves every ID sequence past the IDs already in its table.
+ * <p>
+ * Books, borrowers and loans used to get identity IDs, and the sequences that replaced them start
+ * at 1 (V2), so on a database that predates the sequences the next inserts would reuse existing
+ * IDs. Hibernate's pooled optimizer hands out the 50 IDs up to each value it reads from a
+ * sequence, so the sequence restarts 50 past the highest ID. On a new database this is a no-op.
+ */
+@Component
+public class V3__AlignIdSequences extends BaseJavaMigration {
+    private static final int ALLOCATION_SIZE = 50;
+
+    // Sequence to the table whose IDs it generates
+    private static final Map<String, String> SEQUENCES = Map.of(
+            "book_seq", "book",
+            "borrower_seq", "borrower",
+            "borrowing_record_seq", "borrowing_record",
+            "hold_seq", "hold",
+            "loan_event_seq", "loan_event",
+            "overdue_notice_seq", "overdue_notice");
+
+    @Override
+    public void migrate(Context context) throws SQLException {
+        try (Statement statement = context.getConnection().createStatement()) {
+            for (Map.Entry<String, String> sequence : SEQUENCES.entrySet()) {
+                long maxId;
+                try (ResultSet result = statement.executeQuery(
+                        "select coalesce(max(id), 0) from " + sequence.getValue())) {
+                    result.next();
+                    maxId = result.getLong(1);
+                }
+                statement.execute("alter sequence " + sequence.getKey() + " restart with " + (maxId + ALLOCATION_SIZE));
+            }
+        }
+    }
+}
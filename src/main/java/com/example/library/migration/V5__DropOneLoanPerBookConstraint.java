@@ -0,0 +1,64 @@
+package com.example.library.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import org.springframework.stereotype.Component;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Drops the unique constraint on {@code borrowing_record.book_id}.
+ * <p>
+ * The loan used to be a {@code @OneToOne} to its book, so ddl-auto made the column unique and the
+ * second loan of any book fails on it. Hibernate generated the constraint name, so it differs per
+ * database; this looks up every single-column unique constraint on the column and drops it. The
+ * foreign key to the book is dropped first and added back afterwards, because H2 would otherwise
+ * keep the unique index to back it.
+ */
+@Component
+public class V5__DropOneLoanPerBookConstraint extends BaseJavaMigration {
+
+    private static final String CONSTRAINTS_ON_BOOK_ID = """
+            select tc.constraint_name, tc.constraint_type
+            from information_schema.table_constraints tc
+            join information_schema.key_column_usage kcu
+              on kcu.constraint_schema = tc.constraint_schema and kcu.constraint_name = tc.constraint_name
+            where tc.table_schema = current_schema
+              and lower(tc.table_name) = 'borrowing_record'
+              and tc.constraint_type in ('UNIQUE', 'FOREIGN KEY')
+            group by tc.constraint_name, tc.constraint_type
+            having count(*) = 1 and max(lower(kcu.column_name)) = 'book_id'
+            """;
+
+    @Override
+    public void migrate(Context context) throws SQLException {
+        try (Statement statement = context.getConnection().createStatement()) {
+            List<String> foreignKeys = new ArrayList<>();
+            List<String> uniqueConstraints = new ArrayList<>();
+            try (ResultSet result = statement.executeQuery(CONSTRAINTS_ON_BOOK_ID)) {
+                while (result.next()) {
+                    if ("UNIQUE".equals(result.getString(2))) {
+                        uniqueConstraints.add(result.getString(1));
+                    } else {
+                        foreignKeys.add(result.getString(1));
+                    }
+                }
+            }
+            if (uniqueConstraints.isEmpty()) {
+                return;
+            }
+            for (String constraint : foreignKeys) {
+                statement.execute("alter table borrowing_record drop constraint \"" + constraint + "\"");
+            }
+            for (String constraint : uniqueConstraints) {
+                statement.execute("alter table borrowing_record drop constraint \"" + constraint + "\"");
+            }
+            statement.execute("alter table borrowing_record add constraint fk_borrowing_record_book "
+                    + "foreign key (book_id) references book");
+        }
+    }
+}
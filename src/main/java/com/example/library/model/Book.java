@@ -1,19 +1,32 @@
 package com.example.library.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
 import jakarta.validation.constraints.NotBlank;
 import lombok.*;
 
+import java.time.Instant;
+
 @Entity
+@Table(indexes = {
+        // Delta sync reads changed books in (updated_at, id) order
+        @Index(name = "idx_book_updated", columnList = "updated_at, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Book {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Pooled sequence so Hibernate can hand out IDs without a round trip per insert and batch the inserts
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "book_seq")
+    @SequenceGenerator(name = "book_seq", sequenceName = "book_seq", allocationSize = 50)
     private Long id;
 
     @NotBlank
@@ -26,4 +39,15 @@ public class Book {
     private String author;
 
     private boolean isBorrowed;
+
+    // When the book was registered or last borrowed or returned; only used to find changes for delta sync
+    @JsonIgnore
+    private Instant updatedAt;
+
+    @PrePersist
+    void onRegister() {
+        if (updatedAt == null) {
+            updatedAt = Instant.now();
+        }
+    }
 }
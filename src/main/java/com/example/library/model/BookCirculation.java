@@ -0,0 +1,33 @@
+package com.example.library.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Version;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * Read model: circulation state of one book, projected from the loan event log.
+ * Reporting reads this table instead of the book and loan rows that checkouts write.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookCirculation {
+    @Id
+    private Long bookId;
+
+    private boolean onLoan;
+    private Long currentBorrowerId;
+    private long timesBorrowed;
+    private Instant lastBorrowedAt;
+    private Instant lastReturnedAt;
+
+    // Also tells Spring Data whether a row is new, so saving a projected row does not select it first
+    @Version
+    @JsonIgnore
+    private Long version;
+}
@@ -11,7 +11,8 @@ import lombok.*;
 @AllArgsConstructor
 public class Borrower {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "borrower_seq")
+    @SequenceGenerator(name = "borrower_seq", sequenceName = "borrower_seq", allocationSize = 50)
     private Long id;
 
     @NotBlank
@@ -0,0 +1,30 @@
+package com.example.library.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Version;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * Read model: loan activity of one borrower, projected from the loan event log.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BorrowerActivity {
+    @Id
+    private Long borrowerId;
+
+    private long activeLoans;
+    private long totalLoans;
+    private long totalReturns;
+    private Instant lastActivityAt;
+
+    @Version
+    @JsonIgnore
+    private Long version;
+}
@@ -6,20 +6,40 @@ import lombok.*;
 import java.time.LocalDate;
 
 @Entity
+@Table(indexes = {
+        // Serves the active-loan lookup in returnBook: book_id = ? AND return_date IS NULL
+        @Index(name = "idx_borrowing_record_book_return", columnList = "book_id, return_date"),
+        // Serves a borrower's loan history, newest first, within a date range
+        @Index(name = "idx_borrowing_record_borrower_date", columnList = "borrower_id, borrow_date"),
+        // Lets the overdue job walk open loans in ID order without scanning returned ones
+        @Index(name = "idx_borrowing_record_open", columnList = "return_date, id"),
+        // Covers the analytics reports over a borrow date window without reading the table
+        @Index(name = "idx_borrowing_record_date", columnList = "borrow_date, book_id, return_date")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class BorrowingRecord {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Pooled sequence, like Book and Borrower, so the records of a batch checkout go out in one JDBC batch
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "borrowing_record_seq")
+    @SequenceGenerator(name = "borrowing_record_seq", sequenceName = "borrowing_record_seq", allocationSize = 50)
     private Long id;
 
-    @ManyToOne
+    // Lazy: most uses need only the foreign keys. Queries that need the borrower or book
+    // select the columns they need (see LoanSummary) instead of loading the entities.
+    @ManyToOne(fetch = FetchType.LAZY)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private Borrower borrower;
 
-    @OneToOne
+    // A book is lent out many times over its life, one record per loan
+    @ManyToOne(fetch = FetchType.LAZY)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private Book book;
 
     private LocalDate borrowDate;
+    private LocalDate dueDate;
     private LocalDate returnDate;
 }
@@ -0,0 +1,33 @@
+package com.example.library.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * A loan event that a sink rejected on its own, such as one its consumer fails to validate. The event
+ * itself stays in the loan event log, so it can be looked up by ID, and once the consumer is fixed the
+ * outbox dispatcher can replay it.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeadLetter {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "dead_letter_seq")
+    @SequenceGenerator(name = "dead_letter_seq", sequenceName = "dead_letter_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(length = 64)
+    private String sink;
+
+    private Long eventId;
+    private int attempts;
+
+    @Column(length = 1000)
+    private String error;
+
+    private Instant failedAt;
+}
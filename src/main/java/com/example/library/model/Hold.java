@@ -0,0 +1,50 @@
+package com.example.library.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * A borrower's place in the queue for a borrowed book. Holds wait in ID order; when the book is
+ * returned it is lent straight to the oldest waiting hold.
+ */
+@Entity
+@Table(indexes = {
+        // Startup warm-up reads waiting holds in ID order
+        @Index(name = "idx_hold_status", columnList = "status, id"),
+        // A returned book goes to its oldest waiting hold
+        @Index(name = "idx_hold_book_status", columnList = "book_id, status, id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Hold {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "hold_seq")
+    @SequenceGenerator(name = "hold_seq", sequenceName = "hold_seq", allocationSize = 50)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private Book book;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private Borrower borrower;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16)
+    private Status status;
+
+    private Instant placedAt;
+    private Instant closedAt;
+
+    public enum Status {
+        WAITING,
+        FULFILLED,
+        CANCELLED
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.library.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Version;
+import lombok.*;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * Progress of a chunked background job: the last ID it processed in the run for {@code runDate}, or, for the
+ * loan event projection, the last event it applied (lastRecordedAt, lastId). Saved in the same transaction as
+ * each chunk, so a restarted job resumes after the last committed chunk. The version makes two nodes running the
+ * same chunk conflict, so only one of them commits it; the projection instead locks the row for the chunk.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class JobCheckpoint {
+    @Id
+    private String job;
+
+    private LocalDate runDate;
+    private Long lastId;
+    private Instant lastRecordedAt;
+    private boolean completed;
+    private Instant updatedAt;
+
+    @Version
+    private Long version;
+}
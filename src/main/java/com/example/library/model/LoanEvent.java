@@ -0,0 +1,38 @@
+package com.example.library.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.Immutable;
+
+import java.time.Instant;
+
+/**
+ * One borrow or return, appended to the loan event log in the same transaction as the change itself.
+ * Rows are never updated or deleted. IDs are plain columns rather than associations so the log can be
+ * read (and archived) without touching the book, borrower or loan tables.
+ */
+@Entity
+@Immutable
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoanEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "loan_event_seq")
+    @SequenceGenerator(name = "loan_event_seq", sequenceName = "loan_event_seq", allocationSize = 50)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16)
+    private Type type;
+
+    private Long loanId;
+    private Long bookId;
+    private Long borrowerId;
+    private Instant recordedAt;
+
+    public enum Type {
+        BORROWED,
+        RETURNED
+    }
+}
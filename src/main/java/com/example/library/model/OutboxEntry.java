@@ -0,0 +1,30 @@
+package com.example.library.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * A loan event that a consumer of the log has not processed yet. Entries are inserted in the same
+ * transaction as their event and deleted once the consumer is done with it, so an event is pending
+ * for every consumer as soon as it commits, however late that is.
+ */
+@Entity
+@Table(uniqueConstraints = {
+        // Consumers read their pending events in event ID order
+        @UniqueConstraint(name = "uk_outbox_entry_consumer_event", columnNames = {"consumer", "event_id"})
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OutboxEntry {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "outbox_entry_seq")
+    @SequenceGenerator(name = "outbox_entry_seq", sequenceName = "outbox_entry_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(length = 64, nullable = false)
+    private String consumer;
+
+    @Column(nullable = false)
+    private Long eventId;
+}
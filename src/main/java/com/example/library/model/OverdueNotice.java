@@ -0,0 +1,32 @@
+package com.example.library.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * A notice raised for a loan that was still open after its due date, with the fine accrued so far.
+ * At most one notice per loan per day, so re-running the nightly job cannot duplicate notices.
+ */
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_overdue_notice_loan_date", columnNames = {"loan_id", "notice_date"}))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OverdueNotice {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "overdue_notice_seq")
+    @SequenceGenerator(name = "overdue_notice_seq", sequenceName = "overdue_notice_seq", allocationSize = 50)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private BorrowingRecord loan;
+
+    private LocalDate noticeDate;
+    private long daysOverdue;
+    private BigDecimal fine;
+}
@@ -0,0 +1,50 @@
+package com.example.library.outbox;
+
+import com.example.library.model.LoanEvent;
+import com.example.library.model.OutboxEntry;
+import com.example.library.projection.LoanEventProjector;
+import com.example.library.repository.LoanEventRepository;
+import com.example.library.repository.OutboxEntryRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Appends loan events to the log in the caller's transaction, together with an {@link OutboxEntry}
+ * for the {@link LoanEventProjector} and for each {@link LoanEventSink}. The entries, not the events'
+ * position in the log, tell each consumer what it still has to process, so an event is picked up
+ * however long its transaction takes to commit.
+ */
+@Component
+public class LoanEventOutbox {
+    @Autowired
+    private LoanEventRepository loanEventRepository;
+    @Autowired
+    private OutboxEntryRepository outboxEntryRepository;
+    @Autowired(required = false)
+    private List<LoanEventSink> sinks = List.of();
+
+    public void append(LoanEvent event) {
+        append(List.of(event));
+    }
+
+    /**
+     * Saves the events and marks them pending for the projection and every sink; both are inserted as
+     * JDBC batches.
+     */
+    public void append(List<LoanEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        loanEventRepository.saveAll(events);
+        List<OutboxEntry> entries = new ArrayList<>(events.size() * (sinks.size() + 1));
+        events.forEach(event -> entries.add(new OutboxEntry(null, LoanEventProjector.JOB_NAME, event.getId())));
+        for (LoanEventSink sink : sinks) {
+            String consumer = OutboxDispatcher.consumer(sink);
+            events.forEach(event -> entries.add(new OutboxEntry(null, consumer, event.getId())));
+        }
+        outboxEntryRepository.saveAll(entries);
+    }
+}
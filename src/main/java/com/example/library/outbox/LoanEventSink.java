@@ -0,0 +1,25 @@
+package com.example.library.outbox;
+
+import com.example.library.model.LoanEvent;
+
+import java.util.List;
+
+/**
+ * A downstream consumer of borrows and returns, such as an audit trail, email receipts or a webhook.
+ * Beans implementing this are fed by the {@link OutboxDispatcher}, each from its own outbox entries.
+ */
+public interface LoanEventSink {
+    /**
+     * Stable name of the sink; it keys the sink's outbox entries and dead letters.
+     */
+    String name();
+
+    /**
+     * Delivers a batch of events in event ID order. Delivery is at least once, so the same event may
+     * arrive again; consumers should ignore event IDs they have already seen.
+     *
+     * @throws RejectedEventsException If the sink accepted the batch except for events it will never accept
+     * @throws RuntimeException If the batch was not accepted; it is retried as a whole until it is
+     */
+    void deliver(List<LoanEvent> events);
+}
@@ -0,0 +1,238 @@
+package com.example.library.outbox;
+
+import com.example.library.model.DeadLetter;
+import com.example.library.model.LoanEvent;
+import com.example.library.model.OutboxEntry;
+import com.example.library.repository.DeadLetterRepository;
+import com.example.library.repository.LoanEventRepository;
+import com.example.library.repository.OutboxEntryRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delivers the loan event log to every {@link LoanEventSink}, as a transactional outbox.
+ * <p>
+ * Borrows and returns only append their event, and an {@link OutboxEntry} per sink, in their own
+ * transaction (see {@link LoanEventOutbox}), so side effects such as audit trails, receipts and webhooks
+ * add nothing to checkout latency or lock hold times, and a slow or failing consumer cannot hold up a
+ * checkout. Every {@code library.outbox.interval} each sink is sent its pending events in batches of up
+ * to {@code library.outbox.batch-size}, and the entries of a batch are deleted once it is accepted. An
+ * event is pending from the moment its transaction commits, so none is skipped however late it commits.
+ * <p>
+ * Each sink is served by a thread of its own, so a slow sink holds up neither the other sinks nor the
+ * shared task scheduler. The next batch is only read once the sink has accepted the previous one.
+ * That is the backpressure: a slow sink falls behind in the outbox rather than in memory. No
+ * transaction or connection is held during delivery.
+ * <p>
+ * A failed batch stays pending and is retried with exponential backoff from
+ * {@code library.outbox.initial-backoff} up to {@code library.outbox.max-backoff}, for as long as the
+ * sink keeps failing. Only events the sink rejects individually ({@link RejectedEventsException}) are
+ * recorded as {@link DeadLetter}s; {@link #replayDeadLetters} makes them pending again.
+ * <p>
+ * Delivery is at least once: a crash between delivery and deleting the entries sends the batch again,
+ * and two nodes may both send a batch before either deletes it.
+ */
+@Slf4j
+@Component
+public class OutboxDispatcher implements DisposableBean {
+    static final String CONSUMER_PREFIX = "outbox-";
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    @Autowired
+    private LoanEventRepository loanEventRepository;
+    @Autowired
+    private OutboxEntryRepository outboxEntryRepository;
+    @Autowired
+    private DeadLetterRepository deadLetterRepository;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Autowired(required = false)
+    private List<LoanEventSink> sinks = List.of();
+
+    @Value("${library.outbox.interval:PT1S}")
+    private Duration interval;
+    @Value("${library.outbox.batch-size:100}")
+    private int batchSize;
+    @Value("${library.outbox.initial-backoff:PT1S}")
+    private Duration initialBackoff;
+    @Value("${library.outbox.max-backoff:PT5M}")
+    private Duration maxBackoff;
+
+    private Clock clock = Clock.systemUTC();
+
+    // Sink name to the state of its failing batch; healthy sinks have none
+    private final Map<String, Retry> retries = new ConcurrentHashMap<>();
+    // One single-threaded scheduler per sink
+    private final List<ScheduledExecutorService> workers = new ArrayList<>();
+
+    /**
+     * The name of the sink's outbox entries.
+     */
+    static String consumer(LoanEventSink sink) {
+        return CONSUMER_PREFIX + sink.name();
+    }
+
+    /**
+     * Starts dispatching to each sink every {@code library.outbox.interval} on its own thread.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        for (LoanEventSink sink : sinks) {
+            ScheduledExecutorService worker = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform()
+                    .name(consumer(sink)).daemon().factory());
+            worker.scheduleWithFixedDelay(() -> {
+                try {
+                    dispatch(sink);
+                } catch (RuntimeException e) {
+                    // An exception would cancel the schedule; the batch is still pending for the next run
+                    log.error("Outbox dispatch to {} failed", sink.name(), e);
+                }
+            }, 0, interval.toNanos(), TimeUnit.NANOSECONDS);
+            workers.add(worker);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        workers.forEach(ExecutorService::shutdownNow);
+    }
+
+    /**
+     * Sends each sink the events it has not accepted yet, one sink after the other.
+     *
+     * @return The number of events delivered or dead-lettered, across all sinks
+     */
+    public long dispatch() {
+        long dispatched = 0;
+        for (LoanEventSink sink : sinks) {
+            dispatched += dispatch(sink);
+        }
+        return dispatched;
+    }
+
+    /**
+     * Sends the sink the events it has not accepted yet, unless it is backing off after a failure.
+     *
+     * @return The number of events delivered or dead-lettered
+     */
+    public long dispatch(LoanEventSink sink) {
+        Retry retry = retries.get(sink.name());
+        if (retry != null && Instant.now(clock).isBefore(retry.nextAttemptAt())) {
+            return 0;
+        }
+        long dispatched = 0;
+        int batch;
+        do {
+            batch = dispatchBatch(sink);
+            dispatched += batch;
+        } while (batch == batchSize);
+        return dispatched;
+    }
+
+    /**
+     * Makes the sink's dead letters pending again, for instance once its consumer has been fixed.
+     *
+     * @param sinkName The {@link LoanEventSink#name()} of the sink
+     * @return The number of events that are pending again
+     */
+    public int replayDeadLetters(String sinkName) {
+        String consumer = CONSUMER_PREFIX + sinkName;
+        return transactionTemplate.execute(status -> {
+            List<DeadLetter> deadLetters = deadLetterRepository.findBySink(sinkName);
+            if (deadLetters.isEmpty()) {
+                return 0;
+            }
+            Set<Long> eventIds = new HashSet<>();
+            deadLetters.forEach(deadLetter -> eventIds.add(deadLetter.getEventId()));
+            // An event dead-lettered twice, or already pending again, needs only one entry
+            outboxEntryRepository.findPendingEventIds(consumer, eventIds).forEach(eventIds::remove);
+            outboxEntryRepository.saveAll(eventIds.stream().map(id -> new OutboxEntry(null, consumer, id)).toList());
+            deadLetterRepository.deleteAllInBatch(deadLetters);
+            log.info("Replaying {} dead-lettered loan events to {}", eventIds.size(), sinkName);
+            return eventIds.size();
+        });
+    }
+
+    /**
+     * Sends the sink its oldest pending batch and deletes the batch's entries once it is accepted.
+     *
+     * @return The number of events delivered or dead-lettered, 0 if there were none or the batch will be retried
+     */
+    private int dispatchBatch(LoanEventSink sink) {
+        String consumer = consumer(sink);
+        List<LoanEvent> events = loanEventRepository.findPending(consumer, Limit.of(batchSize));
+        if (events.isEmpty()) {
+            return 0;
+        }
+
+        RejectedEventsException rejection = null;
+        try {
+            sink.deliver(events);
+        } catch (RejectedEventsException e) {
+            rejection = e;
+        } catch (RuntimeException e) {
+            int attempts = retries.containsKey(sink.name()) ? retries.get(sink.name()).attempts() + 1 : 1;
+            Duration backoff = initialBackoff.multipliedBy(1L << Math.min(attempts - 1, 20));
+            if (backoff.compareTo(maxBackoff) > 0) {
+                backoff = maxBackoff;
+            }
+            retries.put(sink.name(), new Retry(attempts, Instant.now(clock).plus(backoff)));
+            meterRegistry.counter("library.outbox.failures", "sink", sink.name()).increment();
+            log.warn("Delivering {} loan events to {} failed (attempt {}), retrying in {}: {}",
+                    events.size(), sink.name(), attempts, backoff, e.toString());
+            return 0;
+        }
+        retries.remove(sink.name());
+
+        Instant now = Instant.now(clock);
+        Set<Long> rejected = rejection != null ? rejection.getEventIds() : Set.of();
+        String reason = rejection != null ? truncate(rejection.toString()) : null;
+        List<DeadLetter> deadLetters = events.stream()
+                .filter(event -> rejected.contains(event.getId()))
+                .map(event -> new DeadLetter(null, sink.name(), event.getId(), 1, reason, now))
+                .toList();
+        List<Long> eventIds = events.stream().map(LoanEvent::getId).toList();
+        transactionTemplate.executeWithoutResult(status -> {
+            deadLetterRepository.saveAll(deadLetters);
+            outboxEntryRepository.deleteByConsumerAndEventIds(consumer, eventIds);
+        });
+        meterRegistry.counter("library.outbox.delivered", "sink", sink.name()).increment(events.size() - deadLetters.size());
+        if (!deadLetters.isEmpty()) {
+            meterRegistry.counter("library.outbox.dead-lettered", "sink", sink.name()).increment(deadLetters.size());
+            log.error("{} rejected loan events {}: {}", sink.name(),
+                    deadLetters.stream().map(DeadLetter::getEventId).toList(), reason);
+        }
+        return events.size();
+    }
+
+    private static String truncate(String error) {
+        return error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+    }
+
+    private record Retry(int attempts, Instant nextAttemptAt) {
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.library.outbox;
+
+import lombok.Getter;
+
+import java.util.Set;
+
+/**
+ * Thrown by a {@link LoanEventSink} that accepted a batch except for some events it will never accept,
+ * for instance because its consumer fails to validate them. Those events are dead-lettered and the
+ * rest of the batch counts as delivered.
+ */
+@Getter
+public class RejectedEventsException extends RuntimeException {
+    private final Set<Long> eventIds;
+
+    public RejectedEventsException(Set<Long> eventIds, String message) {
+        super(message);
+        this.eventIds = Set.copyOf(eventIds);
+    }
+}
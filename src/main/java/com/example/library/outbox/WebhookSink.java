@@ -0,0 +1,95 @@
+package com.example.library.outbox;
+
+import com.example.library.model.LoanEvent;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClient;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Posts batches of loan events as a JSON array to {@code library.outbox.webhook.url}, such as the
+ * campus system's endpoint. A 4xx response other than 408 or 429 means the endpoint refuses the
+ * content: the events are then posted one by one, and those refused on their own are rejected for good.
+ * Any other response than 2xx, or no response within {@code library.outbox.webhook.timeout}, fails the
+ * batch so that it is retried.
+ */
+@Component
+@ConditionalOnProperty("library.outbox.webhook.url")
+public class WebhookSink implements LoanEventSink {
+    @Autowired
+    private RestClient.Builder restClientBuilder;
+
+    @Value("${library.outbox.webhook.url}")
+    private String url;
+    @Value("${library.outbox.webhook.timeout:PT5S}")
+    private Duration timeout;
+
+    private RestClient restClient;
+
+    @PostConstruct
+    void init() {
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(timeout);
+        requestFactory.setReadTimeout(timeout);
+        restClient = restClientBuilder.requestFactory(requestFactory).baseUrl(url).build();
+    }
+
+    @Override
+    public String name() {
+        return "webhook";
+    }
+
+    @Override
+    public void deliver(List<LoanEvent> events) {
+        try {
+            post(events);
+        } catch (HttpClientErrorException e) {
+            if (!isRefusal(e)) {
+                throw e;
+            }
+            Set<Long> rejected = new HashSet<>();
+            if (events.size() == 1) {
+                rejected.add(events.get(0).getId());
+            } else {
+                for (LoanEvent event : events) {
+                    try {
+                        post(List.of(event));
+                    } catch (HttpClientErrorException single) {
+                        if (!isRefusal(single)) {
+                            throw single;
+                        }
+                        rejected.add(event.getId());
+                    }
+                }
+            }
+            if (!rejected.isEmpty()) {
+                throw new RejectedEventsException(rejected, e.getStatusCode() + " " + e.getResponseBodyAsString());
+            }
+        }
+    }
+
+    private void post(List<LoanEvent> events) {
+        restClient.post()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(events)
+                .retrieve()
+                .toBodilessEntity();
+    }
+
+    // 408 and 429 ask to try again later; any other 4xx refuses the request itself
+    private static boolean isRefusal(HttpClientErrorException e) {
+        return !e.getStatusCode().isSameCodeAs(HttpStatus.REQUEST_TIMEOUT)
+                && !e.getStatusCode().isSameCodeAs(HttpStatus.TOO_MANY_REQUESTS);
+    }
+}
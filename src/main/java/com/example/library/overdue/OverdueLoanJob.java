@@ -0,0 +1,144 @@
+package com.example.library.overdue;
+
+import com.example.library.dto.OverdueLoan;
+import com.example.library.model.JobCheckpoint;
+import com.example.library.model.OverdueNotice;
+import com.example.library.repository.BorrowingRecordRepository;
+import com.example.library.repository.JobCheckpointRepository;
+import com.example.library.repository.OverdueNoticeRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.Period;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Nightly job that raises an {@link OverdueNotice}, with the fine accrued so far, for every open loan past its due date.
+ * <p>
+ * Open loans are read in keyset chunks of {@code library.overdue.chunk-size}, in ID order. Each chunk is one short
+ * transaction that reads the chunk, inserts its notices in one batch and advances the {@link JobCheckpoint}. Memory
+ * stays constant however many loans are open. No transaction outlives a chunk, and loans are only read, so borrows and
+ * returns never wait on the job.
+ * <p>
+ * The job is triggered every quarter of an hour from {@code library.overdue.cron} (02:00 onwards) and returns at once
+ * when today's checkpoint is already complete, so a run that crashed or failed resumes after its last committed chunk
+ * on the next trigger of the same day, whether or not the application was restarted.
+ */
+@Slf4j
+@Component
+public class OverdueLoanJob {
+    static final String JOB_NAME = "overdue-loans";
+
+    @Autowired
+    private BorrowingRecordRepository borrowingRecordRepository;
+    @Autowired
+    private OverdueNoticeRepository overdueNoticeRepository;
+    @Autowired
+    private JobCheckpointRepository jobCheckpointRepository;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${library.overdue.chunk-size:1000}")
+    private int chunkSize;
+    @Value("${library.overdue.fine-per-day:0.25}")
+    private BigDecimal finePerDay;
+    @Value("${library.loans.period:P14D}")
+    private Period loanPeriod;
+
+    private Clock clock = Clock.systemDefaultZone();
+
+    /**
+     * Runs the job for today, resuming today's run if it was interrupted, unless it has already completed.
+     */
+    @Scheduled(cron = "${library.overdue.cron:0 */15 2-23 * * *}")
+    public void run() {
+        LocalDate today = LocalDate.now(clock);
+        if (isCompleted(today)) {
+            return;
+        }
+        Timer.Sample sample = Timer.start(meterRegistry);
+        long notices = process(today);
+        long elapsedNanos = sample.stop(Timer.builder("library.overdue")
+                .description("Time spent in the overdue-loan job")
+                .register(meterRegistry));
+        log.info("Overdue job raised {} notices in {} ms", notices, elapsedNanos / 1_000_000);
+    }
+
+    /**
+     * Whether the run for the given day has processed every overdue loan.
+     */
+    public boolean isCompleted(LocalDate day) {
+        return jobCheckpointRepository.findById(JOB_NAME)
+                .filter(checkpoint -> day.equals(checkpoint.getRunDate()) && checkpoint.isCompleted())
+                .isPresent();
+    }
+
+    /**
+     * Raises notices for every loan overdue on the given day, chunk by chunk.
+     *
+     * @param today The day the notices are for
+     * @return The number of notices raised by this call (0 if the day's run had already completed)
+     */
+    public long process(LocalDate today) {
+        long raised = 0;
+        Long processed;
+        while ((processed = transactionTemplate.execute(status -> processChunk(today))) != null) {
+            raised += processed;
+        }
+        return raised;
+    }
+
+    /**
+     * Processes the chunk after the checkpoint and advances it.
+     *
+     * @return The number of notices raised, or null once the day's run is complete
+     */
+    private Long processChunk(LocalDate today) {
+        JobCheckpoint checkpoint = jobCheckpointRepository.findById(JOB_NAME)
+                .orElseGet(() -> new JobCheckpoint(JOB_NAME, null, 0L, null, false, null, null));
+        if (!today.equals(checkpoint.getRunDate())) {
+            // A new day starts a new run from the first loan
+            checkpoint.setRunDate(today);
+            checkpoint.setLastId(0L);
+            checkpoint.setCompleted(false);
+        }
+        if (checkpoint.isCompleted()) {
+            return null;
+        }
+
+        List<OverdueLoan> loans = borrowingRecordRepository.findOverdueAfter(
+                checkpoint.getLastId(), today, today.minus(loanPeriod), Limit.of(chunkSize));
+        List<OverdueNotice> notices = new ArrayList<>(loans.size());
+        for (OverdueLoan loan : loans) {
+            LocalDate due = loan.getDueDate() != null ? loan.getDueDate() : loan.getBorrowDate().plus(loanPeriod);
+            long days = ChronoUnit.DAYS.between(due, today);
+            notices.add(new OverdueNotice(null, borrowingRecordRepository.getReferenceById(loan.getLoanId()),
+                    today, days, finePerDay.multiply(BigDecimal.valueOf(days))));
+        }
+        overdueNoticeRepository.saveAll(notices);
+
+        if (!loans.isEmpty()) {
+            checkpoint.setLastId(loans.get(loans.size() - 1).getLoanId());
+        }
+        // A short chunk means there are no more overdue loans after it
+        checkpoint.setCompleted(loans.size() < chunkSize);
+        checkpoint.setUpdatedAt(Instant.now(clock));
+        jobCheckpointRepository.save(checkpoint);
+        return (long) notices.size();
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.library.projection;
+
+import com.example.library.model.BookCirculation;
+import com.example.library.model.BorrowerActivity;
+import com.example.library.model.JobCheckpoint;
+import com.example.library.model.LoanEvent;
+import com.example.library.repository.BookCirculationRepository;
+import com.example.library.repository.BorrowerActivityRepository;
+import com.example.library.repository.JobCheckpointRepository;
+import com.example.library.repository.LoanEventRepository;
+import com.example.library.repository.OutboxEntryRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Projects the loan event log into the {@link BookCirculation} and {@link BorrowerActivity} read models.
+ * <p>
+ * Runs every {@code library.events.projection-interval}. Every event is written with an outbox entry for the
+ * projection (see {@link com.example.library.outbox.LoanEventOutbox}), which is pending as soon as the event
+ * commits, however late that is. Each chunk of pending events is applied in one transaction that also deletes
+ * their entries, so every event is applied exactly once, even across restarts.
+ * <p>
+ * The chunk transaction first locks the projection's {@link JobCheckpoint} row, skipping the run if another
+ * node holds it. Chunks are therefore applied one at a time across nodes, and two nodes never both insert a
+ * new read-model row.
+ */
+@Slf4j
+@Component
+public class LoanEventProjector {
+    public static final String JOB_NAME = "loan-projection";
+
+    @Autowired
+    private LoanEventRepository loanEventRepository;
+    @Autowired
+    private BookCirculationRepository bookCirculationRepository;
+    @Autowired
+    private BorrowerActivityRepository borrowerActivityRepository;
+    @Autowired
+    private JobCheckpointRepository jobCheckpointRepository;
+    @Autowired
+    private OutboxEntryRepository outboxEntryRepository;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${library.events.projection-chunk-size:500}")
+    private int chunkSize;
+
+    private Clock clock = Clock.systemUTC();
+
+    /**
+     * Applies every pending event, chunk by chunk.
+     *
+     * @return The number of events applied
+     */
+    @Scheduled(fixedDelayString = "${library.events.projection-interval:PT1S}")
+    public long project() {
+        long applied = 0;
+        int chunk;
+        do {
+            chunk = transactionTemplate.execute(status -> projectChunk());
+            applied += chunk;
+        } while (chunk == chunkSize);
+        if (applied > 0) {
+            log.debug("Projected {} loan events", applied);
+        }
+        return applied;
+    }
+
+    private int projectChunk() {
+        Optional<JobCheckpoint> locked = jobCheckpointRepository.lockIfAvailable(JOB_NAME);
+        if (locked.isEmpty()) {
+            if (!jobCheckpointRepository.existsById(JOB_NAME)) {
+                // Created on the first run; from the next one on, its row lock serializes the projection
+                jobCheckpointRepository.save(new JobCheckpoint(JOB_NAME, null, 0L, null, false, Instant.now(clock), null));
+            }
+            // Otherwise another node is applying a chunk, and this one picks up what it leaves next time
+            return 0;
+        }
+        JobCheckpoint checkpoint = locked.get();
+        List<LoanEvent> events = loanEventRepository.findPending(JOB_NAME, Limit.of(chunkSize));
+        if (events.isEmpty()) {
+            return 0;
+        }
+
+        // Load every affected read-model row with one query per model
+        Map<Long, BookCirculation> books = new HashMap<>();
+        bookCirculationRepository.findAllById(ids(events, LoanEvent::getBookId))
+                .forEach(row -> books.put(row.getBookId(), row));
+        Map<Long, BorrowerActivity> borrowers = new HashMap<>();
+        borrowerActivityRepository.findAllById(ids(events, LoanEvent::getBorrowerId))
+                .forEach(row -> borrowers.put(row.getBorrowerId(), row));
+
+        for (LoanEvent event : events) {
+            BookCirculation book = books.computeIfAbsent(event.getBookId(),
+                    id -> new BookCirculation(id, false, null, 0, null, null, null));
+            BorrowerActivity borrower = borrowers.computeIfAbsent(event.getBorrowerId(),
+                    id -> new BorrowerActivity(id, 0, 0, 0, null, null));
+            apply(event, book, borrower);
+        }
+        bookCirculationRepository.saveAll(books.values());
+        borrowerActivityRepository.saveAll(borrowers.values());
+        outboxEntryRepository.deleteByConsumerAndEventIds(JOB_NAME, events.stream().map(LoanEvent::getId).toList());
+
+        LoanEvent last = events.get(events.size() - 1);
+        checkpoint.setLastRecordedAt(last.getRecordedAt());
+        checkpoint.setLastId(last.getId());
+        checkpoint.setUpdatedAt(Instant.now(clock));
+        jobCheckpointRepository.save(checkpoint);
+        return events.size();
+    }
+
+    static void apply(LoanEvent event, BookCirculation book, BorrowerActivity borrower) {
+        switch (event.getType()) {
+            case BORROWED -> {
+                book.setOnLoan(true);
+                book.setCurrentBorrowerId(event.getBorrowerId());
+                book.setTimesBorrowed(book.getTimesBorrowed() + 1);
+                book.setLastBorrowedAt(event.getRecordedAt());
+                borrower.setActiveLoans(borrower.getActiveLoans() + 1);
+                borrower.setTotalLoans(borrower.getTotalLoans() + 1);
+            }
+            case RETURNED -> {
+                book.setOnLoan(false);
+                book.setCurrentBorrowerId(null);
+                book.setLastReturnedAt(event.getRecordedAt());
+                borrower.setActiveLoans(Math.max(0, borrower.getActiveLoans() - 1));
+                borrower.setTotalReturns(borrower.getTotalReturns() + 1);
+            }
+        }
+        borrower.setLastActivityAt(event.getRecordedAt());
+    }
+
+    private static Set<Long> ids(List<LoanEvent> events, Function<LoanEvent, Long> id) {
+        return events.stream().map(id).collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.library.ratelimit;
+
+import com.example.library.exception.ErrorResponses;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Protects the database from any one client, and checkouts from catalogue reads, in front of the
+ * controllers under {@code /api}.
+ * <p>
+ * Reads (GET and HEAD) and writes have separate budgets, configured under
+ * {@code library.rate-limit.read} and {@code library.rate-limit.write}:
+ * <ul>
+ *     <li>Each client gets a token bucket per budget, refilled at {@code refill-per-second} up to
+ *     {@code capacity}. A client that runs out gets 429 with a {@code Retry-After} header.</li>
+ *     <li>Each budget also caps how many of its requests run at once across all clients
+ *     ({@code max-concurrent}). Requests beyond that are shed immediately with 503 and
+ *     {@code Retry-After} rather than queued, so the requests that are admitted keep their latency
+ *     under overload. Keep the read cap below the connection pool size so catalogue reads cannot
+ *     take every connection from checkouts.</li>
+ * </ul>
+ * Clients are identified by their remote address; behind a proxy, set
+ * {@code server.forward-headers-strategy} so that it is the client's address. Rejections are counted
+ * in {@code library.throttled} and the requests in flight are gauged in {@code library.in-flight}.
+ * The limits are per node.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10) // After the observation filter, so rejections show in http.server.requests
+public class RateLimitFilter extends OncePerRequestFilter {
+    static final String READ = "read";
+    static final String WRITE = "write";
+
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${library.rate-limit.enabled:true}")
+    private boolean enabled;
+    @Value("${library.rate-limit.read.capacity:100}")
+    private double readCapacity;
+    @Value("${library.rate-limit.read.refill-per-second:50}")
+    private double readRefillPerSecond;
+    @Value("${library.rate-limit.read.max-concurrent:6}")
+    private int readMaxConcurrent;
+    @Value("${library.rate-limit.write.capacity:50}")
+    private double writeCapacity;
+    @Value("${library.rate-limit.write.refill-per-second:20}")
+    private double writeRefillPerSecond;
+    @Value("${library.rate-limit.write.max-concurrent:10}")
+    private int writeMaxConcurrent;
+    @Value("${library.rate-limit.idle-client-expiry:PT10M}")
+    private Duration idleClientExpiry;
+
+    // Client and budget to bucket; clients that go quiet are forgotten, which refills them anyway
+    private Cache<String, TokenBucket> buckets;
+    private Semaphore reads;
+    private Semaphore writes;
+
+    @Override
+    protected void initFilterBean() {
+        buckets = Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterAccess(idleClientExpiry)
+                .build();
+        reads = new Semaphore(readMaxConcurrent);
+        writes = new Semaphore(writeMaxConcurrent);
+        Gauge.builder("library.in-flight", reads, permits -> readMaxConcurrent - permits.availablePermits())
+                .tag("budget", READ).register(meterRegistry);
+        Gauge.builder("library.in-flight", writes, permits -> writeMaxConcurrent - permits.availablePermits())
+                .tag("budget", WRITE).register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || !request.getRequestURI().startsWith(request.getContextPath() + "/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        boolean read = "GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod());
+        String budget = read ? READ : WRITE;
+
+        TokenBucket bucket = buckets.get(request.getRemoteAddr() + '|' + budget, key -> read
+                ? new TokenBucket(readCapacity, readRefillPerSecond, System.nanoTime())
+                : new TokenBucket(writeCapacity, writeRefillPerSecond, System.nanoTime()));
+        long waitNanos = bucket.tryConsume(System.nanoTime());
+        if (waitNanos > 0) {
+            reject(response, HttpStatus.TOO_MANY_REQUESTS, budget, "rate_limited",
+                    Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999)),
+                    "Too many " + budget + " requests; retry later");
+            return;
+        }
+
+        Semaphore permits = read ? reads : writes;
+        if (!permits.tryAcquire()) {
+            reject(response, HttpStatus.SERVICE_UNAVAILABLE, budget, "overloaded", 1,
+                    "Server is busy; retry later");
+            return;
+        }
+        AtomicBoolean released = new AtomicBoolean();
+        Runnable release = () -> {
+            if (released.compareAndSet(false, true)) {
+                permits.release();
+            }
+        };
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (request.isAsyncStarted()) {
+                // A streamed response is still running; hold the permit until it completes
+                request.getAsyncContext().addListener(new ReleasingListener(release));
+            } else {
+                release.run();
+            }
+        }
+    }
+
+    private void reject(HttpServletResponse response, HttpStatus status, String budget, String reason,
+                        long retryAfterSeconds, String message) throws IOException {
+        meterRegistry.counter("library.throttled", "budget", budget, "reason", reason).increment();
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        ErrorResponses.write(response, objectMapper, status, message);
+    }
+
+    private record ReleasingListener(Runnable release) implements AsyncListener {
+        @Override
+        public void onComplete(AsyncEvent event) {
+            release.run();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            release.run();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            release.run();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.library.ratelimit;
+
+/**
+ * A token bucket that holds up to {@code capacity} tokens and refills continuously at
+ * {@code refillPerSecond}. Each request takes one token, so a client can burst up to the capacity
+ * and then sustain the refill rate.
+ */
+class TokenBucket {
+    private static final double NANOS_PER_SECOND = 1_000_000_000d;
+
+    private final double capacity;
+    private final double refillPerNano;
+    private double tokens;
+    private long refilledAt;
+
+    TokenBucket(double capacity, double refillPerSecond, long now) {
+        this.capacity = capacity;
+        this.refillPerNano = refillPerSecond / NANOS_PER_SECOND;
+        this.tokens = capacity;
+        this.refilledAt = now;
+    }
+
+    /**
+     * Takes a token if one is available.
+     *
+     * @param now Current {@link System#nanoTime()}
+     * @return 0 if a token was taken, otherwise the nanoseconds until one will be available
+     */
+    synchronized long tryConsume(long now) {
+        tokens = Math.min(capacity, tokens + (now - refilledAt) * refillPerNano);
+        refilledAt = now;
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        return (long) Math.ceil((1 - tokens) / refillPerNano);
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.library.repository;
+
+import com.example.library.dto.TitleBorrows;
+import com.example.library.model.BookCirculation;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+
+public interface BookCirculationRepository extends JpaRepository<BookCirculation, Long> {
+    /**
+     * Titles most often borrowed of all time, most borrowed first, summed from the per-book loan
+     * counts of the read model rather than counted over the loan history.
+     */
+    @Query("""
+            select new com.example.library.dto.TitleBorrows(b.isbn, min(b.title), min(b.author), sum(c.timesBorrowed))
+            from BookCirculation c join Book b on b.id = c.bookId
+            group by b.isbn
+            order by sum(c.timesBorrowed) desc, b.isbn""")
+    List<TitleBorrows> findTopTitles(Limit limit);
+}
@@ -1,7 +1,115 @@
 package com.example.library.repository;
 
+import com.example.library.config.CacheConfig;
+import com.example.library.dto.Availability;
 import com.example.library.model.Book;
+import jakarta.persistence.QueryHint;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
-public interface BookRepository extends JpaRepository<Book, Long> {}
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+
+public interface BookRepository extends JpaRepository<Book, Long>, BookRepositoryCustom {
+    @Override
+    @Cacheable(cacheNames = CacheConfig.BOOKS, unless = "#result == null")
+    Optional<Book> findById(Long id);
+
+    /**
+     * Seeks past the given id on the primary key index, so each page costs the same
+     * regardless of how deep into the catalogue it is. Only IDs are read; the books
+     * themselves are resolved through the catalogue cache.
+     */
+    @Query("select b.id from Book b where b.id > :id order by b.id")
+    List<Long> findIdsAfter(Long id, Limit limit);
+
+    /**
+     * Returns which of the given IDs exist, reading only the primary key index.
+     */
+    @Query("select b.id from Book b where b.id in :ids")
+    List<Long> findExistingIds(Collection<Long> ids);
+
+    /**
+     * ISBNs of the given books, one per book that exists, without loading the entities.
+     */
+    @Query("select b.isbn from Book b where b.id in :ids")
+    List<String> findIsbnsByIds(Collection<Long> ids);
+
+    /**
+     * Reads the next chunk of books after the given id, for jobs that walk the whole catalogue.
+     */
+    List<Book> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    /**
+     * Reads the books changed after the given (updatedAt, id) position and no later than the horizon,
+     * in change order, seeking on the (updated_at, id) index.
+     */
+    @Query("""
+            select b from Book b
+            where (b.updatedAt > :at or (b.updatedAt = :at and b.id > :id)) and b.updatedAt <= :horizon
+            order by b.updatedAt, b.id""")
+    List<Book> findChangedAfter(Instant at, Long id, Instant horizon, Limit limit);
+
+    /**
+     * Streams the whole catalogue off a JDBC cursor. Must be consumed inside a transaction.
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("select b from Book b order by b.id")
+    Stream<Book> streamAllOrderedById();
+
+    /**
+     * Counts copies owned and on loan per ISBN, for reconciling the in-memory availability counters.
+     */
+    @Query("""
+            select new com.example.library.dto.Availability(b.isbn, count(b),
+                sum(case when b.isBorrowed = true then 1L else 0L end),
+                sum(case when b.isBorrowed = false then 1L else 0L end))
+            from Book b group by b.isbn""")
+    List<Availability> countCopiesByIsbn();
+
+    /**
+     * Marks the book as borrowed only if it is currently available. The check and the write are one
+     * statement, so of any number of concurrent callers exactly one sees an update count of 1.
+     *
+     * @return 1 if the book was claimed, 0 if it does not exist or is already borrowed
+     */
+    default int markBorrowedIfAvailable(Long id) {
+        return markBorrowedIfAvailable(id, Instant.now());
+    }
+
+    @Modifying
+    @Query("update Book b set b.isBorrowed = true, b.updatedAt = :at where b.id = :id and b.isBorrowed = false")
+    int markBorrowedIfAvailable(Long id, Instant at);
+
+    /**
+     * Marks the book as available only if it is currently borrowed.
+     *
+     * @return 1 if the book was released, 0 if it does not exist or is not borrowed
+     */
+    default int markReturnedIfBorrowed(Long id) {
+        return markReturnedIfBorrowed(id, Instant.now());
+    }
+
+    @Modifying
+    @Query("update Book b set b.isBorrowed = false, b.updatedAt = :at where b.id = :id and b.isBorrowed = true")
+    int markReturnedIfBorrowed(Long id, Instant at);
+
+    /**
+     * Locks the book's row, without changing it, only if it is currently borrowed. Until the
+     * transaction ends, nobody else can return it.
+     *
+     * @return 1 if the book is borrowed, 0 if it does not exist or is available
+     */
+    @Modifying
+    @Query("update Book b set b.isBorrowed = true where b.id = :id and b.isBorrowed = true")
+    int lockIfBorrowed(Long id);
+}
@@ -0,0 +1,26 @@
+package com.example.library.repository;
+
+import java.util.List;
+
+/**
+ * Book updates that Spring Data query methods cannot express.
+ */
+public interface BookRepositoryCustom {
+    /**
+     * Marks each book as borrowed only if it is currently available, sending all the conditional
+     * updates in one JDBC batch.
+     *
+     * @param ids IDs of the books to claim
+     * @return Per ID, in the same order: 1 if the book was claimed, 0 if it does not exist or is already borrowed
+     */
+    int[] markAllBorrowedIfAvailable(List<Long> ids);
+
+    /**
+     * Marks each book as available only if it is currently borrowed, sending all the conditional
+     * updates in one JDBC batch.
+     *
+     * @param ids IDs of the books to release
+     * @return Per ID, in the same order: 1 if the book was released, 0 if it does not exist or is not borrowed
+     */
+    int[] markAllReturnedIfBorrowed(List<Long> ids);
+}
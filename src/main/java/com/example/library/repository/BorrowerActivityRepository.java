@@ -0,0 +1,7 @@
+package com.example.library.repository;
+
+import com.example.library.model.BorrowerActivity;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface BorrowerActivityRepository extends JpaRepository<BorrowerActivity, Long> {
+}
@@ -1,7 +1,29 @@
 package com.example.library.repository;
 
+import com.example.library.config.CacheConfig;
 import com.example.library.model.Borrower;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
-public interface BorrowerRepository extends JpaRepository<Borrower, Long> {}
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
+public interface BorrowerRepository extends JpaRepository<Borrower, Long> {
+    @Override
+    @Cacheable(cacheNames = CacheConfig.BORROWERS, unless = "#result == null")
+    Optional<Borrower> findById(Long id);
+
+    /**
+     * Next borrowers after the given ID, in ID order, for reading all of them in keyset chunks.
+     */
+    List<Borrower> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    /**
+     * Those of the given emails that are already registered, looked up through the unique index.
+     */
+    @Query("select b.email from Borrower b where b.email in :emails")
+    List<String> findRegisteredEmails(Collection<String> emails);
+}
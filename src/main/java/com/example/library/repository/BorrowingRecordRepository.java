@@ -1,7 +1,119 @@
 package com.example.library.repository;
 
+import com.example.library.dto.AuthorLoanDuration;
+import com.example.library.dto.DailyBorrows;
+import com.example.library.dto.LoanSummary;
+import com.example.library.dto.OverdueLoan;
+import com.example.library.dto.TitleBorrows;
 import com.example.library.model.BorrowingRecord;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
-public interface BorrowingRecordRepository extends JpaRepository<BorrowingRecord, Long> {}
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+
+public interface BorrowingRecordRepository extends JpaRepository<BorrowingRecord, Long> {
+    /**
+     * Finds the open loan (no return date yet) for the given book. There is at most one, since
+     * borrowBook claims the book before recording the loan.
+     * Backed by the (book_id, return_date) index on borrowing_record. Written out rather than derived
+     * because the derived query joins book to compare its id, which keeps some databases (H2) from
+     * using the index.
+     */
+    @Query("select r from BorrowingRecord r where r.book.id = :bookId and r.returnDate is null")
+    Optional<BorrowingRecord> findActiveByBookId(Long bookId);
+
+    /**
+     * Open loans of the given books, fetched with one query for a batch return.
+     */
+    @Query("select r from BorrowingRecord r where r.book.id in :bookIds and r.returnDate is null")
+    List<BorrowingRecord> findActiveByBookIds(Collection<Long> bookIds);
+
+    /**
+     * Next chunk of open loans after the given ID that were due before {@code today}. Loans without a due
+     * date count as due {@code period} after borrowing, which the caller passes as {@code undatedBefore}.
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("""
+            select new com.example.library.dto.OverdueLoan(r.id, r.borrowDate, r.dueDate)
+            from BorrowingRecord r
+            where r.returnDate is null and r.id > :lastId
+              and (r.dueDate < :today or (r.dueDate is null and r.borrowDate < :undatedBefore))
+            order by r.id""")
+    List<OverdueLoan> findOverdueAfter(Long lastId, LocalDate today, LocalDate undatedBefore, Limit limit);
+
+    /**
+     * All loans of a borrower borrowed within [from, to], newest first.
+     * Selects only the summary columns; served by the (borrower_id, borrow_date) index.
+     */
+    @Query("""
+            select new com.example.library.dto.LoanSummary(r.id, b.id, b.isbn, b.title, r.borrowDate, r.returnDate)
+            from BorrowingRecord r join r.book b
+            where r.borrower.id = :borrowerId and r.borrowDate between :from and :to
+            order by r.borrowDate desc, r.id desc""")
+    List<LoanSummary> findLoans(Long borrowerId, LocalDate from, LocalDate to, Pageable pageable);
+
+    /**
+     * Loans of a borrower borrowed within [from, to] that are still open, newest first.
+     */
+    @Query("""
+            select new com.example.library.dto.LoanSummary(r.id, b.id, b.isbn, b.title, r.borrowDate, r.returnDate)
+            from BorrowingRecord r join r.book b
+            where r.borrower.id = :borrowerId and r.borrowDate between :from and :to and r.returnDate is null
+            order by r.borrowDate desc, r.id desc""")
+    List<LoanSummary> findActiveLoans(Long borrowerId, LocalDate from, LocalDate to, Pageable pageable);
+
+    /**
+     * Loans of a borrower borrowed within [from, to] that have been returned, newest first.
+     */
+    @Query("""
+            select new com.example.library.dto.LoanSummary(r.id, b.id, b.isbn, b.title, r.borrowDate, r.returnDate)
+            from BorrowingRecord r join r.book b
+            where r.borrower.id = :borrowerId and r.borrowDate between :from and :to and r.returnDate is not null
+            order by r.borrowDate desc, r.id desc""")
+    List<LoanSummary> findReturnedLoans(Long borrowerId, LocalDate from, LocalDate to, Pageable pageable);
+
+    /**
+     * Titles most often borrowed within [from, to], most borrowed first. Copies are counted together
+     * under their ISBN. Reads the (borrow_date, book_id, return_date) index and one book row per title.
+     */
+    @Query("""
+            select new com.example.library.dto.TitleBorrows(b.isbn, min(b.title), min(b.author), count(r))
+            from BorrowingRecord r join r.book b
+            where r.borrowDate between :from and :to
+            group by b.isbn
+            order by count(r) desc, b.isbn""")
+    List<TitleBorrows> findTopTitles(LocalDate from, LocalDate to, Limit limit);
+
+    /**
+     * Average length, in days, of the loans borrowed within [from, to] and since returned, per author.
+     */
+    @Query("""
+            select new com.example.library.dto.AuthorLoanDuration(b.author, count(r),
+                avg((r.returnDate - r.borrowDate) by day))
+            from BorrowingRecord r join r.book b
+            where r.borrowDate between :from and :to and r.returnDate is not null
+            group by b.author
+            order by b.author""")
+    List<AuthorLoanDuration> averageLoanDaysByAuthor(LocalDate from, LocalDate to);
+
+    /**
+     * Number of loans started on each day within [from, to] that had any. Counted on the
+     * (borrow_date, book_id, return_date) index alone.
+     */
+    @Query("""
+            select new com.example.library.dto.DailyBorrows(r.borrowDate, count(r))
+            from BorrowingRecord r
+            where r.borrowDate between :from and :to
+            group by r.borrowDate
+            order by r.borrowDate""")
+    List<DailyBorrows> countBorrowsPerDay(LocalDate from, LocalDate to);
+}
@@ -0,0 +1,10 @@
+package com.example.library.repository;
+
+import com.example.library.model.DeadLetter;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface DeadLetterRepository extends JpaRepository<DeadLetter, Long> {
+    List<DeadLetter> findBySink(String sink);
+}
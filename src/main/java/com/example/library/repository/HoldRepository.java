@@ -0,0 +1,58 @@
+package com.example.library.repository;
+
+import com.example.library.model.Hold;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface HoldRepository extends JpaRepository<Hold, Long> {
+    /**
+     * Next chunk of waiting holds after the given ID, for warming the in-memory queues.
+     */
+    @Query("select h from Hold h where h.status = 'WAITING' and h.id > :id order by h.id")
+    List<Hold> findWaitingAfter(Long id, Limit limit);
+
+    /**
+     * Oldest waiting holds for a book placed after the given ID, off idx_hold_book_status. This is
+     * what decides who a returned book goes to, so holds placed on any node are served in order.
+     */
+    @Query("""
+            select h from Hold h
+            where h.book.id = :bookId and h.status = 'WAITING' and h.id > :afterId
+            order by h.id""")
+    List<Hold> findWaitingForBook(Long bookId, Long afterId, Limit limit);
+
+    /**
+     * The oldest waiting hold of each of the given books that has one, for batch returns.
+     */
+    @Query("""
+            select h from Hold h
+            where h.book.id in :bookIds and h.status = 'WAITING'
+              and h.id = (select min(o.id) from Hold o where o.book.id = h.book.id and o.status = 'WAITING')""")
+    List<Hold> findOldestWaiting(Collection<Long> bookIds);
+
+    /**
+     * Whether the borrower already has a waiting hold on the book.
+     */
+    @Query("""
+            select count(h) > 0 from Hold h
+            where h.book.id = :bookId and h.borrower.id = :borrowerId and h.status = 'WAITING'""")
+    boolean existsWaiting(Long bookId, Long borrowerId);
+
+    /**
+     * Closes the hold with the given status only if it is still waiting, so a hold is fulfilled or
+     * cancelled at most once however the two race.
+     *
+     * @return 1 if the hold was closed, 0 if it does not exist or was already closed
+     */
+    @Modifying
+    @Query("""
+            update Hold h set h.status = :status, h.closedAt = :at
+            where h.id = :id and h.status = 'WAITING'""")
+    int closeIfWaiting(Long id, Hold.Status status, Instant at);
+}
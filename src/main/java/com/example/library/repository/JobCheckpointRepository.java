@@ -0,0 +1,24 @@
+package com.example.library.repository;
+
+import com.example.library.model.JobCheckpoint;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+
+import java.util.Optional;
+
+public interface JobCheckpointRepository extends JpaRepository<JobCheckpoint, String> {
+    /**
+     * Locks the job's checkpoint until the end of the transaction (SELECT ... FOR UPDATE SKIP LOCKED). On
+     * databases without SKIP LOCKED, such as H2, it waits for the other transaction instead.
+     *
+     * @return The checkpoint, or nothing if it does not exist or another transaction holds its lock
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("select c from JobCheckpoint c where c.job = :job")
+    Optional<JobCheckpoint> lockIfAvailable(String job);
+}
@@ -0,0 +1,19 @@
+package com.example.library.repository;
+
+import com.example.library.model.LoanEvent;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+
+public interface LoanEventRepository extends JpaRepository<LoanEvent, Long> {
+    /**
+     * Next events the consumer has yet to process, in event ID order.
+     */
+    @Query("""
+            select e from OutboxEntry o join LoanEvent e on e.id = o.eventId
+            where o.consumer = :consumer
+            order by o.eventId""")
+    List<LoanEvent> findPending(String consumer, Limit limit);
+}
@@ -0,0 +1,26 @@
+package com.example.library.repository;
+
+import com.example.library.model.OutboxEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface OutboxEntryRepository extends JpaRepository<OutboxEntry, Long> {
+    /**
+     * The given events that are still pending for the consumer.
+     */
+    @Query("select o.eventId from OutboxEntry o where o.consumer = :consumer and o.eventId in :eventIds")
+    List<Long> findPendingEventIds(String consumer, Collection<Long> eventIds);
+
+    /**
+     * Marks the events as processed by the consumer. Events another node processed first are skipped.
+     *
+     * @return The number of entries deleted
+     */
+    @Modifying
+    @Query("delete from OutboxEntry o where o.consumer = :consumer and o.eventId in :eventIds")
+    int deleteByConsumerAndEventIds(String consumer, Collection<Long> eventIds);
+}
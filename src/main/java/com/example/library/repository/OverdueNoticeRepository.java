@@ -0,0 +1,7 @@
+package com.example.library.repository;
+
+import com.example.library.model.OverdueNotice;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface OverdueNoticeRepository extends JpaRepository<OverdueNotice, Long> {
+}
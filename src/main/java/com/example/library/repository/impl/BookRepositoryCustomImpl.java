@@ -0,0 +1,54 @@
+package com.example.library.repository.impl;
+
+import com.example.library.repository.BookRepositoryCustom;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * JDBC implementation of the batched conditional updates. A JPQL bulk update would only report the
+ * total row count, not which books it changed. JdbcTemplate joins the surrounding JPA transaction
+ * through its connection.
+ */
+public class BookRepositoryCustomImpl implements BookRepositoryCustom {
+    private static final String MARK_BORROWED =
+            "update book set is_borrowed = true, updated_at = ? where id = ? and is_borrowed = false";
+    private static final String MARK_RETURNED =
+            "update book set is_borrowed = false, updated_at = ? where id = ? and is_borrowed = true";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public int[] markAllBorrowedIfAvailable(List<Long> ids) {
+        return updateEach(MARK_BORROWED, ids);
+    }
+
+    @Override
+    public int[] markAllReturnedIfBorrowed(List<Long> ids) {
+        return updateEach(MARK_RETURNED, ids);
+    }
+
+    /**
+     * Runs the update once per ID. Rows are updated, and so locked, in ascending ID order whatever
+     * the caller's order, so two batches sharing books cannot deadlock; counts are mapped back.
+     */
+    private int[] updateEach(String sql, List<Long> ids) {
+        Integer[] order = IntStream.range(0, ids.size()).boxed()
+                .sorted(Comparator.comparing(ids::get))
+                .toArray(Integer[]::new);
+        Timestamp now = Timestamp.from(Instant.now());
+        int[] sortedCounts = jdbcTemplate.batchUpdate(sql, Arrays.stream(order).map(i -> new Object[]{now, ids.get(i)}).toList());
+        int[] counts = new int[ids.size()];
+        for (int i = 0; i < order.length; i++) {
+            counts[order[i]] = sortedCounts[i];
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,274 @@
+package com.example.library.search;
+
+import com.example.library.event.BooksRegisteredEvent;
+import com.example.library.model.Book;
+import com.example.library.repository.BookRepository;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory inverted index over book titles, authors and ISBNs.
+ * <p>
+ * Terms are kept in a sorted map so that a query term also matches every indexed term it is a
+ * prefix of, which gives autocomplete as the user types. All query terms must match (AND).
+ * Each match scores by the field it hit (ISBN over title over author), and an exact term match
+ * scores twice a prefix match. A prefix expands to at most {@code MAX_PREFIX_EXPANSIONS} terms, those
+ * matching the most books; the hits of a query that hit the cap are flagged as truncated.
+ * <p>
+ * New books are added as they are committed. The whole index is rebuilt from the database on
+ * startup and every {@code library.search.rebuild-interval}, which also picks up books
+ * registered on other nodes.
+ */
+@Slf4j
+@Component
+public class BookSearchIndex {
+    static final int TITLE = 1;
+    static final int AUTHOR = 2;
+    static final int ISBN = 4;
+
+    // Shorter prefixes match too many terms to be useful; they only match whole terms
+    static final int MIN_PREFIX_LENGTH = 2;
+    static final int MAX_PREFIX_EXPANSIONS = 256;
+    private static final int REBUILD_CHUNK_SIZE = 1000;
+
+    // Higher score first, then lower ID, so that pages are stable
+    private static final Comparator<Map.Entry<Long, Double>> RANKING =
+            Map.Entry.<Long, Double>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey());
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern NON_ALPHANUMERIC = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern ISBN_LIKE = Pattern.compile("[0-9][0-9xX-]*[0-9xX]");
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    private final AtomicReference<Terms> current = new AtomicReference<>(new Terms());
+    // Index being rebuilt, if any; books committed meanwhile are added to it as well
+    private volatile Terms building;
+
+    /**
+     * Finds the books matching every term of the query, best match first.
+     *
+     * @param query  Free text; each term matches titles, authors and ISBNs by prefix
+     * @param offset Number of ranked matches to skip
+     * @param limit  Maximum number of IDs to return
+     * @return The IDs of the requested slice of matches and the total number of matches, which is a
+     *         lower bound if a query term had too many prefix expansions
+     */
+    public Hits search(String query, int offset, int limit) {
+        List<String> terms = tokenize(query);
+        if (terms.isEmpty()) {
+            return new Hits(List.of(), 0, false);
+        }
+        Terms index = current.get();
+
+        Map<Long, Double> scores = null;
+        boolean truncated = false;
+        for (String term : terms) {
+            TermScores scored = index.score(term);
+            Map<Long, Double> termScores = scored.getScores();
+            truncated |= scored.isTruncated();
+            if (scores == null) {
+                scores = termScores;
+            } else {
+                scores.keySet().retainAll(termScores.keySet());
+                scores.replaceAll((id, score) -> score + termScores.get(id));
+            }
+            if (scores.isEmpty()) {
+                return new Hits(List.of(), 0, false);
+            }
+        }
+
+        return new Hits(top(scores, offset, limit), scores.size(), truncated);
+    }
+
+    /**
+     * The requested slice of the matches, best first. Only the best {@code offset + limit} matches
+     * are kept while scanning, in a heap whose head is the worst of them, so a broad query costs
+     * O(n log k) rather than a sort of every match.
+     */
+    static List<Long> top(Map<Long, Double> scores, int offset, int limit) {
+        int wanted = (int) Math.min((long) offset + limit, scores.size());
+        if (offset >= wanted) {
+            return List.of();
+        }
+        PriorityQueue<Map.Entry<Long, Double>> best = new PriorityQueue<>(wanted + 1, RANKING.reversed());
+        for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+            if (best.size() < wanted) {
+                best.add(entry);
+            } else if (RANKING.compare(entry, best.peek()) < 0) {
+                best.poll();
+                best.add(entry);
+            }
+        }
+        Long[] ids = new Long[best.size()];
+        for (int i = ids.length - 1; i >= 0; i--) {
+            ids[i] = best.poll().getKey();
+        }
+        return Arrays.asList(ids).subList(offset, ids.length);
+    }
+
+    /**
+     * Adds committed books to the index.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBooksRegistered(BooksRegisteredEvent event) {
+        Terms rebuilding = building;
+        for (Book book : event.getBooks()) {
+            current.get().add(book);
+            if (rebuilding != null) {
+                rebuilding.add(book);
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the index from the database in keyset chunks, then swaps it in atomically.
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${library.search.rebuild-interval:PT1H}")
+    public void rebuild() {
+        long start = System.nanoTime();
+        Terms rebuilt = new Terms();
+        building = rebuilt;
+        try {
+            long lastId = 0;
+            List<Book> chunk;
+            do {
+                chunk = bookRepository.findByIdGreaterThanOrderByIdAsc(lastId, Limit.of(REBUILD_CHUNK_SIZE));
+                for (Book book : chunk) {
+                    rebuilt.add(book);
+                    lastId = book.getId();
+                }
+            } while (chunk.size() == REBUILD_CHUNK_SIZE);
+            current.set(rebuilt);
+        } finally {
+            building = null;
+        }
+        log.info("Search index rebuilt with {} terms in {} ms",
+                rebuilt.postings.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Splits text into lower-case terms. ISBN-like tokens keep their digits together without hyphens,
+     * so "978-0132350884" and "9780132350884" are the same term.
+     */
+    static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        Set<String> terms = new LinkedHashSet<>();
+        for (String token : WHITESPACE.split(text.trim().toLowerCase(Locale.ROOT))) {
+            if (ISBN_LIKE.matcher(token).matches()) {
+                terms.add(token.replace("-", ""));
+                continue;
+            }
+            for (String part : NON_ALPHANUMERIC.split(token)) {
+                if (!part.isEmpty()) {
+                    terms.add(part);
+                }
+            }
+        }
+        return new ArrayList<>(terms);
+    }
+
+    @Value
+    public static class Hits {
+        List<Long> ids;
+        long total;
+        // Some prefix expansions were left out, so there may be more matches than total
+        boolean truncated;
+    }
+
+    @Value
+    static class TermScores {
+        Map<Long, Double> scores;
+        boolean truncated;
+    }
+
+    /**
+     * Term to (book ID to bit set of the fields the term occurs in).
+     */
+    static class Terms {
+        final ConcurrentSkipListMap<String, Map<Long, Integer>> postings = new ConcurrentSkipListMap<>();
+
+        void add(Book book) {
+            addField(book.getId(), book.getTitle(), TITLE);
+            addField(book.getId(), book.getAuthor(), AUTHOR);
+            if (book.getIsbn() != null) {
+                addTerm(book.getId(), book.getIsbn().replaceAll("[\\s-]", "").toLowerCase(Locale.ROOT), ISBN);
+            }
+        }
+
+        private void addField(Long bookId, String text, int field) {
+            for (String term : tokenize(text)) {
+                addTerm(bookId, term, field);
+            }
+        }
+
+        private void addTerm(Long bookId, String term, int field) {
+            postings.computeIfAbsent(term, t -> new ConcurrentHashMap<>())
+                    .merge(bookId, field, (a, b) -> a | b);
+        }
+
+        TermScores score(String term) {
+            Map<Long, Double> scores = new HashMap<>();
+            boolean truncated = false;
+            Map<Long, Integer> exact = postings.get(term);
+            if (exact != null) {
+                exact.forEach((id, fields) -> scores.merge(id, 2.0 * weight(fields), Math::max));
+            }
+            if (term.length() >= MIN_PREFIX_LENGTH) {
+                NavigableMap<String, Map<Long, Integer>> prefixed =
+                        postings.subMap(term, false, term + Character.MAX_VALUE, false);
+                // Keep the terms matching the most books, not the first ones in alphabetical order; the
+                // heap's head is the smallest kept, so only it is compared against each further term
+                PriorityQueue<Map<Long, Integer>> expansions =
+                        new PriorityQueue<>(MAX_PREFIX_EXPANSIONS + 1, Comparator.comparingInt(Map::size));
+                for (Map<Long, Integer> matches : prefixed.values()) {
+                    if (expansions.size() < MAX_PREFIX_EXPANSIONS) {
+                        expansions.add(matches);
+                    } else {
+                        truncated = true;
+                        if (matches.size() > expansions.peek().size()) {
+                            expansions.poll();
+                            expansions.add(matches);
+                        }
+                    }
+                }
+                expansions.forEach(matches -> matches.forEach((id, fields) -> scores.merge(id, weight(fields), Math::max)));
+            }
+            return new TermScores(scores, truncated);
+        }
+
+        private static double weight(int fields) {
+            if ((fields & ISBN) != 0) {
+                return 5;
+            }
+            if ((fields & TITLE) != 0) {
+                return 3;
+            }
+            return 2;
+        }
+    }
+}
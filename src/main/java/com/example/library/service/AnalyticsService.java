@@ -0,0 +1,14 @@
+package com.example.library.service;
+
+import com.example.library.dto.AuthorLoanDuration;
+import com.example.library.dto.DailyBorrows;
+import com.example.library.dto.TitleBorrows;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface AnalyticsService {
+    public List<TitleBorrows> getTopTitles(int limit, LocalDate from, LocalDate to);
+    public List<AuthorLoanDuration> getLoanDurationByAuthor(LocalDate from, LocalDate to);
+    public List<DailyBorrows> getBorrowsPerDay(LocalDate from, LocalDate to);
+}
@@ -0,0 +1,10 @@
+package com.example.library.service;
+
+import com.example.library.dto.ImportReport;
+
+import java.io.InputStream;
+
+public interface BulkImportService {
+    public ImportReport importBooks(InputStream body, String contentType);
+    public ImportReport importBorrowers(InputStream body, String contentType);
+}
@@ -1,14 +1,38 @@
 package com.example.library.service;
 
+import com.example.library.dto.Availability;
+import com.example.library.dto.BatchLoanResult;
+import com.example.library.dto.BookChanges;
+import com.example.library.dto.BookPage;
+import com.example.library.dto.BookSearchPage;
+import com.example.library.dto.HoldStatus;
+import com.example.library.dto.LoanStatus;
+import com.example.library.dto.LoanSummary;
 import com.example.library.model.Book;
+import com.example.library.model.BookCirculation;
+import com.example.library.model.BorrowerActivity;
 import com.example.library.model.Borrower;
 
+import java.time.LocalDate;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface LibraryService {
     public Book registerBook(Book book);
-    public List<Book> getAllBooks();
+    public BookPage getBooks(String cursor, int size);
+    public BookChanges getBookChanges(String since, int size);
+    public void streamAllBooks(Consumer<Book> consumer);
+    public BookSearchPage searchBooks(String query, int page, int size);
+    public Availability getAvailability(String isbn);
+    public BookCirculation getCirculation(Long bookId);
+    public BorrowerActivity getActivity(Long borrowerId);
     public Borrower registerBorrower(Borrower borrower);
+    public List<LoanSummary> getLoans(Long borrowerId, LoanStatus status, LocalDate from, LocalDate to, int page, int size);
     public String borrowBook(Long borrowerId, Long bookId);
     public String returnBook(Long borrowerId, Long bookId);
+    public BatchLoanResult borrowBooks(Long borrowerId, List<Long> bookIds);
+    public BatchLoanResult returnBooks(Long borrowerId, List<Long> bookIds);
+    public HoldStatus placeHold(Long borrowerId, Long bookId);
+    public HoldStatus getHold(Long holdId);
+    public String cancelHold(Long holdId);
 }
@@ -0,0 +1,100 @@
+package com.example.library.service.impl;
+
+import com.example.library.dto.AuthorLoanDuration;
+import com.example.library.dto.DailyBorrows;
+import com.example.library.dto.TitleBorrows;
+import com.example.library.repository.BookCirculationRepository;
+import com.example.library.repository.BorrowingRecordRepository;
+import com.example.library.service.AnalyticsService;
+import io.micrometer.core.annotation.Timed;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Service implementation for circulation reports. Every report is aggregated by the database, over
+ * the loan read model or over an index of the loan history, and only the aggregated rows are read,
+ * so no report loads loans onto the heap however long the history is. Reports are read-only
+ * transactions and therefore run on a read replica when one is configured.
+ */
+@Service
+@Timed(value = "library.analytics", description = "Time spent computing analytics reports")
+public class AnalyticsServiceImpl implements AnalyticsService {
+    static final int MAX_TOP_TITLES = 1000;
+    // Window of the reports when the request gives neither end
+    static final int DEFAULT_WINDOW_DAYS = 30;
+    private static final LocalDate EARLIEST_LOAN_DATE = LocalDate.of(1900, 1, 1);
+
+    @Autowired
+    private BookCirculationRepository bookCirculationRepository;
+    @Autowired
+    private BorrowingRecordRepository borrowingRecordRepository;
+
+    /**
+     * Ranks titles by how often their copies were borrowed. Without a window the counts are all-time
+     * and come from the circulation read model, which trails borrows by a few seconds; with one they
+     * are counted over the loans borrowed within it.
+     *
+     * @param limit Number of titles to return (capped at {@value #MAX_TOP_TITLES})
+     * @param from  Earliest borrow date to count, or null
+     * @param to    Latest borrow date to count, or null
+     * @return The most borrowed titles, most borrowed first
+     * @throws IllegalArgumentException If the limit is not positive or the window is reversed
+     */
+    @Transactional(readOnly = true)
+    public List<TitleBorrows> getTopTitles(int limit, LocalDate from, LocalDate to) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be positive: " + limit);
+        }
+        Limit top = Limit.of(Math.min(limit, MAX_TOP_TITLES));
+        if (from == null && to == null) {
+            return bookCirculationRepository.findTopTitles(top);
+        }
+        LocalDate end = to != null ? to : LocalDate.now();
+        LocalDate start = from != null ? from : EARLIEST_LOAN_DATE;
+        checkWindow(start, end);
+        return borrowingRecordRepository.findTopTitles(start, end, top);
+    }
+
+    /**
+     * Averages the length of the returned loans per author, over the loans borrowed within a window.
+     *
+     * @param from Earliest borrow date to include; defaults to {@value #DEFAULT_WINDOW_DAYS} days before {@code to}
+     * @param to   Latest borrow date to include; defaults to today
+     * @return Per author, in name order, the number of returned loans and their average length in days
+     * @throws IllegalArgumentException If the window is reversed
+     */
+    @Transactional(readOnly = true)
+    public List<AuthorLoanDuration> getLoanDurationByAuthor(LocalDate from, LocalDate to) {
+        LocalDate end = to != null ? to : LocalDate.now();
+        LocalDate start = from != null ? from : end.minusDays(DEFAULT_WINDOW_DAYS);
+        checkWindow(start, end);
+        return borrowingRecordRepository.averageLoanDaysByAuthor(start, end);
+    }
+
+    /**
+     * Counts the loans started on each day of a window. Days without loans are left out.
+     *
+     * @param from First day; defaults to {@value #DEFAULT_WINDOW_DAYS} days before {@code to}
+     * @param to   Last day; defaults to today
+     * @return Loans per day, oldest day first
+     * @throws IllegalArgumentException If the window is reversed
+     */
+    @Transactional(readOnly = true)
+    public List<DailyBorrows> getBorrowsPerDay(LocalDate from, LocalDate to) {
+        LocalDate end = to != null ? to : LocalDate.now();
+        LocalDate start = from != null ? from : end.minusDays(DEFAULT_WINDOW_DAYS);
+        checkWindow(start, end);
+        return borrowingRecordRepository.countBorrowsPerDay(start, end);
+    }
+
+    private static void checkWindow(LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("Date range is reversed: " + from + " to " + to);
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package com.example.library.service.impl;
+
+import com.example.library.dedup.BorrowerEmails;
+import com.example.library.dto.ImportReport;
+import com.example.library.event.BooksRegisteredEvent;
+import com.example.library.model.Book;
+import com.example.library.model.Borrower;
+import com.example.library.repository.BookRepository;
+import com.example.library.repository.BorrowerRepository;
+import com.example.library.service.BulkImportService;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import io.micrometer.core.annotation.Timed;
+import lombok.extern.slf4j.Slf4j;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Service implementation for bulk imports of books and borrowers from CSV, JSON array
+ * or newline-delimited JSON bodies.
+ * Rows are read one at a time, validated, and inserted in JDBC batches of
+ * {@code library.import.batch-size} rows, each batch in its own transaction. Saved rows are
+ * detached once their batch commits, so memory stays bounded by the batch size.
+ */
+@Slf4j
+@Service
+@Timed(value = "library.import", description = "Time spent in bulk imports")
+public class BulkImportServiceImpl implements BulkImportService {
+    public static final MediaType TEXT_CSV = MediaType.parseMediaType("text/csv");
+
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private BorrowerRepository borrowerRepository;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private Validator validator;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    @Autowired
+    private BorrowerEmails borrowerEmails;
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${library.import.batch-size:500}")
+    private int batchSize;
+    @Value("${library.import.max-reported-errors:1000}")
+    private int maxReportedErrors;
+
+    private final CsvMapper csvMapper = CsvMapper.builder()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .build();
+
+    /**
+     * Imports books. Any id or borrowed flag in the input is ignored.
+     *
+     * @param body        Request body holding the rows
+     * @param contentType text/csv (with a header row), application/json or application/x-ndjson
+     * @return Counts, per-row errors and throughput of the import
+     */
+    public ImportReport importBooks(InputStream body, String contentType) {
+        return importRows(body, contentType, Book.class, bookRepository, book -> {
+            book.setId(null);
+            book.setBorrowed(false);
+        }, batch -> Map.of(), saved -> eventPublisher.publishEvent(new BooksRegisteredEvent(List.copyOf(saved))));
+    }
+
+    /**
+     * Imports borrowers. Any id in the input is ignored. Rows whose email is already registered, or
+     * appears earlier in the same batch, are rejected before the batch is inserted.
+     *
+     * @param body        Request body holding the rows
+     * @param contentType text/csv (with a header row), application/json or application/x-ndjson
+     * @return Counts, per-row errors and throughput of the import
+     */
+    public ImportReport importBorrowers(InputStream body, String contentType) {
+        return importRows(body, contentType, Borrower.class, borrowerRepository, borrower -> borrower.setId(null),
+                this::duplicateEmails,
+                saved -> borrowerEmails.addAll(saved.stream().map(Borrower::getEmail).filter(Objects::nonNull).toList()));
+    }
+
+    private Map<Integer, String> duplicateEmails(List<Borrower> batch) {
+        Set<String> registered = borrowerEmails.findRegistered(
+                batch.stream().map(Borrower::getEmail).filter(Objects::nonNull).toList());
+        Set<String> seen = new HashSet<>();
+        Map<Integer, String> duplicates = new HashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            String email = batch.get(i).getEmail();
+            if (email == null) {
+                continue;
+            }
+            if (registered.contains(email)) {
+                duplicates.put(i, "A borrower is already registered with email: " + email);
+            } else if (!seen.add(email)) {
+                duplicates.put(i, "Duplicate email within the import: " + email);
+            }
+        }
+        return duplicates;
+    }
+
+    private <T> ImportReport importRows(InputStream body, String contentType, Class<T> type,
+                                        JpaRepository<T, Long> repository, Consumer<T> reset,
+                                        Function<List<T>, Map<Integer, String>> findDuplicates,
+                                        Consumer<List<T>> onSaved) {
+        long start = System.nanoTime();
+        ImportReport report = new ImportReport();
+        List<T> batch = new ArrayList<>(batchSize);
+        List<Long> batchRows = new ArrayList<>(batchSize);
+        long row = 0;
+
+        try (MappingIterator<T> rows = readerFor(contentType, type).readValues(body)) {
+            while (rows.hasNextValue()) {
+                row++;
+                T entity;
+                try {
+                    entity = rows.nextValue();
+                } catch (JsonMappingException ex) {
+                    // The row is well-formed but a value does not fit the field; the iterator resyncs on the next row
+                    reject(report, row, ex.getOriginalMessage());
+                    continue;
+                }
+
+                Set<ConstraintViolation<T>> violations = validator.validate(entity);
+                if (!violations.isEmpty()) {
+                    reject(report, row, describe(violations));
+                    continue;
+                }
+
+                reset.accept(entity);
+                batch.add(entity);
+                batchRows.add(row);
+                if (batch.size() >= batchSize) {
+                    saveBatch(batch, batchRows, repository, reset, findDuplicates, onSaved, report);
+                }
+            }
+        } catch (IOException ex) {
+            // Malformed input: nothing after this point can be read reliably
+            reject(report, row, "Unreadable input: " + ex.getMessage());
+        }
+        saveBatch(batch, batchRows, repository, reset, findDuplicates, onSaved, report);
+
+        long elapsedNanos = System.nanoTime() - start;
+        report.setElapsedMillis(elapsedNanos / 1_000_000);
+        report.setRowsPerSecond((report.getAccepted() + report.getRejected()) / (elapsedNanos / 1e9));
+        return report;
+    }
+
+    private <T> void saveBatch(List<T> batch, List<Long> batchRows, JpaRepository<T, Long> repository,
+                               Consumer<T> reset, Function<List<T>, Map<Integer, String>> findDuplicates,
+                               Consumer<List<T>> onSaved, ImportReport report) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        // Known duplicates are rejected up front, so that they do not fail the batch in the database
+        Map<Integer, String> duplicates = findDuplicates.apply(batch);
+        if (!duplicates.isEmpty()) {
+            int kept = 0;
+            for (int i = 0; i < batch.size(); i++) {
+                if (duplicates.containsKey(i)) {
+                    reject(report, batchRows.get(i), duplicates.get(i));
+                } else {
+                    batch.set(kept, batch.get(i));
+                    batchRows.set(kept, batchRows.get(i));
+                    kept++;
+                }
+            }
+            batch.subList(kept, batch.size()).clear();
+            batchRows.subList(kept, batchRows.size()).clear();
+            if (batch.isEmpty()) {
+                return;
+            }
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                repository.saveAllAndFlush(batch);
+                onSaved.accept(batch);
+                // Flushed, so nothing needs the batch to stay managed; the context only exists in here
+                entityManager.clear();
+            });
+            report.setAccepted(report.getAccepted() + batch.size());
+        } catch (DataAccessException | TransactionException ex) {
+            // One bad row fails the whole batch; retry row by row to find out which rows the database rejects
+            for (int i = 0; i < batch.size(); i++) {
+                T entity = batch.get(i);
+                reset.accept(entity);
+                try {
+                    transactionTemplate.executeWithoutResult(status -> {
+                        repository.saveAndFlush(entity);
+                        onSaved.accept(List.of(entity));
+                        entityManager.clear();
+                    });
+                    report.setAccepted(report.getAccepted() + 1);
+                } catch (DataAccessException | TransactionException rowEx) {
+                    // The database message names tables and constraints; it stays in the log
+                    log.debug("Import row {} rejected by the database", batchRows.get(i), rowEx);
+                    reject(report, batchRows.get(i), rowEx instanceof DataIntegrityViolationException
+                            ? "Row conflicts with existing data" : "Row could not be saved");
+                }
+            }
+        }
+        batch.clear();
+        batchRows.clear();
+    }
+
+    private ObjectReader readerFor(String contentType, Class<?> type) {
+        if (contentType != null && TEXT_CSV.includes(MediaType.parseMediaType(contentType))) {
+            return csvMapper.readerFor(type).with(CsvSchema.emptySchema().withHeader());
+        }
+        // Jackson reads a root-level JSON array and a sequence of root-level objects (NDJSON) alike
+        return objectMapper.readerFor(type);
+    }
+
+    private void reject(ImportReport report, long row, String message) {
+        report.setRejected(report.getRejected() + 1);
+        if (report.getErrors().size() < maxReportedErrors) {
+            report.getErrors().add(new ImportReport.RowError(row, message));
+        }
+    }
+
+    private static <T> String describe(Set<ConstraintViolation<T>> violations) {
+        return violations.stream()
+                .map(v -> v.getPropertyPath() + " " + v.getMessage())
+                .sorted()
+                .collect(Collectors.joining("; "));
+    }
+}
@@ -1,33 +1,124 @@
 package com.example.library.service.impl;
 
+import com.example.library.config.CacheConfig;
+import com.example.library.availability.AvailabilityCounters;
+import com.example.library.dedup.BorrowerEmails;
+import com.example.library.dto.Availability;
+import com.example.library.dto.BatchLoanResult;
+import com.example.library.dto.BookChanges;
+import com.example.library.dto.BookPage;
+import com.example.library.dto.BookSearchPage;
+import com.example.library.dto.HoldStatus;
+import com.example.library.dto.LoanStatus;
+import com.example.library.dto.LoanSummary;
+import com.example.library.event.BooksRegisteredEvent;
+import com.example.library.event.HoldClosedEvent;
+import com.example.library.event.HoldPlacedEvent;
+import com.example.library.event.LoansChangedEvent;
 import com.example.library.exception.BookAlreadyBorrowedException;
+import com.example.library.exception.DuplicateResourceException;
 import com.example.library.exception.ResourceNotFoundException;
+import com.example.library.hold.HoldQueues;
 import com.example.library.model.Book;
 import com.example.library.model.Borrower;
+import com.example.library.model.BookCirculation;
+import com.example.library.model.BorrowerActivity;
 import com.example.library.model.BorrowingRecord;
+import com.example.library.model.Hold;
+import com.example.library.model.LoanEvent;
+import com.example.library.outbox.LoanEventOutbox;
+import com.example.library.repository.BookCirculationRepository;
 import com.example.library.repository.BookRepository;
+import com.example.library.repository.BorrowerActivityRepository;
 import com.example.library.repository.BorrowerRepository;
 import com.example.library.repository.BorrowingRecordRepository;
+import com.example.library.repository.HoldRepository;
+import com.example.library.search.BookSearchIndex;
 import com.example.library.service.LibraryService;
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.transaction.TransactionAwareCacheDecorator;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.Period;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 /**
  * Service implementation for library operations such as registering books/borrowers,
  * borrowing and returning books.
  */
 @Service
+@Timed(value = "library.service", description = "Time spent in LibraryService operations")
 public class LibraryServiceImpl implements LibraryService {
+    static final int MAX_PAGE_SIZE = 1000;
+    static final int MAX_BATCH_SIZE = 100;
+    private static final String CURSOR_PREFIX = "book:";
+    private static final String SYNC_TOKEN_PREFIX = "sync:";
+    // Open ends of a loan date range; both are valid dates in every supported database
+    private static final LocalDate EARLIEST_LOAN_DATE = LocalDate.of(1900, 1, 1);
+    private static final LocalDate LATEST_LOAN_DATE = LocalDate.of(9999, 12, 31);
+
     @Autowired
     private BookRepository bookRepository;
     @Autowired
     private BorrowerRepository borrowerRepository;
     @Autowired
     private BorrowingRecordRepository borrowingRecordRepository;
+    @Autowired
+    private LoanEventOutbox loanEventOutbox;
+    @Autowired
+    private BookCirculationRepository bookCirculationRepository;
+    @Autowired
+    private BorrowerActivityRepository borrowerActivityRepository;
+    @Autowired
+    private HoldRepository holdRepository;
+    @Autowired
+    private CacheManager cacheManager;
+    @Autowired
+    private BookSearchIndex bookSearchIndex;
+    @Autowired
+    private AvailabilityCounters availabilityCounters;
+    @Autowired
+    private HoldQueues holdQueues;
+    @Autowired
+    private BorrowerEmails borrowerEmails;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${library.loans.period:P14D}")
+    private Period loanPeriod;
+    @Value("${library.books.sync-lag:PT5S}")
+    private Duration syncLag;
 
     /**
      * Registers a new book in the system.
@@ -36,16 +127,173 @@ public class LibraryServiceImpl implements LibraryService {
      * @return Saved book entity
      * */
     public Book registerBook(Book book) {
-        return bookRepository.save(book);
+        Book saved = bookRepository.save(book);
+        eventPublisher.publishEvent(new BooksRegisteredEvent(List.of(saved)));
+        return saved;
+    }
+
+    /**
+     * Retrieves one page of books ordered by ID, starting after the given cursor.
+     *
+     * @param cursor Opaque cursor from a previous page, or null for the first page
+     * @param size   Maximum number of books to return (capped at {@value #MAX_PAGE_SIZE})
+     * @return The page of books and the cursor for the next page, if any
+     * @throws IllegalArgumentException If the cursor is malformed or the size is not positive
+     */
+    public BookPage getBooks(String cursor, int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Page size must be positive: " + size);
+        }
+        int limit = Math.min(size, MAX_PAGE_SIZE);
+        List<Long> ids = bookRepository.findIdsAfter(decodeCursor(cursor), Limit.of(limit));
+        List<Book> books = loadBooks(ids);
+
+        // A short page means the end of the catalogue has been reached
+        String nextCursor = ids.size() < limit ? null : encodeCursor(ids.get(ids.size() - 1));
+        return new BookPage(books, nextCursor);
+    }
+
+    /**
+     * Searches books by title, author and ISBN. Every term of the query must match,
+     * either as a whole word or as the start of one.
+     *
+     * @param query Search terms
+     * @param page  Zero-based page number
+     * @param size  Maximum number of books per page (capped at {@value #MAX_PAGE_SIZE})
+     * @return The requested page of matches, best match first, and the total number of matches
+     * @throws IllegalArgumentException If the page is negative or the size is not positive
+     */
+    public BookSearchPage searchBooks(String query, int page, int size) {
+        if (page < 0) {
+            throw new IllegalArgumentException("Page must not be negative: " + page);
+        }
+        if (size < 1) {
+            throw new IllegalArgumentException("Page size must be positive: " + size);
+        }
+        int limit = Math.min(size, MAX_PAGE_SIZE);
+        BookSearchIndex.Hits hits = bookSearchIndex.search(query, page * limit, limit);
+        return new BookSearchPage(loadBooks(hits.getIds()), page, limit, hits.getTotal(), hits.isTruncated());
+    }
+
+    /**
+     * Resolves books through the catalogue cache, loading all misses with one query.
+     * Keeps the order of the given IDs.
+     */
+    private List<Book> loadBooks(List<Long> ids) {
+        Cache cache = cacheManager.getCache(CacheConfig.BOOKS);
+        Map<Long, Book> found = new HashMap<>();
+        List<Long> misses = new ArrayList<>();
+        for (Long id : ids) {
+            Book cached = cache.get(id, Book.class);
+            if (cached != null) {
+                found.put(id, cached);
+            } else {
+                misses.add(id);
+            }
+        }
+        if (!misses.isEmpty()) {
+            for (Book book : bookRepository.findAllById(misses)) {
+                // putIfAbsent so a concurrent reader's entry is not overwritten with an older copy
+                cache.putIfAbsent(book.getId(), book);
+                found.put(book.getId(), book);
+            }
+        }
+        // A book deleted between the two queries is simply left out
+        return ids.stream().map(found::get).filter(Objects::nonNull).toList();
+    }
+
+    /**
+     * Streams every book, in ID order, to the given consumer without materialising the catalogue.
+     * Books are detached once consumed so the persistence context stays constant in size.
+     *
+     * @param consumer Receives each book as it is read from the database
+     */
+    @Transactional(readOnly = true)
+    public void streamAllBooks(Consumer<Book> consumer) {
+        try (Stream<Book> books = bookRepository.streamAllOrderedById()) {
+            books.forEach(book -> {
+                consumer.accept(book);
+                entityManager.detach(book);
+            });
+        }
+    }
+
+    /**
+     * Retrieves the books registered, borrowed or returned since a sync token, so a client that keeps
+     * a copy of the catalogue only downloads what changed. Changes are read in (change time, ID) order
+     * off an index and only up to {@code library.books.sync-lag} ago, so a change that commits late
+     * with an earlier time is still picked up by the next call rather than skipped.
+     *
+     * @param since Token from the previous call, or null to start from the beginning of the catalogue
+     * @param size  Maximum number of books to return (capped at {@value #MAX_PAGE_SIZE})
+     * @return The changed books and the token to continue from; the token is unchanged if nothing changed
+     * @throws IllegalArgumentException If the size is not positive or the token is malformed
+     */
+    @Transactional(readOnly = true)
+    public BookChanges getBookChanges(String since, int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Page size must be positive: " + size);
+        }
+        int limit = Math.min(size, MAX_PAGE_SIZE);
+        SyncPosition from = decodeSyncToken(since);
+        List<Book> books = bookRepository.findChangedAfter(from.at(), from.id(), Instant.now().minus(syncLag),
+                Limit.of(limit));
+        if (books.isEmpty()) {
+            return new BookChanges(books, encodeSyncToken(from), true);
+        }
+        Book last = books.get(books.size() - 1);
+        return new BookChanges(books, encodeSyncToken(new SyncPosition(last.getUpdatedAt(), last.getId())),
+                books.size() < limit);
     }
 
     /**
-     * Retrieves all books in the system.
+     * Returns how many copies of an ISBN the library owns and how many are available, from the
+     * in-memory counters rather than by counting book rows.
      *
-     * @return List of all books
+     * @param isbn ISBN, with or without hyphens
+     * @return Copies owned, on loan and available
+     * @throws ResourceNotFoundException If the library owns no copy of the ISBN
      */
-    public List<Book> getAllBooks() {
-        return bookRepository.findAll();
+    public Availability getAvailability(String isbn) {
+        return availabilityCounters.get(isbn)
+                .orElseThrow(() -> new ResourceNotFoundException("No copies found with ISBN: " + isbn));
+    }
+
+    /**
+     * Returns the circulation of a book from the read model projected from the loan event log.
+     * Lags the latest borrows and returns by a few seconds.
+     *
+     * @param bookId ID of the book
+     * @return Whether the book is on loan, to whom, and how often it has been borrowed
+     * @throws ResourceNotFoundException If the book does not exist
+     */
+    @Transactional(readOnly = true)
+    public BookCirculation getCirculation(Long bookId) {
+        return bookCirculationRepository.findById(bookId).orElseGet(() -> {
+            // Not findById, which would cache a book read from a replica
+            if (!bookRepository.existsById(bookId)) {
+                throw new ResourceNotFoundException("Book not found with ID: " + bookId);
+            }
+            return new BookCirculation(bookId, false, null, 0, null, null, null); // Never borrowed
+        });
+    }
+
+    /**
+     * Returns the loan activity of a borrower from the read model projected from the loan event log.
+     * Lags the latest borrows and returns by a few seconds.
+     *
+     * @param borrowerId ID of the borrower
+     * @return Active and total loans and the time of the latest activity
+     * @throws ResourceNotFoundException If the borrower does not exist
+     */
+    @Transactional(readOnly = true)
+    public BorrowerActivity getActivity(Long borrowerId) {
+        return borrowerActivityRepository.findById(borrowerId).orElseGet(() -> {
+            if (!borrowerRepository.existsById(borrowerId)) {
+                throw new ResourceNotFoundException("Borrower not found with ID: " + borrowerId);
+            }
+            return new BorrowerActivity(borrowerId, 0, 0, 0, null, null); // Never borrowed
+        });
     }
 
     /**
@@ -53,9 +301,64 @@ public class LibraryServiceImpl implements LibraryService {
      *
      * @param borrower Borrower to be registered
      * @return Saved borrower entity
+     * @throws DuplicateResourceException If a borrower with the same email is already registered
      */
     public Borrower registerBorrower(Borrower borrower) {
-        return borrowerRepository.save(borrower);
+        String email = borrower.getEmail();
+        if (email == null) {
+            return borrowerRepository.save(borrower);
+        }
+        if (!borrowerEmails.findRegistered(List.of(email)).isEmpty()) {
+            throw new DuplicateResourceException("A borrower is already registered with email: " + email);
+        }
+        borrowerEmails.addAll(List.of(email));
+        try {
+            return borrowerRepository.save(borrower);
+        } catch (DataIntegrityViolationException ex) {
+            // Registered concurrently, or on another node since the email filter was rebuilt
+            throw new DuplicateResourceException("A borrower is already registered with email: " + email);
+        }
+    }
+
+    /**
+     * Retrieves one page of a borrower's loans, newest first. Only the columns of the summary are read,
+     * so no book or borrower entities are loaded.
+     *
+     * @param borrowerId ID of the borrower
+     * @param status     Which loans to include: still open, returned, or all
+     * @param from       Earliest borrow date to include, or null for no lower bound
+     * @param to         Latest borrow date to include, or null for no upper bound
+     * @param page       Zero-based page number
+     * @param size       Maximum number of loans per page (capped at {@value #MAX_PAGE_SIZE})
+     * @return The requested page of loans
+     * @throws ResourceNotFoundException If the borrower does not exist
+     * @throws IllegalArgumentException If the range is reversed, the page is negative or the size is not positive
+     */
+    @Transactional(readOnly = true)
+    public List<LoanSummary> getLoans(Long borrowerId, LoanStatus status, LocalDate from, LocalDate to,
+                                      int page, int size) {
+        if (page < 0) {
+            throw new IllegalArgumentException("Page must not be negative: " + page);
+        }
+        if (size < 1) {
+            throw new IllegalArgumentException("Page size must be positive: " + size);
+        }
+        LocalDate start = from != null ? from : EARLIEST_LOAN_DATE;
+        LocalDate end = to != null ? to : LATEST_LOAN_DATE;
+        if (start.isAfter(end)) {
+            throw new IllegalArgumentException("Loan date range is reversed: " + from + " to " + to);
+        }
+        // Not the cached findById: on a replica it could cache a borrower the primary has since changed
+        if (!borrowerRepository.existsById(borrowerId)) {
+            throw new ResourceNotFoundException("Borrower not found with ID: " + borrowerId);
+        }
+
+        Pageable pageable = PageRequest.of(page, Math.min(size, MAX_PAGE_SIZE));
+        return switch (status) {
+            case ACTIVE -> borrowingRecordRepository.findActiveLoans(borrowerId, start, end, pageable);
+            case RETURNED -> borrowingRecordRepository.findReturnedLoans(borrowerId, start, end, pageable);
+            case ALL -> borrowingRecordRepository.findLoans(borrowerId, start, end, pageable);
+        };
     }
 
     /**
@@ -68,36 +371,38 @@ public class LibraryServiceImpl implements LibraryService {
      * @throws BookAlreadyBorrowedException If the book is already borrowed
      */
     @Transactional
+    @CacheEvict(cacheNames = CacheConfig.BOOKS, key = "#bookId")
     public String borrowBook(Long borrowerId, Long bookId) {
         // Retrieve borrower or throw exception if not found
         Borrower borrower = borrowerRepository.findById(borrowerId)
                 .orElseThrow(() -> new ResourceNotFoundException("Borrower not found with ID: " + borrowerId));
-        // Retrieve book or throw exception if not found
-        Book book = bookRepository.findById(bookId)
-                .orElseThrow(() -> new ResourceNotFoundException("Book not found with ID: " + bookId));
-
-        // Check if the book is already borrowed
-        if (book.isBorrowed()) {
+        // Claim the book with a single conditional UPDATE instead of read-check-write,
+        // so concurrent checkouts of the same copy cannot both succeed and nobody blocks on a lock
+        if (bookRepository.markBorrowedIfAvailable(bookId) == 0) {
+            if (!bookRepository.existsById(bookId)) {
+                throw new ResourceNotFoundException("Book not found with ID: " + bookId);
+            }
             throw new BookAlreadyBorrowedException("Book with ID " + bookId + " is already borrowed.");
         }
-
-        // Mark book as borrowed and save
-        book.setBorrowed(true);
-        bookRepository.save(book);
+        Book book = bookRepository.getReferenceById(bookId);
 
         // Create and save the borrowing record
         BorrowingRecord record = new BorrowingRecord();
         record.setBorrower(borrower);
         record.setBook(book);
         record.setBorrowDate(LocalDate.now());
+        record.setDueDate(record.getBorrowDate().plus(loanPeriod));
 
         borrowingRecordRepository.save(record);
+        loanEventOutbox.append(loanEvent(LoanEvent.Type.BORROWED, record));
+        publishLoansChanged(List.of(bookId), true);
 
         return "Book borrowed successfully.";
     }
 
     /**
-     * Handles the return of a borrowed book.
+     * Handles the return of a borrowed book. If anyone holds the book, it is lent straight to the
+     * oldest hold in the same transaction instead of becoming available.
      *
      * @param borrowerId ID of the borrower (used for verification/future extension)
      * @param bookId     ID of the book to return
@@ -106,29 +411,374 @@ public class LibraryServiceImpl implements LibraryService {
      * @throws IllegalStateException If the book is not borrowed or no borrowing record exists
      */
     @Transactional
+    @CacheEvict(cacheNames = CacheConfig.BOOKS, key = "#bookId")
     public String returnBook(Long borrowerId, Long bookId) {
-        // Retrieve book or throw exception if not found
-        Book book = bookRepository.findById(bookId)
-                .orElseThrow(() -> new ResourceNotFoundException("Book not found with ID: " + bookId));
-
-        // Ensure the book is currently borrowed
-        if (!book.isBorrowed()) {
+        // Release the book only if it is currently borrowed
+        if (bookRepository.markReturnedIfBorrowed(bookId) == 0) {
+            if (!bookRepository.existsById(bookId)) {
+                throw new ResourceNotFoundException("Book not found with ID: " + bookId);
+            }
             throw new IllegalStateException("Book with ID " + bookId + " is not currently borrowed.");
         }
 
-        // Mark the book as returned
-        book.setBorrowed(false);
-        bookRepository.save(book);
-
         // Find the active borrowing record and update return date
-        BorrowingRecord record = borrowingRecordRepository.findAll().stream()
-                .filter(r -> r.getBook().getId().equals(bookId) && r.getReturnDate() == null)
-                .findFirst()
+        BorrowingRecord record = borrowingRecordRepository.findActiveByBookId(bookId)
                 .orElseThrow(() -> new IllegalStateException("No active borrowing record found for book ID: " + bookId));
 
         record.setReturnDate(LocalDate.now());
         borrowingRecordRepository.save(record);
+        loanEventOutbox.append(loanEvent(LoanEvent.Type.RETURNED, record));
+        publishLoansChanged(List.of(bookId), false);
 
+        if (handOffToNextHold(bookId, nextWaitingHold(bookId, 0L), record.getReturnDate())) {
+            publishLoansChanged(List.of(bookId), true);
+            return "Book returned successfully and lent to the next borrower on hold.";
+        }
         return "Book returned successfully.";
     }
+
+    /**
+     * Borrows several books for one borrower in a single transaction. All books are claimed with one
+     * JDBC batch of conditional updates and the loans are inserted in one JDBC batch. A book that
+     * does not exist or is already borrowed is reported and skipped; the others are still borrowed.
+     *
+     * @param borrowerId ID of the borrower
+     * @param bookIds    IDs of the books to borrow (at most {@value #MAX_BATCH_SIZE}); duplicates count once
+     * @return One result per distinct book, in request order
+     * @throws ResourceNotFoundException If the borrower does not exist
+     * @throws IllegalArgumentException If the list is empty, too long or contains null
+     */
+    @Transactional
+    public BatchLoanResult borrowBooks(Long borrowerId, List<Long> bookIds) {
+        List<Long> ids = distinctBatch(bookIds);
+        Borrower borrower = borrowerRepository.findById(borrowerId)
+                .orElseThrow(() -> new ResourceNotFoundException("Borrower not found with ID: " + borrowerId));
+
+        int[] claimed = bookRepository.markAllBorrowedIfAvailable(ids);
+        LocalDate today = LocalDate.now();
+        List<Long> borrowed = new ArrayList<>();
+        List<BorrowingRecord> records = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            if (claimed[i] > 0) {
+                borrowed.add(ids.get(i));
+                records.add(new BorrowingRecord(null, borrower, bookRepository.getReferenceById(ids.get(i)),
+                        today, today.plus(loanPeriod), null));
+            }
+        }
+        borrowingRecordRepository.saveAll(records);
+        loanEventOutbox.append(records.stream().map(record -> loanEvent(LoanEvent.Type.BORROWED, record)).toList());
+        evictBooks(borrowed);
+        publishLoansChanged(borrowed, true);
+
+        Set<Long> existing = existingAmongFailed(ids, borrowed);
+        return buildResult(ids, borrowed, id -> existing.contains(id)
+                ? new BatchLoanResult.Item(id, BatchLoanResult.Outcome.ALREADY_BORROWED, "Book with ID " + id + " is already borrowed.")
+                : new BatchLoanResult.Item(id, BatchLoanResult.Outcome.NOT_FOUND, "Book not found with ID: " + id),
+                id -> new BatchLoanResult.Item(id, BatchLoanResult.Outcome.BORROWED, "Book borrowed successfully."));
+    }
+
+    /**
+     * Returns several books in a single transaction. All books are released with one JDBC batch of
+     * conditional updates and their open loans are fetched with one query. A book that does not exist
+     * or is not borrowed is reported and skipped; the others are still returned. Books someone holds
+     * are lent to the oldest hold, as in {@link #returnBook}.
+     *
+     * @param borrowerId ID of the borrower (used for verification/future extension)
+     * @param bookIds    IDs of the books to return (at most {@value #MAX_BATCH_SIZE}); duplicates count once
+     * @return One result per distinct book, in request order
+     * @throws IllegalArgumentException If the list is empty, too long or contains null
+     * @throws IllegalStateException If a released book has no open borrowing record
+     */
+    @Transactional
+    public BatchLoanResult returnBooks(Long borrowerId, List<Long> bookIds) {
+        List<Long> ids = distinctBatch(bookIds);
+
+        int[] released = bookRepository.markAllReturnedIfBorrowed(ids);
+        List<Long> returned = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            if (released[i] > 0) {
+                returned.add(ids.get(i));
+            }
+        }
+        if (!returned.isEmpty()) {
+            Map<Long, BorrowingRecord> open = new HashMap<>();
+            for (BorrowingRecord record : borrowingRecordRepository.findActiveByBookIds(returned)) {
+                open.put(record.getBook().getId(), record);
+            }
+            LocalDate today = LocalDate.now();
+            List<LoanEvent> events = new ArrayList<>(returned.size());
+            for (Long bookId : returned) {
+                BorrowingRecord record = open.get(bookId);
+                if (record == null) {
+                    throw new IllegalStateException("No active borrowing record found for book ID: " + bookId);
+                }
+                // Flushed as one batch of updates on commit
+                record.setReturnDate(today);
+                events.add(loanEvent(LoanEvent.Type.RETURNED, record));
+            }
+            loanEventOutbox.append(events);
+        }
+        evictBooks(returned);
+        publishLoansChanged(returned, false);
+
+        LocalDate today = LocalDate.now();
+        Map<Long, Hold> oldest = new HashMap<>();
+        if (!returned.isEmpty()) {
+            holdRepository.findOldestWaiting(returned).forEach(hold -> oldest.put(hold.getBook().getId(), hold));
+        }
+        List<Long> lent = returned.stream().filter(bookId -> handOffToNextHold(bookId, oldest.get(bookId), today)).toList();
+        publishLoansChanged(lent, true);
+
+        Set<Long> existing = existingAmongFailed(ids, returned);
+        return buildResult(ids, returned, id -> existing.contains(id)
+                ? new BatchLoanResult.Item(id, BatchLoanResult.Outcome.NOT_BORROWED, "Book with ID " + id + " is not currently borrowed.")
+                : new BatchLoanResult.Item(id, BatchLoanResult.Outcome.NOT_FOUND, "Book not found with ID: " + id),
+                id -> new BatchLoanResult.Item(id, BatchLoanResult.Outcome.RETURNED, lent.contains(id)
+                        ? "Book returned successfully and lent to the next borrower on hold."
+                        : "Book returned successfully."));
+    }
+
+    /**
+     * Places a hold on a borrowed book. The borrower joins the back of the book's queue and is lent
+     * the book when it is returned and their hold is the oldest, without having to poll for it.
+     *
+     * @param borrowerId ID of the borrower
+     * @param bookId     ID of the book to hold
+     * @return The new hold and its place in the queue
+     * @throws ResourceNotFoundException If borrower or book does not exist
+     * @throws IllegalStateException If the book is available, or the borrower already holds or has it
+     */
+    @Transactional
+    public HoldStatus placeHold(Long borrowerId, Long bookId) {
+        Borrower borrower = borrowerRepository.findById(borrowerId)
+                .orElseThrow(() -> new ResourceNotFoundException("Borrower not found with ID: " + borrowerId));
+        // Lock the borrowed book so a concurrent return either commits first, and the book is seen
+        // as available, or waits for this hold and lends the book to the queue including it
+        if (bookRepository.lockIfBorrowed(bookId) == 0) {
+            if (!bookRepository.existsById(bookId)) {
+                throw new ResourceNotFoundException("Book not found with ID: " + bookId);
+            }
+            throw new IllegalStateException("Book with ID " + bookId + " is available; borrow it instead.");
+        }
+        if (holdRepository.existsWaiting(bookId, borrowerId)) {
+            throw new IllegalStateException("Borrower " + borrowerId + " already has a hold on book ID " + bookId + ".");
+        }
+        borrowingRecordRepository.findActiveByBookId(bookId)
+                .filter(loan -> loan.getBorrower().getId().equals(borrowerId))
+                .ifPresent(loan -> {
+                    throw new IllegalStateException("Borrower " + borrowerId + " already has book ID " + bookId + " on loan.");
+                });
+
+        Hold hold = holdRepository.save(new Hold(null, bookRepository.getReferenceById(bookId), borrower,
+                Hold.Status.WAITING, Instant.now(), null));
+        // Queued before commit, while the book is still locked, so no return can miss it
+        holdQueues.add(bookId, hold.getId(), borrowerId);
+        eventPublisher.publishEvent(new HoldPlacedEvent(bookId, hold.getId()));
+        return new HoldStatus(hold.getId(), bookId, Hold.Status.WAITING,
+                holdQueues.position(bookId, hold.getId()), holdQueues.length(bookId));
+    }
+
+    /**
+     * Returns where a hold stands. The position of a waiting hold comes from the in-memory queue;
+     * the database is only read for holds that are no longer waiting.
+     *
+     * @param holdId ID of the hold
+     * @return The hold's status, and its place in the queue if it is waiting
+     * @throws ResourceNotFoundException If the hold does not exist
+     */
+    public HoldStatus getHold(Long holdId) {
+        Long bookId = holdQueues.bookOf(holdId);
+        if (bookId != null) {
+            int position = holdQueues.position(bookId, holdId);
+            if (position > 0) {
+                return new HoldStatus(holdId, bookId, Hold.Status.WAITING, position, holdQueues.length(bookId));
+            }
+        }
+        Hold hold = holdRepository.findById(holdId)
+                .orElseThrow(() -> new ResourceNotFoundException("Hold not found with ID: " + holdId));
+        return new HoldStatus(holdId, hold.getBook().getId(), hold.getStatus(), 0, 0);
+    }
+
+    /**
+     * Cancels a waiting hold and takes it out of the queue.
+     *
+     * @param holdId ID of the hold
+     * @return Success message
+     * @throws ResourceNotFoundException If the hold does not exist
+     * @throws IllegalStateException If the hold has already been fulfilled or cancelled
+     */
+    @Transactional
+    public String cancelHold(Long holdId) {
+        Hold hold = holdRepository.findById(holdId)
+                .orElseThrow(() -> new ResourceNotFoundException("Hold not found with ID: " + holdId));
+        if (holdRepository.closeIfWaiting(holdId, Hold.Status.CANCELLED, Instant.now()) == 0) {
+            throw new IllegalStateException("Hold with ID " + holdId + " is no longer waiting.");
+        }
+        eventPublisher.publishEvent(new HoldClosedEvent(hold.getBook().getId(), holdId));
+        return "Hold cancelled successfully.";
+    }
+
+    private static List<Long> distinctBatch(List<Long> bookIds) {
+        if (bookIds == null || bookIds.isEmpty()) {
+            throw new IllegalArgumentException("At least one book ID is required");
+        }
+        if (bookIds.stream().anyMatch(Objects::isNull)) {
+            throw new IllegalArgumentException("Book IDs must not be null");
+        }
+        List<Long> ids = new ArrayList<>(new LinkedHashSet<>(bookIds));
+        if (ids.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("At most " + MAX_BATCH_SIZE + " books per batch: " + ids.size());
+        }
+        return ids;
+    }
+
+    /**
+     * Tells "does not exist" from "wrong state" for the books the conditional update skipped,
+     * with one query and only when something was skipped.
+     */
+    private Set<Long> existingAmongFailed(List<Long> ids, List<Long> succeeded) {
+        Set<Long> failed = new HashSet<>(ids);
+        succeeded.forEach(failed::remove);
+        return failed.isEmpty() ? Set.of() : new HashSet<>(bookRepository.findExistingIds(failed));
+    }
+
+    private static BatchLoanResult buildResult(List<Long> ids, List<Long> succeeded,
+                                               Function<Long, BatchLoanResult.Item> failure,
+                                               Function<Long, BatchLoanResult.Item> success) {
+        Set<Long> ok = new HashSet<>(succeeded);
+        List<BatchLoanResult.Item> items = ids.stream()
+                .map(id -> ok.contains(id) ? success.apply(id) : failure.apply(id))
+                .toList();
+        return new BatchLoanResult(ok.size(), ids.size() - ok.size(), items);
+    }
+
+    /**
+     * Lends a book released in this transaction to its oldest waiting hold. The book's row stays locked
+     * until commit, so nobody can borrow it or place a hold on it in between. Holds are read from the
+     * database rather than the in-memory queue, which misses holds placed on other nodes. Holds
+     * cancelled concurrently are skipped, and their cancellation announces their closing; the
+     * fulfilled one is dropped from the queue.
+     *
+     * @param oldest The book's oldest waiting hold as read in this transaction, or null if it has none
+     * @return Whether the book was lent to a hold
+     * @throws BookAlreadyBorrowedException If the book was claimed by someone else despite the lock,
+     *                                      which rolls the whole return back rather than lend it twice
+     */
+    private boolean handOffToNextHold(Long bookId, Hold oldest, LocalDate today) {
+        Hold hold = oldest;
+        while (hold != null) {
+            if (holdRepository.closeIfWaiting(hold.getId(), Hold.Status.FULFILLED, Instant.now()) > 0) {
+                eventPublisher.publishEvent(new HoldClosedEvent(bookId, hold.getId()));
+                if (bookRepository.markBorrowedIfAvailable(bookId) != 1) {
+                    throw new BookAlreadyBorrowedException("Book with ID " + bookId
+                            + " was borrowed while being lent to hold " + hold.getId() + ".");
+                }
+                BorrowingRecord loan = new BorrowingRecord(null, hold.getBorrower(),
+                        bookRepository.getReferenceById(bookId), today, today.plus(loanPeriod), null);
+                borrowingRecordRepository.save(loan);
+                loanEventOutbox.append(loanEvent(LoanEvent.Type.BORROWED, loan));
+                return true;
+            }
+            hold = nextWaitingHold(bookId, hold.getId());
+        }
+        return false;
+    }
+
+    private Hold nextWaitingHold(Long bookId, Long afterId) {
+        return holdRepository.findWaitingForBook(bookId, afterId, Limit.of(1)).stream().findFirst().orElse(null);
+    }
+
+    /**
+     * Builds the log entry for a loan. Reading the IDs of the lazy book and borrower does not load them.
+     */
+    private static LoanEvent loanEvent(LoanEvent.Type type, BorrowingRecord record) {
+        return new LoanEvent(null, type, record.getId(), record.getBook().getId(), record.getBorrower().getId(), Instant.now());
+    }
+
+    /**
+     * Tells listeners such as the availability counters which ISBNs changed state; listeners only act
+     * once the transaction commits. ISBNs are read from the catalogue cache where present and the rest
+     * with one projection query. Nothing is put in the cache: books read inside this write transaction
+     * carry its uncommitted borrowed flag.
+     */
+    private void publishLoansChanged(List<Long> bookIds, boolean borrowed) {
+        if (bookIds.isEmpty()) {
+            return;
+        }
+        Cache cache = cacheManager.getCache(CacheConfig.BOOKS);
+        List<String> isbns = new ArrayList<>(bookIds.size());
+        List<Long> misses = new ArrayList<>();
+        for (Long id : bookIds) {
+            Book cached = cache.get(id, Book.class);
+            if (cached != null) {
+                isbns.add(cached.getIsbn());
+            } else {
+                misses.add(id);
+            }
+        }
+        if (!misses.isEmpty()) {
+            isbns.addAll(bookRepository.findIsbnsByIds(misses));
+        }
+        eventPublisher.publishEvent(new LoansChangedEvent(isbns, borrowed));
+    }
+
+    /**
+     * Evicts changed books from the catalogue cache once the transaction commits, the same timing
+     * {@code @CacheEvict} gives the single-book operations.
+     */
+    private void evictBooks(List<Long> bookIds) {
+        Cache cache = new TransactionAwareCacheDecorator(cacheManager.getCache(CacheConfig.BOOKS));
+        bookIds.forEach(cache::evict);
+    }
+
+    public static String encodeCursor(Long lastId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((CURSOR_PREFIX + lastId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static Long decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return 0L;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!decoded.startsWith(CURSOR_PREFIX)) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+            return Long.parseLong(decoded.substring(CURSOR_PREFIX.length()));
+        } catch (IllegalArgumentException ex) { // also covers NumberFormatException
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+
+    public static String encodeSyncToken(SyncPosition position) {
+        String token = SYNC_TOKEN_PREFIX + position.at().getEpochSecond() + ':' + position.at().getNano() + ':' + position.id();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static SyncPosition decodeSyncToken(String token) {
+        if (token == null || token.isBlank()) {
+            return new SyncPosition(Instant.EPOCH, 0L);
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            if (!decoded.startsWith(SYNC_TOKEN_PREFIX)) {
+                throw new IllegalArgumentException("Invalid sync token: " + token);
+            }
+            String[] parts = decoded.substring(SYNC_TOKEN_PREFIX.length()).split(":");
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Invalid sync token: " + token);
+            }
+            return new SyncPosition(Instant.ofEpochSecond(Long.parseLong(parts[0]), Long.parseLong(parts[1])),
+                    Long.parseLong(parts[2]));
+        } catch (IllegalArgumentException | DateTimeException ex) { // also covers NumberFormatException
+            throw new IllegalArgumentException("Invalid sync token: " + token);
+        }
+    }
+
+    /**
+     * Position in the change order of the catalogue: the change time of the last book seen, and its ID.
+     */
+    public record SyncPosition(Instant at, Long id) {
+    }
 }
@@ -0,0 +1,30 @@
+-- Schema as Hibernate generated it with ddl-auto before migrations were introduced. Databases that
+-- were created that way are baselined at this version and skip it (spring.flyway.baseline-on-migrate).
+
+create table book (
+    id          bigint generated by default as identity,
+    isbn        varchar(255),
+    title       varchar(255),
+    author      varchar(255),
+    is_borrowed boolean not null,
+    primary key (id)
+);
+
+create table borrower (
+    id    bigint generated by default as identity,
+    name  varchar(255),
+    email varchar(255) unique,
+    primary key (id)
+);
+
+-- book_id was a @OneToOne, hence unique: a book could only ever be lent once (dropped by V5)
+create table borrowing_record (
+    id          bigint generated by default as identity,
+    book_id     bigint unique,
+    borrower_id bigint,
+    borrow_date date,
+    return_date date,
+    primary key (id),
+    constraint fk_borrowing_record_book foreign key (book_id) references book,
+    constraint fk_borrowing_record_borrower foreign key (borrower_id) references borrower
+);
@@ -0,0 +1,12 @@
+-- Loan events the outbox dispatcher could not deliver to a sink
+create sequence dead_letter_seq start with 1 increment by 50;
+
+create table dead_letter (
+    id        bigint not null,
+    sink      varchar(64),
+    event_id  bigint,
+    attempts  integer not null,
+    error     varchar(1000),
+    failed_at timestamp(6) with time zone,
+    primary key (id)
+);
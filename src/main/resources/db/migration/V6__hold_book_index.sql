@@ -0,0 +1,2 @@
+-- Returns lend the book to its oldest waiting hold: book_id = ? and status = 'WAITING' order by id
+create index if not exists idx_hold_book_status on hold (book_id, status, id);
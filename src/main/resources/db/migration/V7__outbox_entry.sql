@@ -0,0 +1,18 @@
+-- Loan events each outbox sink has yet to accept, written in the same transaction as the event
+create sequence outbox_entry_seq start with 1 increment by 50;
+
+create table outbox_entry (
+    id       bigint not null,
+    consumer varchar(64) not null,
+    event_id bigint not null,
+    primary key (id),
+    constraint uk_outbox_entry_consumer_event unique (consumer, event_id)
+);
+
+-- Sinks that followed the log by checkpoint are still owed the events after it
+insert into outbox_entry (id, consumer, event_id)
+select nextval('outbox_entry_seq'), c.job, e.id
+from job_checkpoint c
+join loan_event e on e.recorded_at > c.last_recorded_at
+    or (e.recorded_at = c.last_recorded_at and e.id > c.last_id)
+where c.job like 'outbox-%';
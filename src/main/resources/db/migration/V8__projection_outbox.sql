@@ -0,0 +1,17 @@
+-- The loan projection now reads its pending events from outbox_entry rather than by (recorded_at, id)
+-- position. Events after its checkpoint, or every event if it never ran, are still to be applied.
+insert into outbox_entry (id, consumer, event_id)
+select nextval('outbox_entry_seq'), 'loan-projection', e.id
+from loan_event e
+where not exists (
+    select 1 from job_checkpoint c
+    where c.job = 'loan-projection'
+      and (e.recorded_at < c.last_recorded_at or (e.recorded_at = c.last_recorded_at and e.id <= c.last_id)));
+
+-- Its checkpoint row is locked by each chunk, so it has to exist before the first one
+insert into job_checkpoint (job, last_id, completed, updated_at, version)
+select 'loan-projection', 0, false, current_timestamp, 0
+where not exists (select 1 from job_checkpoint where job = 'loan-projection');
+
+-- Nothing reads the log in (recorded_at, id) order any more
+drop index if exists idx_loan_event_recorded;
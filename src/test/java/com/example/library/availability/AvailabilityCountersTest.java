@@ -0,0 +1,101 @@
+package com.example.library.availability;
+
+import com.example.library.dto.Availability;
+import com.example.library.event.BooksRegisteredEvent;
+import com.example.library.event.LoansChangedEvent;
+import com.example.library.model.Book;
+import com.example.library.repository.BookRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class AvailabilityCountersTest {
+
+    @Mock
+    private BookRepository bookRepository;
+
+    @InjectMocks
+    private AvailabilityCounters counters;
+
+    // Register three copies of one ISBN, one of them already on loan
+    @BeforeEach
+    void setup() {
+        MockitoAnnotations.openMocks(this);
+        counters.onBooksRegistered(new BooksRegisteredEvent(List.of(
+                new Book(1L, "978-0132350884", "Clean Code", "Robert C. Martin", false, null),
+                new Book(2L, "978-0132350884", "Clean Code", "Robert C. Martin", false, null),
+                new Book(3L, "9780132350884", "Clean Code", "Robert C. Martin", true, null))));
+    }
+
+    /**
+     * Test case for counting registered copies, whatever the ISBN formatting
+     */
+    @Test
+    void testCountsRegisteredCopies() {
+        assertEquals(new Availability("9780132350884", 3, 1, 2), counters.get("978-0-13-235088-4").orElseThrow());
+        assertTrue(counters.get("978-0201485677").isEmpty());
+    }
+
+    /**
+     * Test case for borrows and returns moving copies between available and on loan
+     */
+    @Test
+    void testBorrowAndReturn() {
+        counters.onLoansChanged(new LoansChangedEvent(List.of("978-0132350884", "978-0132350884"), true));
+        assertEquals(0, counters.get("9780132350884").orElseThrow().getAvailable());
+
+        counters.onLoansChanged(new LoansChangedEvent(List.of("978-0132350884"), false));
+        assertEquals(1, counters.get("9780132350884").orElseThrow().getAvailable());
+    }
+
+    /**
+     * Test case for reconciliation replacing drifted counters with the database counts
+     */
+    @Test
+    void testReconcileCorrectsDrift() {
+        when(bookRepository.countCopiesByIsbn()).thenReturn(List.of(
+                new Availability("978-0132350884", 2, 0, 2),
+                new Availability("9780132350884", 1, 1, 0),
+                new Availability("978-0201485677", 1, 0, 1),
+                // Books registered without an ISBN are grouped under null
+                new Availability(null, 4, 0, 4)));
+
+        counters.reconcile();
+
+        // Differently formatted ISBNs in the database are merged into one counter
+        assertEquals(new Availability("9780132350884", 3, 1, 2), counters.get("9780132350884").orElseThrow());
+        assertEquals(1, counters.get("978-0201485677").orElseThrow().getTotal());
+    }
+
+    /**
+     * Test case for a borrow that commits while the reconcile query runs: the query may already count
+     * it, so the counter keeps its live value instead of counting the borrow twice
+     */
+    @Test
+    void testChangeDuringReconcileIsNotCountedTwice() {
+        when(bookRepository.countCopiesByIsbn()).thenAnswer(inv -> {
+            counters.onLoansChanged(new LoansChangedEvent(List.of("978-0132350884"), true));
+            return List.of(
+                    new Availability("9780132350884", 3, 2, 1),
+                    new Availability("978-0201485677", 1, 0, 1));
+        });
+
+        counters.reconcile();
+
+        assertEquals(new Availability("9780132350884", 3, 2, 1), counters.get("9780132350884").orElseThrow());
+        assertEquals(1, counters.get("978-0201485677").orElseThrow().getTotal());
+
+        // Untouched since, the next reconciliation corrects it
+        when(bookRepository.countCopiesByIsbn()).thenReturn(List.of(new Availability("9780132350884", 3, 1, 2)));
+        counters.reconcile();
+        assertEquals(new Availability("9780132350884", 3, 1, 2), counters.get("9780132350884").orElseThrow());
+        assertTrue(counters.get("978-0201485677").isEmpty());
+    }
+}
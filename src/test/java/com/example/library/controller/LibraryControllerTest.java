@@ -1,16 +1,37 @@
 package com.example.library.controller;
 
+import com.example.library.dto.Availability;
+import com.example.library.dto.BatchLoanResult;
+import com.example.library.dto.BookChanges;
+import com.example.library.dto.BookPage;
+import com.example.library.dto.BookSearchPage;
+import com.example.library.dto.HoldStatus;
+import com.example.library.dto.LoanStatus;
+import com.example.library.dto.LoanSummary;
+import com.example.library.exception.BookAlreadyBorrowedException;
+import com.example.library.exception.DuplicateResourceException;
 import com.example.library.model.Book;
+import com.example.library.model.BookCirculation;
 import com.example.library.model.Borrower;
+import com.example.library.model.Hold;
 import com.example.library.service.LibraryService;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.time.LocalDate;
 import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
@@ -25,6 +46,7 @@ import static org.mockito.ArgumentMatchers.any;
  * It focuses on the web layer, mocking the service layer.
  */
 @WebMvcTest(LibraryController.class)
+@Import(SimpleMeterRegistry.class) // Used by GlobalExceptionHandler to count errors
 public class LibraryControllerTest {
     // Used to perform HTTP requests in tests
     @Autowired
@@ -34,23 +56,70 @@ public class LibraryControllerTest {
     @MockBean
     private LibraryService libraryService;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     /**
-     * Test GET /books endpoint
-     * Ensures it returns a list of books and HTTP 200 status
+     * Test GET /api/books endpoint
+     * Ensures it returns a page of books and the next cursor with HTTP 200 status
      */
     @Test
-    void testGetAllBooks() throws Exception {
-        // Mock the service to return a list of 2 books
-        Mockito.when(libraryService.getAllBooks()).thenReturn(List.of(new Book(), new Book()));
+    void testGetBooks() throws Exception {
+        // Mock the service to return a page of 2 books
+        Mockito.when(libraryService.getBooks(null, 50)).thenReturn(new BookPage(List.of(new Book(), new Book()), "next"));
 
         // Perform GET request and validate response
-        mockMvc.perform(get("/books"))
+        mockMvc.perform(get("/api/books"))
                 .andExpect(status().isOk()) // Expect HTTP 200
-                .andExpect(jsonPath("$.length()").value(1)); // Expect 2 items in the JSON array
+                .andExpect(jsonPath("$.items.length()").value(2)) // Expect 2 items in the JSON array
+                .andExpect(jsonPath("$.nextCursor").value("next"));
+    }
+
+    /**
+     * Test GET /api/books with Accept: application/x-ndjson
+     * Ensures the catalogue is streamed one JSON object per line
+     */
+    @Test
+    void testStreamAllBooks() throws Exception {
+        Book book = new Book();
+        book.setId(1L);
+        book.setTitle("Sample");
+        Mockito.doAnswer(invocation -> {
+            Consumer<Book> consumer = invocation.getArgument(0);
+            consumer.accept(book);
+            consumer.accept(book);
+            return null;
+        }).when(libraryService).streamAllBooks(any());
+
+        MvcResult result = mockMvc.perform(get("/api/books").accept("application/x-ndjson"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString();
+        assertEquals(2, body.lines().count());
     }
 
     /**
-     * Test POST /books to register a new book
+     * Test GET /api/books/search endpoint
+     */
+    @Test
+    void testSearchBooks() throws Exception {
+        Book book = new Book();
+        book.setTitle("Clean Code");
+        Mockito.when(libraryService.searchBooks("clean", 0, 20)).thenReturn(new BookSearchPage(List.of(book), 0, 20, 1, false));
+
+        mockMvc.perform(get("/api/books/search").param("q", "clean"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].title").value("Clean Code"))
+                .andExpect(jsonPath("$.total").value(1))
+                .andExpect(jsonPath("$.truncated").value(false));
+    }
+
+    /**
+     * Test POST /api/books to register a new book
      */
     @Test
     void testRegisterBook() throws Exception {
@@ -60,7 +129,7 @@ public class LibraryControllerTest {
 
         Mockito.when(libraryService.registerBook(any(Book.class))).thenReturn(book);
 
-        mockMvc.perform(post("/books")
+        mockMvc.perform(post("/api/books")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content("{\"title\":\"Sample\",\"author\":\"Author\"}"))
                 .andExpect(status().isOk())
@@ -68,7 +137,7 @@ public class LibraryControllerTest {
     }
 
     /**
-     * Test POST /borrowers to register a new borrower
+     * Test POST /api/borrowers to register a new borrower
      */
     @Test
     void testRegisterBorrower() throws Exception {
@@ -78,10 +147,194 @@ public class LibraryControllerTest {
 
         Mockito.when(libraryService.registerBorrower(any(Borrower.class))).thenReturn(borrower);
 
-        mockMvc.perform(post("/borrowers")
+        mockMvc.perform(post("/api/borrowers")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content("{\"name\":\"John\"}"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.name").value("John"));
     }
+
+    /**
+     * Test POST /api/borrowers with an email that is already registered
+     */
+    @Test
+    void testRegisterBorrowerDuplicateEmail() throws Exception {
+        Mockito.when(libraryService.registerBorrower(any(Borrower.class)))
+                .thenThrow(new DuplicateResourceException("A borrower is already registered with email: john@example.com"));
+
+        mockMvc.perform(post("/api/borrowers")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"John\",\"email\":\"john@example.com\"}"))
+                .andExpect(status().isConflict());
+
+        assertEquals(1.0, meterRegistry.get("library.errors").tag("outcome", "duplicate").counter().count());
+    }
+
+    /**
+     * Test case for retrieving a borrower's returned loans within a date range
+     */
+    @Test
+    void testGetLoans() throws Exception {
+        LocalDate from = LocalDate.of(2024, 1, 1);
+        LoanSummary loan = new LoanSummary(7L, 5L, "978-0132350884", "Clean Code",
+                LocalDate.of(2024, 3, 1), LocalDate.of(2024, 3, 15));
+        Mockito.when(libraryService.getLoans(1L, LoanStatus.RETURNED, from, null, 0, 50)).thenReturn(List.of(loan));
+
+        mockMvc.perform(get("/api/borrowers/1/loans").param("status", "returned").param("from", "2024-01-01"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].title").value("Clean Code"))
+                .andExpect(jsonPath("$[0].returnDate").value("2024-03-15"));
+    }
+
+    /**
+     * Test case for an unknown loan status filter
+     */
+    @Test
+    void testGetLoansInvalidStatus() throws Exception {
+        mockMvc.perform(get("/api/borrowers/1/loans").param("status", "lost"))
+                .andExpect(status().isBadRequest());
+    }
+
+    /**
+     * Test POST /api/borrowers/{borrowerId}/books/{bookId}/borrow for a book that is already borrowed
+     * Ensures the 409 response and the error counter tagged with its outcome
+     */
+    @Test
+    void testBorrowBookAlreadyBorrowed() throws Exception {
+        Mockito.when(libraryService.borrowBook(1L, 2L)).thenThrow(new BookAlreadyBorrowedException("Book with ID 2 is already borrowed."));
+
+        mockMvc.perform(post("/api/borrowers/1/books/2/borrow"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.message").value("Book with ID 2 is already borrowed."));
+
+        assertEquals(1.0, meterRegistry.get("library.errors").tag("outcome", "already_borrowed").counter().count());
+    }
+
+    /**
+     * Test case for borrowing a batch of books
+     */
+    @Test
+    void testBorrowBooks() throws Exception {
+        BatchLoanResult result = new BatchLoanResult(1, 1, List.of(
+                new BatchLoanResult.Item(10L, BatchLoanResult.Outcome.BORROWED, "Book borrowed successfully."),
+                new BatchLoanResult.Item(11L, BatchLoanResult.Outcome.ALREADY_BORROWED, "Book with ID 11 is already borrowed.")));
+        Mockito.when(libraryService.borrowBooks(1L, List.of(10L, 11L))).thenReturn(result);
+
+        mockMvc.perform(post("/api/borrowers/1/borrow")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"bookIds\":[10,11]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.succeeded").value(1))
+                .andExpect(jsonPath("$.items[1].outcome").value("ALREADY_BORROWED"));
+    }
+
+    /**
+     * Test case for retrieving the availability of an ISBN
+     */
+    @Test
+    void testGetAvailability() throws Exception {
+        Mockito.when(libraryService.getAvailability("978-0132350884"))
+                .thenReturn(new Availability("9780132350884", 3, 1, 2));
+
+        mockMvc.perform(get("/api/books/availability/978-0132350884"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(3))
+                .andExpect(jsonPath("$.available").value(2));
+    }
+
+    /**
+     * Test case for retrieving the circulation of a book
+     */
+    @Test
+    void testGetCirculation() throws Exception {
+        Mockito.when(libraryService.getCirculation(5L))
+                .thenReturn(new BookCirculation(5L, true, 1L, 12, null, null, 3L));
+
+        mockMvc.perform(get("/api/books/5/circulation"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.onLoan").value(true))
+                .andExpect(jsonPath("$.timesBorrowed").value(12))
+                .andExpect(jsonPath("$.version").doesNotExist());
+    }
+
+    /**
+     * Test case for placing a hold on a borrowed book
+     */
+    @Test
+    void testPlaceHold() throws Exception {
+        Mockito.when(libraryService.placeHold(1L, 5L))
+                .thenReturn(new HoldStatus(30L, 5L, Hold.Status.WAITING, 4, 4));
+
+        mockMvc.perform(post("/api/borrowers/1/holds/5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.holdId").value(30))
+                .andExpect(jsonPath("$.position").value(4));
+    }
+
+    /**
+     * Test case for placing a hold on a book that is available
+     */
+    @Test
+    void testPlaceHoldOnAvailableBook() throws Exception {
+        Mockito.when(libraryService.placeHold(1L, 5L))
+                .thenThrow(new IllegalStateException("Book with ID 5 is available; borrow it instead."));
+
+        mockMvc.perform(post("/api/borrowers/1/holds/5"))
+                .andExpect(status().isBadRequest());
+    }
+
+    /**
+     * Test case for retrieving a page of books as CBOR
+     */
+    @Test
+    void testGetBooksAsCbor() throws Exception {
+        Book book = new Book(1L, "978-0132350884", "Clean Code", "Robert C. Martin", false, null);
+        Mockito.when(libraryService.getBooks(null, 50)).thenReturn(new BookPage(List.of(book), null));
+
+        MvcResult result = mockMvc.perform(get("/api/books").accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn();
+
+        BookPage page = new CBORMapper().readValue(result.getResponse().getContentAsByteArray(), BookPage.class);
+        assertEquals("Clean Code", page.getItems().get(0).getTitle());
+    }
+
+    /**
+     * Test case for revalidating an unchanged page with its ETag
+     */
+    @Test
+    void testGetBooksNotModified() throws Exception {
+        Book book = new Book(1L, "978-0132350884", "Clean Code", "Robert C. Martin", false, null);
+        Mockito.when(libraryService.getBooks(null, 50)).thenReturn(new BookPage(List.of(book), null));
+
+        String etag = mockMvc.perform(get("/api/books"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/books").header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        // Once the book is borrowed the page is sent again
+        book.setBorrowed(true);
+        mockMvc.perform(get("/api/books").header("If-None-Match", etag))
+                .andExpect(status().isOk());
+    }
+
+    /**
+     * Test case for retrieving the books changed since a sync token
+     */
+    @Test
+    void testGetBookChanges() throws Exception {
+        Mockito.when(libraryService.getBookChanges("token", 500))
+                .thenReturn(new BookChanges(List.of(new Book()), "next-token", true));
+
+        mockMvc.perform(get("/api/books/changes").param("since", "token"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andExpect(jsonPath("$.items.length()").value(1))
+                .andExpect(jsonPath("$.next").value("next-token"))
+                .andExpect(jsonPath("$.complete").value(true));
+    }
 }
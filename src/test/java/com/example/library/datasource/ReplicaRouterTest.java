@@ -0,0 +1,141 @@
+package com.example.library.datasource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class ReplicaRouterTest {
+    private static final String LAG_QUERY = "select lag";
+
+    private final DataSource primary = mock(DataSource.class, RETURNS_DEEP_STUBS);
+    private final DataSource replica = mock(DataSource.class, RETURNS_DEEP_STUBS);
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ReplicaRouter router;
+
+    @BeforeEach
+    void setup() {
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        replicas.put("replica-1", replica);
+        router = new ReplicaRouter(primary, replicas, LAG_QUERY, Duration.ofSeconds(2), Duration.ofSeconds(1), meterRegistry);
+        ReplicaRouter.SERVICE_READ.set(Boolean.TRUE);
+    }
+
+    @AfterEach
+    void cleanup() {
+        ReplicaRouter.SERVICE_READ.remove();
+    }
+
+    /**
+     * Test case for a replica only receiving reads once its lag has been checked
+     */
+    @Test
+    void testReplicaJoinsRotationOnceCaughtUp() throws SQLException {
+        lag(0.5);
+        assertSame(primary.getConnection(), router.getConnection());
+
+        router.checkLag();
+
+        assertEquals(List.of("replica-1"), router.inRotation());
+        assertSame(replica.getConnection(), router.getConnection());
+        assertEquals(1, reads("replica-1"));
+        assertEquals(1, reads(ReplicaRouter.PRIMARY));
+        assertEquals(0.5, meterRegistry.get("library.datasource.replica.lag").gauge().value());
+    }
+
+    /**
+     * Test case for reads falling back to the primary while the replica lags, and returning once it catches up
+     */
+    @Test
+    void testLaggingReplicaFallsBackToPrimary() throws SQLException {
+        lag(10);
+        router.checkLag();
+        assertTrue(router.inRotation().isEmpty());
+        assertSame(primary.getConnection(), router.getConnection());
+
+        lag(0);
+        router.checkLag();
+        assertSame(replica.getConnection(), router.getConnection());
+    }
+
+    /**
+     * Test case for a replica that fails to give a connection leaving the rotation at once
+     */
+    @Test
+    void testUnreachableReplicaLeavesRotation() throws SQLException {
+        lag(0);
+        router.checkLag();
+        Connection fromPrimary = primary.getConnection();
+        when(replica.getConnection()).thenThrow(new SQLTransientConnectionException("Connection is not available"));
+
+        assertSame(fromPrimary, router.getConnection());
+        assertTrue(router.inRotation().isEmpty());
+    }
+
+    /**
+     * Test case for a replica whose lag has not been measured for several check intervals
+     */
+    @Test
+    void testStaleMeasurementLeavesRotation() throws SQLException, InterruptedException {
+        ReplicaRouter fastRouter = new ReplicaRouter(primary, Map.of("replica-1", replica), LAG_QUERY,
+                Duration.ofSeconds(2), Duration.ofMillis(10), meterRegistry);
+        lag(0);
+        fastRouter.checkLag();
+        assertEquals(List.of("replica-1"), fastRouter.inRotation());
+
+        // No check ran for well over three intervals, e.g. because the checker is stuck
+        Thread.sleep(100);
+
+        assertTrue(fastRouter.inRotation().isEmpty());
+        assertSame(primary.getConnection(), fastRouter.getConnection());
+    }
+
+    /**
+     * Test case for connections with explicit credentials being routed like the others
+     */
+    @Test
+    void testRoutesConnectionsWithCredentials() throws SQLException {
+        assertSame(primary.getConnection("reader", "secret"), router.getConnection("reader", "secret"));
+
+        lag(0);
+        router.checkLag();
+
+        assertSame(replica.getConnection("reader", "secret"), router.getConnection("reader", "secret"));
+        assertEquals(1, reads("replica-1"));
+    }
+
+    /**
+     * Test case for read-only transactions outside service methods staying on the primary
+     */
+    @Test
+    void testReadsOutsideServiceMethodsUsePrimary() throws SQLException {
+        lag(0);
+        router.checkLag();
+        ReplicaRouter.SERVICE_READ.remove();
+
+        assertSame(primary.getConnection(), router.getConnection());
+        assertEquals(0, reads("replica-1"));
+    }
+
+    private void lag(double seconds) throws SQLException {
+        when(replica.getConnection().createStatement().executeQuery(LAG_QUERY).getDouble(1)).thenReturn(seconds);
+        when(replica.getConnection().createStatement().executeQuery(LAG_QUERY).next()).thenReturn(true);
+    }
+
+    private double reads(String route) {
+        return meterRegistry.counter("library.datasource.reads", "route", route).count();
+    }
+}
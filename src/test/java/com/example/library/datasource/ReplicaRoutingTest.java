@@ -0,0 +1,61 @@
+package com.example.library.datasource;
+
+import com.example.library.model.Book;
+import com.example.library.repository.BookRepository;
+import com.example.library.service.LibraryService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Routes reads to a "replica" that is the same in-memory database under a second pool.
+ */
+@SpringBootTest(properties = {
+        "library.datasource.replicas[0].url=${spring.datasource.url}",
+        "library.datasource.lag-query=select 0"
+})
+@ActiveProfiles("test")
+public class ReplicaRoutingTest {
+
+    @Autowired
+    private LibraryService libraryService;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Autowired
+    private ApplicationContext context;
+
+    @AfterEach
+    void cleanup() {
+        bookRepository.deleteAll();
+    }
+
+    /**
+     * Test case for read-only service methods reading from the replica and everything else from the primary
+     */
+    @Test
+    void testReadOnlyServiceMethodsUseReplica() {
+        context.getBean(ReplicaRouter.class).checkLag();
+        Long bookId = bookRepository.save(new Book(null, "9780132350884", "Clean Code", "Robert C. Martin", false, null)).getId();
+        bookRepository.findById(bookId);
+        double before = replicaReads();
+
+        assertFalse(libraryService.getCirculation(bookId).isOnLoan());
+        libraryService.getBooks(null, 10);
+
+        assertEquals(before + 1, replicaReads());
+        assertNotNull(meterRegistry.find("hikaricp.connections.active").tag("pool", "replica-1").gauge());
+        assertNotNull(meterRegistry.find("hikaricp.connections.active").tag("pool", ReplicaRouter.PRIMARY).gauge());
+    }
+
+    private double replicaReads() {
+        return meterRegistry.counter("library.datasource.reads", "route", "replica-1").count();
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.library.dedup;
+
+import com.example.library.model.Borrower;
+import com.example.library.repository.BorrowerRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class BorrowerEmailsTest {
+
+    // Mocked dependencies
+    @Mock
+    private BorrowerRepository borrowerRepository;
+
+    @InjectMocks
+    private BorrowerEmails borrowerEmails;
+
+    @BeforeEach
+    void setup() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(borrowerEmails, "expectedEmails", 1000L);
+        ReflectionTestUtils.setField(borrowerEmails, "falsePositiveRate", 0.01);
+        when(borrowerRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), any()))
+                .thenReturn(List.of(new Borrower(1L, "Alice", "alice@example.com")));
+    }
+
+    /**
+     * Test case for looking up every email until the filter has been built
+     */
+    @Test
+    void testLooksUpEverythingBeforeFirstRebuild() {
+        borrowerEmails.findRegistered(List.of("bob@example.com"));
+
+        verify(borrowerRepository).findRegisteredEmails(List.of("bob@example.com"));
+    }
+
+    /**
+     * Test case for ruling out new emails in memory and only looking up possible duplicates
+     */
+    @Test
+    void testOnlyLooksUpEmailsTheFilterCannotRuleOut() {
+        borrowerEmails.rebuild();
+        borrowerEmails.addAll(List.of("carol@example.com"));
+        when(borrowerRepository.findRegisteredEmails(List.of("alice@example.com", "carol@example.com")))
+                .thenReturn(List.of("alice@example.com", "carol@example.com"));
+
+        assertEquals(Set.of(), borrowerEmails.findRegistered(List.of("bob@example.com")));
+        assertEquals(Set.of("alice@example.com", "carol@example.com"),
+                borrowerEmails.findRegistered(List.of("alice@example.com", "bob@example.com", "carol@example.com")));
+        verify(borrowerRepository, times(1)).findRegisteredEmails(any());
+    }
+
+    /**
+     * Test case for the false-positive rate of a filter filled to the size it was built for
+     */
+    @Test
+    void testBloomFilterFalsePositiveRate() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        IntStream.range(0, 10_000).forEach(i -> filter.add("borrower" + i + "@example.com"));
+
+        assertTrue(IntStream.range(0, 10_000).allMatch(i -> filter.mightContain("borrower" + i + "@example.com")));
+        long falsePositives = IntStream.range(0, 10_000)
+                .filter(i -> filter.mightContain("other" + i + "@example.com"))
+                .count();
+        assertTrue(falsePositives < 200, "False positives: " + falsePositives);
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.library.hold;
+
+import com.example.library.event.HoldClosedEvent;
+import com.example.library.model.Book;
+import com.example.library.model.Borrower;
+import com.example.library.model.Hold;
+import com.example.library.repository.HoldRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class HoldQueuesTest {
+
+    @Mock
+    private HoldRepository holdRepository;
+
+    @InjectMocks
+    private HoldQueues queues;
+
+    // Three holds on book 1, placed in ID order
+    @BeforeEach
+    void setup() {
+        MockitoAnnotations.openMocks(this);
+        queues.add(1L, 10L, 100L);
+        queues.add(1L, 11L, 101L);
+        queues.add(1L, 12L, 102L);
+    }
+
+    /**
+     * Test case for positions following the order holds were placed in
+     */
+    @Test
+    void testPositionsAreFifo() {
+        assertEquals(1, queues.position(1L, 10L));
+        assertEquals(3, queues.position(1L, 12L));
+        assertEquals(3, queues.length(1L));
+        assertEquals(0, queues.length(2L));
+    }
+
+    /**
+     * Test case for closing a hold moving everyone behind it up
+     */
+    @Test
+    void testClosedHoldLeavesQueue() {
+        queues.onHoldClosed(new HoldClosedEvent(1L, 11L));
+
+        assertEquals(0, queues.position(1L, 11L));
+        assertNull(queues.bookOf(11L));
+        assertEquals(2, queues.position(1L, 12L));
+        assertEquals(2, queues.length(1L));
+
+        // Closing it twice changes nothing
+        queues.remove(1L, 11L);
+        assertEquals(2, queues.length(1L));
+    }
+
+    /**
+     * Test case for loading waiting holds from the database in chunks
+     */
+    @Test
+    void testWarm() {
+        when(holdRepository.findWaitingAfter(eq(0L), any()))
+                .thenReturn(List.of(new Hold(20L, book(2L), borrower(200L), Hold.Status.WAITING, null, null)));
+
+        queues.warm();
+
+        assertEquals(2L, queues.bookOf(20L));
+        assertEquals(1, queues.position(2L, 20L));
+        verify(holdRepository, times(1)).findWaitingAfter(any(), any());
+    }
+
+    private static Book book(Long id) {
+        Book book = new Book();
+        book.setId(id);
+        return book;
+    }
+
+    private static Borrower borrower(Long id) {
+        Borrower borrower = new Borrower();
+        borrower.setId(id);
+        return borrower;
+    }
+}
@@ -0,0 +1,223 @@
+package com.example.library.idempotency;
+
+import com.example.library.controller.LibraryController;
+import com.example.library.dto.BatchLoanResult;
+import com.example.library.model.Book;
+import com.example.library.service.LibraryService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Tests the Idempotency-Key handling in front of LibraryController, with the service layer mocked.
+ */
+@WebMvcTest(value = LibraryController.class, properties = "library.idempotency.max-body-size=64B")
+@Import(SimpleMeterRegistry.class)
+public class IdempotencyFilterTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private LibraryService libraryService;
+
+    /**
+     * Test case for a retried return, which gets the original response without reaching the service
+     */
+    @Test
+    void testRetryReplaysResponse() throws Exception {
+        Mockito.when(libraryService.returnBook(1L, 5L)).thenReturn("Book returned successfully.");
+
+        mockMvc.perform(post("/api/borrowers/1/return/5").header(IdempotencyFilter.HEADER, "return-1"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(IdempotencyFilter.REPLAYED_HEADER));
+        mockMvc.perform(post("/api/borrowers/1/return/5").header(IdempotencyFilter.HEADER, "return-1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(IdempotencyFilter.REPLAYED_HEADER, "true"))
+                .andExpect(content().string("Book returned successfully."));
+
+        verify(libraryService, times(1)).returnBook(1L, 5L);
+    }
+
+    /**
+     * Test case for client errors being replayed as well, so a retry sees the same outcome
+     */
+    @Test
+    void testRetryReplaysClientError() throws Exception {
+        Mockito.when(libraryService.returnBook(1L, 6L)).thenThrow(new IllegalStateException("Book with ID 6 is not currently borrowed."));
+
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(post("/api/borrowers/1/return/6").header(IdempotencyFilter.HEADER, "return-2"))
+                    .andExpect(status().isBadRequest())
+                    .andExpect(jsonPath("$.message").value("Book with ID 6 is not currently borrowed."));
+        }
+        verify(libraryService, times(1)).returnBook(1L, 6L);
+    }
+
+    /**
+     * Test case for reusing a key with a different body
+     */
+    @Test
+    void testKeyReusedForDifferentRequest() throws Exception {
+        Mockito.when(libraryService.borrowBooks(eq(1L), anyList())).thenReturn(new BatchLoanResult(1, 0, List.of()));
+
+        mockMvc.perform(post("/api/borrowers/1/borrow").header(IdempotencyFilter.HEADER, "batch-1")
+                        .contentType(MediaType.APPLICATION_JSON).content("{\"bookIds\": [1]}"))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/api/borrowers/1/borrow").header(IdempotencyFilter.HEADER, "batch-1")
+                        .contentType(MediaType.APPLICATION_JSON).content("{\"bookIds\": [2]}"))
+                .andExpect(status().isUnprocessableEntity());
+
+        verify(libraryService, times(1)).borrowBooks(any(), anyList());
+    }
+
+    /**
+     * Test case for two clients using the same key, which are not replayed each other's responses
+     */
+    @Test
+    void testKeyScopedToClient() throws Exception {
+        Mockito.when(libraryService.borrowBook(1L, 7L)).thenReturn("Book borrowed successfully.");
+
+        mockMvc.perform(post("/api/borrowers/1/books/7/borrow").header(IdempotencyFilter.HEADER, "borrow-1")
+                        .with(request -> {
+                            request.setRemoteAddr("10.0.0.1");
+                            return request;
+                        }))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/api/borrowers/1/books/7/borrow").header(IdempotencyFilter.HEADER, "borrow-1")
+                        .with(request -> {
+                            request.setRemoteAddr("10.0.0.2");
+                            return request;
+                        }))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(IdempotencyFilter.REPLAYED_HEADER));
+        // An authenticated client is told apart by its principal, not its address
+        mockMvc.perform(post("/api/borrowers/1/books/7/borrow").header(IdempotencyFilter.HEADER, "borrow-1")
+                        .principal(() -> "kiosk-3")
+                        .with(request -> {
+                            request.setRemoteAddr("10.0.0.2");
+                            return request;
+                        }))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(IdempotencyFilter.REPLAYED_HEADER));
+
+        verify(libraryService, times(3)).borrowBook(1L, 7L);
+    }
+
+    /**
+     * Test case for a controller reading the buffered body without blocking, through a read listener
+     */
+    @Test
+    void testBodyReadWithListener() throws Exception {
+        IdempotencyFilter filter = new IdempotencyFilter();
+        ReflectionTestUtils.setField(filter, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(filter, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(filter, "ttl", Duration.ofHours(24));
+        ReflectionTestUtils.setField(filter, "maxSize", DataSize.ofMegabytes(1));
+        ReflectionTestUtils.setField(filter, "maxBodySize", DataSize.ofKilobytes(1));
+        filter.afterPropertiesSet();
+
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/borrowers/1/borrow");
+        request.addHeader(IdempotencyFilter.HEADER, "batch-3");
+        request.setContent("{\"bookIds\": [1]}".getBytes(StandardCharsets.UTF_8));
+        ByteArrayOutputStream read = new ByteArrayOutputStream();
+        boolean[] allRead = new boolean[1];
+
+        filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> {
+            ServletInputStream in = req.getInputStream();
+            in.setReadListener(new ReadListener() {
+                @Override
+                public void onDataAvailable() throws IOException {
+                    byte[] buffer = new byte[4];
+                    while (in.isReady() && !in.isFinished()) {
+                        read.write(buffer, 0, in.read(buffer));
+                    }
+                }
+
+                @Override
+                public void onAllDataRead() {
+                    allRead[0] = true;
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    throw new AssertionError(t);
+                }
+            });
+        });
+
+        assertEquals("{\"bookIds\": [1]}", read.toString(StandardCharsets.UTF_8));
+        assertTrue(allRead[0]);
+    }
+
+    /**
+     * Test case for a keyed request whose body is over the limit, which is rejected without being buffered
+     */
+    @Test
+    void testBodyTooLarge() throws Exception {
+        mockMvc.perform(post("/api/borrowers/1/borrow").header(IdempotencyFilter.HEADER, "batch-2")
+                        .contentType(MediaType.APPLICATION_JSON).content("{\"bookIds\": [" + "1,".repeat(40) + "1]}"))
+                .andExpect(status().isPayloadTooLarge());
+
+        verify(libraryService, never()).borrowBooks(any(), anyList());
+    }
+
+    /**
+     * Test case for an endpoint other than the loan endpoints, which ignores the key
+     */
+    @Test
+    void testKeyIgnoredOutsideLoanEndpoints() throws Exception {
+        Mockito.when(libraryService.registerBook(any())).thenReturn(new Book());
+        String book = "{\"isbn\": \"111\", \"title\": \"Clean Code\", \"author\": \"Robert C. Martin\"}";
+
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(post("/api/books").header(IdempotencyFilter.HEADER, "book-1")
+                            .contentType(MediaType.APPLICATION_JSON).content(book))
+                    .andExpect(status().isOk())
+                    .andExpect(header().doesNotExist(IdempotencyFilter.REPLAYED_HEADER));
+        }
+        verify(libraryService, times(2)).registerBook(any());
+    }
+
+    /**
+     * Test case for requests without a key, which are never deduplicated
+     */
+    @Test
+    void testWithoutKey() throws Exception {
+        Mockito.when(libraryService.borrowBook(1L, 5L)).thenReturn("Book borrowed successfully.");
+
+        mockMvc.perform(post("/api/borrowers/1/books/5/borrow")).andExpect(status().isOk());
+        mockMvc.perform(post("/api/borrowers/1/books/5/borrow")).andExpect(status().isOk());
+
+        verify(libraryService, times(2)).borrowBook(1L, 5L);
+    }
+}
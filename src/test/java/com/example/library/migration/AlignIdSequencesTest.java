@@ -0,0 +1,32 @@
+package com.example.library.migration;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+
+import javax.sql.DataSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AlignIdSequencesTest {
+
+    /**
+     * Test case for upgrading a database whose books already have IDs the new sequence would hand out again
+     */
+    @Test
+    void testSequenceRestartsPastExistingIds() {
+        DataSource dataSource = new SimpleDriverDataSource(new org.h2.Driver(),
+                "jdbc:h2:mem:upgrade;MODE=PostgreSQL;DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        Flyway.configure().dataSource(dataSource).target("2").load().migrate();
+        jdbc.update("insert into book (id, isbn, title, author, is_borrowed) values (120, '9780132350884', 'Clean Code', 'Robert C. Martin', false)");
+
+        Flyway.configure().dataSource(dataSource).javaMigrations(new V3__AlignIdSequences()).load().migrate();
+
+        // The pooled optimizer uses the 50 IDs up to the value it reads; all of them must be free
+        long next = jdbc.queryForObject("select next value for book_seq", Long.class);
+        assertTrue(next - 49 > 120, "book_seq restarted at " + next);
+        assertEquals(50L, jdbc.queryForObject("select next value for hold_seq", Long.class));
+    }
+}
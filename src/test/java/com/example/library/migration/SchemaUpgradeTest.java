@@ -0,0 +1,75 @@
+package com.example.library.migration;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SchemaUpgradeTest {
+
+    // The schema ddl-auto generated from the entities before migrations were introduced
+    private static final String[] ORIGINAL_SCHEMA = {
+            "create table book (is_borrowed boolean not null, id bigint generated by default as identity, "
+                    + "author varchar(255), isbn varchar(255), title varchar(255), primary key (id))",
+            "create table borrower (id bigint generated by default as identity, email varchar(255) unique, "
+                    + "name varchar(255), primary key (id))",
+            "create table borrowing_record (borrow_date date, return_date date, book_id bigint unique, "
+                    + "borrower_id bigint, id bigint generated by default as identity, primary key (id))",
+            "alter table if exists borrowing_record add constraint FKa1b2c3 foreign key (book_id) references book",
+            "alter table if exists borrowing_record add constraint FKd4e5f6 foreign key (borrower_id) references borrower"
+    };
+
+    private static DataSource dataSource(String name) {
+        return new SimpleDriverDataSource(new org.h2.Driver(),
+                "jdbc:h2:mem:" + name + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1", "sa", "");
+    }
+
+    private static void migrate(DataSource dataSource) {
+        Flyway.configure().dataSource(dataSource)
+                .baselineOnMigrate(true).baselineVersion("1")
+                .javaMigrations(new V3__AlignIdSequences(), new V5__DropOneLoanPerBookConstraint())
+                .load().migrate();
+    }
+
+    private static List<String> columns(JdbcTemplate jdbc) {
+        return jdbc.queryForList("select lower(table_name) || '.' || lower(column_name) || ' ' || data_type "
+                + "from information_schema.columns where table_schema = current_schema "
+                + "and lower(table_name) <> 'flyway_schema_history' order by 1", String.class);
+    }
+
+    /**
+     * Test case for migrating a database that ddl-auto created from the original entities, with loans in it
+     */
+    @Test
+    void testUpgradeFromOriginalSchema() {
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource("original"));
+        for (String statement : ORIGINAL_SCHEMA) {
+            jdbc.execute(statement);
+        }
+        jdbc.update("insert into book (isbn, title, author, is_borrowed) values ('9780132350884', 'Clean Code', 'Robert C. Martin', false)");
+        jdbc.update("insert into borrower (name, email) values ('Alice', 'alice@example.com')");
+        jdbc.update("insert into borrowing_record (book_id, borrower_id, borrow_date, return_date) values (1, 1, date '2024-01-02', date '2024-01-09')");
+
+        migrate(jdbc.getDataSource());
+
+        // Same schema as a new database gets
+        JdbcTemplate fresh = new JdbcTemplate(dataSource("fresh"));
+        migrate(fresh.getDataSource());
+        assertEquals(columns(fresh), columns(jdbc));
+
+        // The book can be lent again, with IDs from the sequences that don't collide with the old ones
+        long loanId = jdbc.queryForObject("select next value for borrowing_record_seq", Long.class);
+        assertTrue(loanId - 49 > 1, "borrowing_record_seq restarted at " + loanId);
+        jdbc.update("insert into borrowing_record (id, book_id, borrower_id, borrow_date) values (?, 1, 1, date '2024-02-01')", loanId);
+        assertEquals(2, jdbc.queryForObject("select count(*) from borrowing_record where book_id = 1", Integer.class));
+
+        // Delta sync returns the old book
+        assertEquals(0, jdbc.queryForObject("select count(*) from book where updated_at is null", Integer.class));
+        jdbc.update("insert into hold (id, book_id, borrower_id, status) values (next value for hold_seq, 1, 1, 'WAITING')");
+    }
+}
@@ -0,0 +1,210 @@
+package com.example.library.outbox;
+
+import com.example.library.model.DeadLetter;
+import com.example.library.model.LoanEvent;
+import com.example.library.model.OutboxEntry;
+import com.example.library.repository.DeadLetterRepository;
+import com.example.library.repository.LoanEventRepository;
+import com.example.library.repository.OutboxEntryRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.*;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class OutboxDispatcherTest {
+    private static final Instant T0 = Instant.parse("2024-06-01T10:00:00Z");
+    private static final String CONSUMER = OutboxDispatcher.CONSUMER_PREFIX + "webhook";
+
+    // Mocked dependencies
+    @Mock
+    private LoanEventRepository loanEventRepository;
+
+    @Mock
+    private OutboxEntryRepository outboxEntryRepository;
+
+    @Mock
+    private DeadLetterRepository deadLetterRepository;
+
+    @Spy
+    private TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @InjectMocks
+    private OutboxDispatcher dispatcher;
+
+    @Captor
+    private ArgumentCaptor<List<DeadLetter>> deadLetters;
+
+    @Captor
+    private ArgumentCaptor<List<OutboxEntry>> entries;
+
+    private final LoanEventSink sink = mock(LoanEventSink.class);
+
+    private final List<LoanEvent> events = List.of(
+            new LoanEvent(1L, LoanEvent.Type.BORROWED, 10L, 5L, 7L, T0),
+            new LoanEvent(2L, LoanEvent.Type.RETURNED, 10L, 5L, 7L, T0.plusSeconds(60)));
+
+    // Outbox entries as stored in the database: consumer to pending event IDs
+    private final Map<String, Set<Long>> pending = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    void setup() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(dispatcher, "sinks", List.of(sink));
+        ReflectionTestUtils.setField(dispatcher, "interval", Duration.ofMillis(10));
+        ReflectionTestUtils.setField(dispatcher, "batchSize", 100);
+        ReflectionTestUtils.setField(dispatcher, "initialBackoff", Duration.ofSeconds(1));
+        ReflectionTestUtils.setField(dispatcher, "maxBackoff", Duration.ofSeconds(2));
+        setTime(T0.plusSeconds(120));
+        when(sink.name()).thenReturn("webhook");
+
+        pending.put(CONSUMER, ConcurrentHashMap.newKeySet());
+        pending.get(CONSUMER).addAll(List.of(1L, 2L));
+        when(loanEventRepository.findPending(any(), any())).thenAnswer(inv -> events.stream()
+                .filter(event -> pending.getOrDefault(inv.<String>getArgument(0), Set.of()).contains(event.getId()))
+                .toList());
+        when(outboxEntryRepository.deleteByConsumerAndEventIds(any(), any())).thenAnswer(inv -> {
+            Collection<Long> ids = inv.getArgument(1);
+            pending.get(inv.<String>getArgument(0)).removeAll(ids);
+            return ids.size();
+        });
+    }
+
+    /**
+     * Test case for delivering the pending events as one batch and deleting their outbox entries
+     */
+    @Test
+    void testDeliversBatchAndDeletesEntries() {
+        assertEquals(2, dispatcher.dispatch());
+
+        verify(sink).deliver(events);
+        assertTrue(pending.get(CONSUMER).isEmpty());
+        verify(deadLetterRepository).saveAll(List.of());
+        assertEquals(2, meterRegistry.counter("library.outbox.delivered", "sink", "webhook").count());
+
+        // Nothing is pending any more
+        assertEquals(0, dispatcher.dispatch());
+        verify(sink, times(1)).deliver(any());
+    }
+
+    /**
+     * Test case for a sink that is stuck in delivery not holding up the other sinks
+     */
+    @Test
+    void testSlowSinkDoesNotBlockOthers() throws InterruptedException {
+        LoanEventSink audit = mock(LoanEventSink.class);
+        when(audit.name()).thenReturn("audit");
+        pending.put(OutboxDispatcher.CONSUMER_PREFIX + "audit", ConcurrentHashMap.newKeySet());
+        pending.get(OutboxDispatcher.CONSUMER_PREFIX + "audit").addAll(List.of(1L, 2L));
+        ReflectionTestUtils.setField(dispatcher, "sinks", List.of(sink, audit));
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(inv -> {
+            release.await();
+            return null;
+        }).when(sink).deliver(any());
+
+        dispatcher.start();
+        try {
+            verify(audit, timeout(2000)).deliver(events);
+        } finally {
+            release.countDown();
+            dispatcher.destroy();
+        }
+    }
+
+    /**
+     * Test case for a failing sink pausing at its pending events, backing off up to the maximum, and
+     * receiving them once it recovers
+     */
+    @Test
+    void testFailingSinkPausesWithCappedBackoff() {
+        doThrow(new IllegalStateException("503 Service Unavailable")).when(sink).deliver(any());
+
+        // Attempt 1 fails and backs off for 1 s; until then the sink is not called again
+        assertEquals(0, dispatcher.dispatch());
+        assertEquals(0, dispatcher.dispatch());
+        verify(sink, times(1)).deliver(any());
+
+        // Attempt 2 fails and backs off for 2 s
+        setTime(T0.plusSeconds(121));
+        assertEquals(0, dispatcher.dispatch());
+        setTime(T0.plusSeconds(122));
+        assertEquals(0, dispatcher.dispatch());
+        verify(sink, times(2)).deliver(any());
+
+        // Attempts 3 to 10 back off for the 2 s maximum, and the events stay pending throughout
+        for (int attempt = 3; attempt <= 10; attempt++) {
+            setTime(T0.plusSeconds(123 + 2L * (attempt - 3)));
+            assertEquals(0, dispatcher.dispatch());
+        }
+        verify(sink, times(10)).deliver(any());
+        assertEquals(Set.of(1L, 2L), pending.get(CONSUMER));
+        verify(deadLetterRepository, never()).saveAll(any());
+
+        // The sink recovers
+        doNothing().when(sink).deliver(any());
+        setTime(T0.plusSeconds(139));
+        assertEquals(2, dispatcher.dispatch());
+        assertTrue(pending.get(CONSUMER).isEmpty());
+    }
+
+    /**
+     * Test case for dead-lettering only the events the sink rejects, and delivering the rest of the batch
+     */
+    @Test
+    void testDeadLettersOnlyRejectedEvents() {
+        doThrow(new RejectedEventsException(Set.of(2L), "422 Unprocessable Entity")).when(sink).deliver(any());
+
+        assertEquals(2, dispatcher.dispatch());
+
+        verify(deadLetterRepository).saveAll(deadLetters.capture());
+        assertEquals(List.of(2L), deadLetters.getValue().stream().map(DeadLetter::getEventId).toList());
+        assertTrue(deadLetters.getValue().get(0).getError().contains("422"));
+        assertTrue(pending.get(CONSUMER).isEmpty());
+        assertEquals(1, meterRegistry.counter("library.outbox.delivered", "sink", "webhook").count());
+        assertEquals(1, meterRegistry.counter("library.outbox.dead-lettered", "sink", "webhook").count());
+    }
+
+    /**
+     * Test case for replaying dead letters: each event becomes pending again once, and the dead letters are deleted
+     */
+    @Test
+    void testReplayDeadLetters() {
+        List<DeadLetter> letters = List.of(
+                new DeadLetter(1L, "webhook", 2L, 1, "422", T0),
+                new DeadLetter(2L, "webhook", 2L, 1, "422", T0),
+                new DeadLetter(3L, "webhook", 3L, 1, "422", T0));
+        when(deadLetterRepository.findBySink("webhook")).thenReturn(letters);
+        when(outboxEntryRepository.findPendingEventIds(eq(CONSUMER), any())).thenReturn(List.of(3L));
+
+        assertEquals(1, dispatcher.replayDeadLetters("webhook"));
+
+        verify(outboxEntryRepository).saveAll(entries.capture());
+        assertEquals(List.of(new OutboxEntry(null, CONSUMER, 2L)), entries.getValue());
+        verify(deadLetterRepository).deleteAllInBatch(letters);
+    }
+
+    private void setTime(Instant now) {
+        ReflectionTestUtils.setField(dispatcher, "clock", Clock.fixed(now, ZoneOffset.UTC));
+    }
+}
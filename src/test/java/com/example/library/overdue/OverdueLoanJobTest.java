@@ -0,0 +1,151 @@
+package com.example.library.overdue;
+
+import com.example.library.dto.OverdueLoan;
+import com.example.library.model.BorrowingRecord;
+import com.example.library.model.JobCheckpoint;
+import com.example.library.model.OverdueNotice;
+import com.example.library.repository.BorrowingRecordRepository;
+import com.example.library.repository.JobCheckpointRepository;
+import com.example.library.repository.OverdueNoticeRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.*;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.ZoneOffset;
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class OverdueLoanJobTest {
+    private static final LocalDate TODAY = LocalDate.of(2024, 6, 1);
+
+    // Mocked dependencies
+    @Mock
+    private BorrowingRecordRepository borrowingRecordRepository;
+
+    @Mock
+    private OverdueNoticeRepository overdueNoticeRepository;
+
+    @Mock
+    private JobCheckpointRepository jobCheckpointRepository;
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Spy
+    private TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+
+    @InjectMocks
+    private OverdueLoanJob job;
+
+    // Checkpoint as stored in the database
+    private final AtomicReference<JobCheckpoint> stored = new AtomicReference<>();
+    private final List<OverdueNotice> notices = new ArrayList<>();
+
+    @BeforeEach
+    void setup() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(job, "chunkSize", 2);
+        ReflectionTestUtils.setField(job, "finePerDay", new BigDecimal("0.25"));
+        ReflectionTestUtils.setField(job, "loanPeriod", Period.ofDays(14));
+
+        when(jobCheckpointRepository.findById(OverdueLoanJob.JOB_NAME)).thenAnswer(inv -> Optional.ofNullable(stored.get()));
+        when(jobCheckpointRepository.save(any())).thenAnswer(inv -> {
+            JobCheckpoint checkpoint = inv.getArgument(0);
+            stored.set(new JobCheckpoint(checkpoint.getJob(), checkpoint.getRunDate(), checkpoint.getLastId(),
+                    checkpoint.getLastRecordedAt(), checkpoint.isCompleted(), checkpoint.getUpdatedAt(), checkpoint.getVersion()));
+            return checkpoint;
+        });
+        when(overdueNoticeRepository.saveAll(any())).thenAnswer(inv -> {
+            notices.addAll(inv.getArgument(0));
+            return inv.getArgument(0);
+        });
+        when(borrowingRecordRepository.getReferenceById(any())).thenAnswer(inv -> {
+            BorrowingRecord record = new BorrowingRecord();
+            record.setId(inv.getArgument(0));
+            return record;
+        });
+    }
+
+    /**
+     * Test case for a run over several chunks, including a loan made before due dates were recorded
+     */
+    @Test
+    void testRaisesNoticesChunkByChunk() {
+        when(borrowingRecordRepository.findOverdueAfter(0L, TODAY, LocalDate.of(2024, 5, 18), Limit.of(2)))
+                .thenReturn(List.of(new OverdueLoan(3L, LocalDate.of(2024, 5, 1), LocalDate.of(2024, 5, 15)),
+                        new OverdueLoan(8L, LocalDate.of(2024, 5, 10), null)));
+        when(borrowingRecordRepository.findOverdueAfter(8L, TODAY, LocalDate.of(2024, 5, 18), Limit.of(2)))
+                .thenReturn(List.of(new OverdueLoan(9L, LocalDate.of(2024, 5, 17), LocalDate.of(2024, 5, 31))));
+
+        assertEquals(3, job.process(TODAY));
+
+        assertEquals(17, notices.get(0).getDaysOverdue());
+        assertEquals(new BigDecimal("4.25"), notices.get(0).getFine());
+        // Due 14 days after it was borrowed
+        assertEquals(8, notices.get(1).getDaysOverdue());
+        // One transaction per chunk
+        verify(transactionTemplate, times(3)).execute(any());
+        assertTrue(stored.get().isCompleted());
+        assertEquals(9L, stored.get().getLastId());
+    }
+
+    /**
+     * Test case for resuming an interrupted run after its last committed chunk
+     */
+    @Test
+    void testResumesAfterCheckpoint() {
+        stored.set(new JobCheckpoint(OverdueLoanJob.JOB_NAME, TODAY, 8L, null, false, null, null));
+        when(borrowingRecordRepository.findOverdueAfter(8L, TODAY, LocalDate.of(2024, 5, 18), Limit.of(2)))
+                .thenReturn(List.of(new OverdueLoan(9L, LocalDate.of(2024, 5, 17), LocalDate.of(2024, 5, 31))));
+
+        assertEquals(1, job.process(TODAY));
+        verify(borrowingRecordRepository, never()).findOverdueAfter(eq(0L), any(), any(), any());
+    }
+
+    /**
+     * Test case for re-running a day whose run already completed, and starting the next day afresh
+     */
+    @Test
+    void testCompletedRunIsNotRepeated() {
+        stored.set(new JobCheckpoint(OverdueLoanJob.JOB_NAME, TODAY, 9L, null, true, null, null));
+
+        assertEquals(0, job.process(TODAY));
+        verify(borrowingRecordRepository, never()).findOverdueAfter(any(), any(), any(), any());
+
+        job.process(TODAY.plusDays(1));
+        verify(borrowingRecordRepository).findOverdueAfter(eq(0L), eq(TODAY.plusDays(1)), any(), any());
+    }
+
+    /**
+     * Test case for the frequent trigger, which resumes an interrupted run and skips a completed one
+     */
+    @Test
+    void testTriggerResumesUntilCompleted() {
+        ReflectionTestUtils.setField(job, "clock", Clock.fixed(TODAY.atTime(2, 15).toInstant(ZoneOffset.UTC), ZoneOffset.UTC));
+        stored.set(new JobCheckpoint(OverdueLoanJob.JOB_NAME, TODAY, 9L, null, false, null, null));
+        when(borrowingRecordRepository.findOverdueAfter(eq(9L), eq(TODAY), any(), any())).thenReturn(List.of());
+
+        job.run();
+        assertTrue(job.isCompleted(TODAY));
+        assertEquals(1, meterRegistry.get("library.overdue").timer().count());
+
+        job.run();
+        verify(borrowingRecordRepository, times(1)).findOverdueAfter(any(), any(), any(), any());
+        assertEquals(1, meterRegistry.get("library.overdue").timer().count());
+    }
+}
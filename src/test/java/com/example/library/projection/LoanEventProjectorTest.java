@@ -0,0 +1,127 @@
+package com.example.library.projection;
+
+import com.example.library.model.BookCirculation;
+import com.example.library.model.BorrowerActivity;
+import com.example.library.model.JobCheckpoint;
+import com.example.library.model.LoanEvent;
+import com.example.library.repository.BookCirculationRepository;
+import com.example.library.repository.BorrowerActivityRepository;
+import com.example.library.repository.JobCheckpointRepository;
+import com.example.library.repository.LoanEventRepository;
+import com.example.library.repository.OutboxEntryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.*;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class LoanEventProjectorTest {
+    private static final Instant T0 = Instant.parse("2024-06-01T10:00:00Z");
+
+    // Mocked dependencies
+    @Mock
+    private LoanEventRepository loanEventRepository;
+
+    @Mock
+    private BookCirculationRepository bookCirculationRepository;
+
+    @Mock
+    private BorrowerActivityRepository borrowerActivityRepository;
+
+    @Mock
+    private JobCheckpointRepository jobCheckpointRepository;
+
+    @Mock
+    private OutboxEntryRepository outboxEntryRepository;
+
+    @Spy
+    private TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+
+    @InjectMocks
+    private LoanEventProjector projector;
+
+    @Captor
+    private ArgumentCaptor<Iterable<BorrowerActivity>> borrowers;
+
+    // Checkpoint as stored in the database; null while another node holds its lock
+    private final AtomicReference<JobCheckpoint> stored = new AtomicReference<>(
+            new JobCheckpoint(LoanEventProjector.JOB_NAME, null, 0L, null, false, null, 0L));
+
+    @BeforeEach
+    void setup() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(projector, "chunkSize", 2);
+
+        when(jobCheckpointRepository.lockIfAvailable(LoanEventProjector.JOB_NAME)).thenAnswer(inv -> Optional.ofNullable(stored.get()));
+        when(jobCheckpointRepository.existsById(LoanEventProjector.JOB_NAME)).thenReturn(true);
+        when(jobCheckpointRepository.save(any())).thenAnswer(inv -> {
+            JobCheckpoint checkpoint = inv.getArgument(0);
+            stored.set(new JobCheckpoint(checkpoint.getJob(), null, checkpoint.getLastId(), checkpoint.getLastRecordedAt(),
+                    false, checkpoint.getUpdatedAt(), checkpoint.getVersion()));
+            return checkpoint;
+        });
+    }
+
+    /**
+     * Test case for projecting a borrow and a return of the same book in one chunk
+     */
+    @Test
+    void testProjectsBorrowAndReturn() {
+        BookCirculation book = new BookCirculation(5L, false, null, 3, null, null, 1L);
+        when(loanEventRepository.findPending(eq(LoanEventProjector.JOB_NAME), any())).thenReturn(List.of(
+                new LoanEvent(1L, LoanEvent.Type.BORROWED, 10L, 5L, 7L, T0),
+                new LoanEvent(2L, LoanEvent.Type.RETURNED, 10L, 5L, 7L, T0.plusSeconds(60))), List.of());
+        when(bookCirculationRepository.findAllById(any())).thenReturn(List.of(book));
+        when(borrowerActivityRepository.findAllById(any())).thenReturn(List.of());
+
+        assertEquals(2, projector.project());
+
+        assertFalse(book.isOnLoan());
+        assertEquals(4, book.getTimesBorrowed());
+        assertEquals(T0.plusSeconds(60), book.getLastReturnedAt());
+        verify(borrowerActivityRepository).saveAll(borrowers.capture());
+        BorrowerActivity activity = borrowers.getValue().iterator().next();
+        assertEquals(0, activity.getActiveLoans());
+        assertEquals(1, activity.getTotalLoans());
+        // The applied events are no longer pending, and a full chunk is followed by another read
+        verify(outboxEntryRepository).deleteByConsumerAndEventIds(LoanEventProjector.JOB_NAME, List.of(1L, 2L));
+        assertEquals(2L, stored.get().getLastId());
+        verify(loanEventRepository, times(2)).findPending(eq(LoanEventProjector.JOB_NAME), any());
+    }
+
+    /**
+     * Test case for leaving the events to the node that holds the checkpoint lock
+     */
+    @Test
+    void testSkipsWhileAnotherNodeHoldsLock() {
+        stored.set(null);
+
+        assertEquals(0, projector.project());
+
+        verify(loanEventRepository, never()).findPending(any(), any());
+        verify(jobCheckpointRepository, never()).save(any());
+    }
+
+    /**
+     * Test case for creating the checkpoint row on the first run, so that later runs can lock it
+     */
+    @Test
+    void testCreatesMissingCheckpoint() {
+        stored.set(null);
+        when(jobCheckpointRepository.existsById(LoanEventProjector.JOB_NAME)).thenReturn(false);
+
+        assertEquals(0, projector.project());
+
+        verify(loanEventRepository, never()).findPending(any(), any());
+        assertEquals(0L, stored.get().getLastId());
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.library.ratelimit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RateLimitFilterTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private RateLimitFilter filter;
+
+    // Two reads per client in a burst, one write in flight at a time
+    @BeforeEach
+    void setup() throws Exception {
+        filter = new RateLimitFilter();
+        ReflectionTestUtils.setField(filter, "objectMapper", new ObjectMapper().findAndRegisterModules());
+        ReflectionTestUtils.setField(filter, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(filter, "enabled", true);
+        ReflectionTestUtils.setField(filter, "readCapacity", 2);
+        ReflectionTestUtils.setField(filter, "readRefillPerSecond", 0.5);
+        ReflectionTestUtils.setField(filter, "readMaxConcurrent", 4);
+        ReflectionTestUtils.setField(filter, "writeCapacity", 10);
+        ReflectionTestUtils.setField(filter, "writeRefillPerSecond", 10);
+        ReflectionTestUtils.setField(filter, "writeMaxConcurrent", 1);
+        ReflectionTestUtils.setField(filter, "idleClientExpiry", Duration.ofMinutes(1));
+        filter.afterPropertiesSet();
+    }
+
+    /**
+     * Test case for a client that exceeds its read budget, while other clients and writes are unaffected
+     */
+    @Test
+    void testReadBudgetPerClient() throws Exception {
+        assertEquals(200, perform("GET", "10.0.0.1").getStatus());
+        assertEquals(200, perform("GET", "10.0.0.1").getStatus());
+
+        MockHttpServletResponse limited = perform("GET", "10.0.0.1");
+        assertEquals(429, limited.getStatus());
+        assertEquals("2", limited.getHeader("Retry-After")); // One token every 2 s
+        assertEquals(1, meterRegistry.counter("library.throttled", "budget", "read", "reason", "rate_limited").count());
+
+        assertEquals(200, perform("GET", "10.0.0.2").getStatus());
+        assertEquals(200, perform("POST", "10.0.0.1").getStatus());
+    }
+
+    /**
+     * Test case for shedding writes beyond the concurrency cap instead of queueing them
+     */
+    @Test
+    void testShedsWhenAllPermitsInUse() throws Exception {
+        MockHttpServletResponse[] nested = new MockHttpServletResponse[1];
+        MockHttpServletRequest request = request("POST", "10.0.0.1");
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain() {
+            @Override
+            public void doFilter(ServletRequest req, ServletResponse res) {
+                try {
+                    // A second write arrives while the first still holds the only permit
+                    nested[0] = perform("POST", "10.0.0.2");
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+
+        assertEquals(503, nested[0].getStatus());
+        assertEquals("1", nested[0].getHeader("Retry-After"));
+        // The permit is back once the first write has finished
+        assertEquals(200, perform("POST", "10.0.0.2").getStatus());
+        assertEquals(0, meterRegistry.get("library.in-flight").tag("budget", "write").gauge().value());
+    }
+
+    /**
+     * Test case for refilling the bucket over time
+     */
+    @Test
+    void testTokenBucketRefills() {
+        long start = 0;
+        TokenBucket bucket = new TokenBucket(1, 2, start);
+        assertEquals(0, bucket.tryConsume(start));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(500), bucket.tryConsume(start));
+        assertEquals(0, bucket.tryConsume(start + TimeUnit.MILLISECONDS.toNanos(500)));
+    }
+
+    private MockHttpServletResponse perform(String method, String client) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request(method, client), response, new MockFilterChain());
+        return response;
+    }
+
+    private static MockHttpServletRequest request(String method, String client) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, "/api/books");
+        request.setRemoteAddr(client);
+        return request;
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.library.search;
+
+import com.example.library.event.BooksRegisteredEvent;
+import com.example.library.model.Book;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BookSearchIndexTest {
+
+    private BookSearchIndex index;
+
+    // Index a small catalogue before each test
+    @BeforeEach
+    void setup() {
+        index = new BookSearchIndex();
+        index.onBooksRegistered(new BooksRegisteredEvent(List.of(
+                new Book(1L, "978-0132350884", "Clean Code", "Robert C. Martin", false, null),
+                new Book(2L, "978-0201485677", "Refactoring", "Martin Fowler", false, null),
+                new Book(3L, "978-0321125217", "Domain-Driven Design", "Eric Evans", false, null),
+                new Book(4L, "978-1617294549", "Microservices Patterns", "Chris Richardson", false, null))));
+    }
+
+    /**
+     * Test case for prefix matching, as used by autocomplete
+     */
+    @Test
+    void testPrefixMatch() {
+        assertEquals(List.of(2L), index.search("refac", 0, 10).getIds());
+    }
+
+    /**
+     * Test case for ranking: a title match outranks an author match
+     */
+    @Test
+    void testTitleOutranksAuthor() {
+        index.onBooksRegistered(new BooksRegisteredEvent(List.of(
+                new Book(5L, "978-0000000001", "Martin Luther", "Someone Else", false, null))));
+
+        BookSearchIndex.Hits hits = index.search("martin", 0, 10);
+
+        assertEquals(3, hits.getTotal());
+        assertEquals(5L, hits.getIds().get(0));
+    }
+
+    /**
+     * Test case for multi-term queries, which must match every term
+     */
+    @Test
+    void testAllTermsMustMatch() {
+        assertEquals(List.of(1L), index.search("martin clean", 0, 10).getIds());
+        assertTrue(index.search("martin evans", 0, 10).getIds().isEmpty());
+    }
+
+    /**
+     * Test case for ISBN lookups with and without hyphens
+     */
+    @Test
+    void testIsbnMatch() {
+        assertEquals(List.of(3L), index.search("978-0321125217", 0, 10).getIds());
+        assertEquals(List.of(3L), index.search("9780321125217", 0, 10).getIds());
+    }
+
+    /**
+     * Test case for pagination over the ranked matches
+     */
+    @Test
+    void testPagination() {
+        BookSearchIndex.Hits hits = index.search("978", 1, 2);
+
+        assertEquals(4, hits.getTotal());
+        assertEquals(List.of(2L, 3L), hits.getIds());
+        assertFalse(hits.isTruncated());
+    }
+
+    /**
+     * Test case for selecting a page of the best matches, which must equal the same page of a full sort
+     */
+    @Test
+    void testTopMatchesFullSort() {
+        Random random = new Random(42);
+        Map<Long, Double> scores = new HashMap<>();
+        for (long id = 1; id <= 1000; id++) {
+            // Few distinct scores, so that ties are broken by ID
+            scores.put(id, (double) random.nextInt(10));
+        }
+        List<Long> sorted = scores.entrySet().stream()
+                .sorted(Map.Entry.<Long, Double>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .map(Map.Entry::getKey)
+                .toList();
+
+        assertEquals(sorted.subList(0, 20), BookSearchIndex.top(scores, 0, 20));
+        assertEquals(sorted.subList(480, 500), BookSearchIndex.top(scores, 480, 20));
+        assertEquals(sorted.subList(990, 1000), BookSearchIndex.top(scores, 990, 20));
+        assertTrue(BookSearchIndex.top(scores, 1000, 20).isEmpty());
+        assertEquals(sorted, BookSearchIndex.top(scores, 0, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Test case for a prefix with too many expansions: the terms matching the most books are kept
+     * and the hits are flagged as truncated
+     */
+    @Test
+    void testPrefixExpansionCap() {
+        List<Book> books = new ArrayList<>();
+        for (long id = 100; id <= 100 + BookSearchIndex.MAX_PREFIX_EXPANSIONS; id++) {
+            books.add(new Book(id, null, "Zq" + id, "Anonymous", false, null));
+        }
+        // Last in alphabetical order, but matches the most books
+        books.add(new Book(900L, null, "Zqzz", "Anonymous", false, null));
+        books.add(new Book(901L, null, "Zqzz", "Anonymous", false, null));
+        index.onBooksRegistered(new BooksRegisteredEvent(books));
+
+        BookSearchIndex.Hits hits = index.search("zq", 0, 1000);
+
+        assertTrue(hits.isTruncated());
+        assertEquals(BookSearchIndex.MAX_PREFIX_EXPANSIONS + 1, hits.getTotal());
+        assertTrue(hits.getIds().containsAll(List.of(900L, 901L)));
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.library.service;
+
+import com.example.library.dto.AuthorLoanDuration;
+import com.example.library.dto.DailyBorrows;
+import com.example.library.dto.TitleBorrows;
+import com.example.library.model.Book;
+import com.example.library.model.BookCirculation;
+import com.example.library.model.Borrower;
+import com.example.library.model.BorrowingRecord;
+import com.example.library.repository.BookCirculationRepository;
+import com.example.library.repository.BookRepository;
+import com.example.library.repository.BorrowerRepository;
+import com.example.library.repository.BorrowingRecordRepository;
+import com.example.library.support.SqlStatementCountConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static com.example.library.support.SqlStatementCounter.assertStatements;
+import static com.example.library.support.SqlStatementCounter.reset;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the reports against a real (in-memory) database. Each report must be a single aggregate query,
+ * however many loans there are.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(SqlStatementCountConfig.class) // Shares the application context with LibraryServiceQueryCountTest
+public class AnalyticsServiceTest {
+    private static final LocalDate DAY = LocalDate.of(2024, 6, 3);
+
+    @Autowired
+    private AnalyticsService analyticsService;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private BorrowerRepository borrowerRepository;
+    @Autowired
+    private BorrowingRecordRepository borrowingRecordRepository;
+    @Autowired
+    private BookCirculationRepository bookCirculationRepository;
+
+    // Two copies of Clean Code, one of Refactoring
+    @BeforeEach
+    void setup() {
+        Borrower borrower = borrowerRepository.save(new Borrower(null, "Patron", "patron@example.com"));
+        Book cleanCode1 = bookRepository.save(new Book(null, "9780132350884", "Clean Code", "Robert C. Martin", false, null));
+        Book cleanCode2 = bookRepository.save(new Book(null, "9780132350884", "Clean Code", "Robert C. Martin", false, null));
+        Book refactoring = bookRepository.save(new Book(null, "9780201485677", "Refactoring", "Martin Fowler", false, null));
+        borrowingRecordRepository.saveAll(List.of(
+                new BorrowingRecord(null, borrower, cleanCode1, DAY, null, DAY.plusDays(4)),
+                new BorrowingRecord(null, borrower, cleanCode2, DAY, null, DAY.plusDays(10)),
+                new BorrowingRecord(null, borrower, refactoring, DAY, null, DAY.plusDays(7)),
+                new BorrowingRecord(null, borrower, cleanCode1, DAY.plusDays(5), null, null),
+                new BorrowingRecord(null, borrower, refactoring, DAY.minusDays(40), null, DAY.minusDays(20))));
+        bookCirculationRepository.saveAll(List.of(
+                new BookCirculation(cleanCode1.getId(), true, borrower.getId(), 2, null, null, null),
+                new BookCirculation(cleanCode2.getId(), false, null, 1, null, null, null),
+                new BookCirculation(refactoring.getId(), false, null, 5, null, null, null)));
+    }
+
+    @AfterEach
+    void cleanup() {
+        bookCirculationRepository.deleteAll();
+        borrowingRecordRepository.deleteAll();
+        bookRepository.deleteAll();
+        borrowerRepository.deleteAll();
+    }
+
+    /**
+     * Test case for ranking titles all-time from the read model, and within a window from the loans
+     */
+    @Test
+    void testTopTitles() {
+        reset();
+        List<TitleBorrows> allTime = analyticsService.getTopTitles(10, null, null);
+        assertStatements(1, 0, 0, 0);
+        assertEquals(List.of(
+                new TitleBorrows("9780201485677", "Refactoring", "Martin Fowler", 5),
+                new TitleBorrows("9780132350884", "Clean Code", "Robert C. Martin", 3)), allTime);
+
+        reset();
+        List<TitleBorrows> window = analyticsService.getTopTitles(1, DAY, DAY.plusDays(30));
+        assertStatements(1, 0, 0, 0);
+        assertEquals(List.of(new TitleBorrows("9780132350884", "Clean Code", "Robert C. Martin", 3)), window);
+    }
+
+    /**
+     * Test case for averaging only the returned loans borrowed within the window, per author
+     */
+    @Test
+    void testLoanDurationByAuthor() {
+        reset();
+        List<AuthorLoanDuration> durations = analyticsService.getLoanDurationByAuthor(DAY, DAY.plusDays(30));
+        assertStatements(1, 0, 0, 0);
+        assertEquals(List.of(
+                new AuthorLoanDuration("Martin Fowler", 1, 7.0),
+                new AuthorLoanDuration("Robert C. Martin", 2, 7.0)), durations);
+    }
+
+    /**
+     * Test case for counting borrows per day, leaving out days without any
+     */
+    @Test
+    void testBorrowsPerDay() {
+        reset();
+        List<DailyBorrows> days = analyticsService.getBorrowsPerDay(DAY.minusDays(1), DAY.plusDays(5));
+        assertStatements(1, 0, 0, 0);
+        assertEquals(List.of(new DailyBorrows(DAY, 3), new DailyBorrows(DAY.plusDays(5), 1)), days);
+
+        assertThrows(IllegalArgumentException.class, () -> analyticsService.getBorrowsPerDay(DAY, DAY.minusDays(1)));
+    }
+}
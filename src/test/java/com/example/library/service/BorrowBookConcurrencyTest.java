@@ -0,0 +1,147 @@
+package com.example.library.service;
+
+import com.example.library.dto.BatchLoanResult;
+import com.example.library.exception.BookAlreadyBorrowedException;
+import com.example.library.model.Book;
+import com.example.library.model.Borrower;
+import com.example.library.repository.BookRepository;
+import com.example.library.repository.BorrowerRepository;
+import com.example.library.repository.BorrowingRecordRepository;
+import com.example.library.support.SqlStatementCountConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Stress test for concurrent checkouts of the same book against a real (in-memory) database.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(SqlStatementCountConfig.class) // Shares the application context with LibraryServiceQueryCountTest
+public class BorrowBookConcurrencyTest {
+    private static final int THREADS = 64;
+
+    @Autowired
+    private LibraryService libraryService;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private BorrowerRepository borrowerRepository;
+    @Autowired
+    private BorrowingRecordRepository borrowingRecordRepository;
+
+    @AfterEach
+    void cleanup() {
+        borrowingRecordRepository.deleteAll();
+        bookRepository.deleteAll();
+        borrowerRepository.deleteAll();
+    }
+
+    /**
+     * 64 borrowers try to check out the same copy at the same moment; exactly one must win
+     */
+    @Test
+    void testConcurrentBorrowRecordsExactlyOneLoan() throws Exception {
+        Book book = bookRepository.save(new Book(null, "9780132350884", "Clean Code", "Robert C. Martin", false, null));
+        List<Long> borrowerIds = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            borrowerIds.add(borrowerRepository.save(new Borrower(null, "Patron " + i, "patron" + i + "@example.com")).getId());
+        }
+
+        AtomicInteger borrowed = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (Long borrowerId : borrowerIds) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        libraryService.borrowBook(borrowerId, book.getId());
+                        borrowed.incrementAndGet();
+                    } catch (BookAlreadyBorrowedException ex) {
+                        rejected.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            // Release all threads at once to maximise contention on the row
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS); // Any other exception fails the test
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, borrowed.get());
+        assertEquals(THREADS - 1, rejected.get());
+        assertEquals(1, borrowingRecordRepository.count());
+        assertTrue(bookRepository.findById(book.getId()).orElseThrow().isBorrowed());
+    }
+
+    /**
+     * Kiosks check out overlapping stacks of books at the same moment; every book must be lent exactly once
+     */
+    @Test
+    void testConcurrentBatchBorrowLendsEachBookOnce() throws Exception {
+        List<Long> bookIds = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            bookIds.add(bookRepository.save(new Book(null, "978000000" + i, "Book " + i, "Author", false, null)).getId());
+        }
+        int kiosks = 8;
+        List<Long> borrowerIds = new ArrayList<>();
+        for (int i = 0; i < kiosks; i++) {
+            borrowerIds.add(borrowerRepository.save(new Borrower(null, "Kiosk " + i, "kiosk" + i + "@example.com")).getId());
+        }
+
+        AtomicInteger borrowed = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(kiosks);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int k = 0; k < kiosks; k++) {
+                Long borrowerId = borrowerIds.get(k);
+                // Each kiosk takes 10 books, overlapping with its neighbours
+                List<Long> stack = new ArrayList<>();
+                for (int j = 0; j < 10; j++) {
+                    stack.add(bookIds.get((k * 5 + j) % bookIds.size()));
+                }
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    BatchLoanResult result = libraryService.borrowBooks(borrowerId, stack);
+                    borrowed.addAndGet(result.getSucceeded());
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(bookIds.size(), borrowed.get());
+        assertEquals(bookIds.size(), borrowingRecordRepository.count());
+
+        BatchLoanResult returned = libraryService.returnBooks(borrowerIds.get(0), bookIds);
+        assertEquals(bookIds.size(), returned.getSucceeded());
+        assertTrue(bookRepository.findAll().stream().noneMatch(Book::isBorrowed));
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.library.service;
+
+import com.example.library.dedup.BorrowerEmails;
+import com.example.library.dto.ImportReport;
+import com.example.library.event.BooksRegisteredEvent;
+import com.example.library.model.Book;
+import com.example.library.model.Borrower;
+import com.example.library.repository.BookRepository;
+import com.example.library.repository.BorrowerRepository;
+import com.example.library.service.impl.BulkImportServiceImpl;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.*;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class BulkImportServiceImplTest {
+
+    // Mocked dependencies
+    @Mock
+    private BookRepository bookRepository;
+
+    @Mock
+    private BorrowerRepository borrowerRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private BorrowerEmails borrowerEmails;
+
+    @Mock
+    private EntityManager entityManager;
+
+    // Real collaborators; the transaction manager behind the template is a mock
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @Spy
+    private Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+    @Spy
+    private TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+
+    @InjectMocks
+    private BulkImportServiceImpl bulkImportService;
+
+    @BeforeEach
+    void setup() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(bulkImportService, "batchSize", 2);
+        ReflectionTestUtils.setField(bulkImportService, "maxReportedErrors", 10);
+    }
+
+    /**
+     * Test case for a CSV import with one invalid row
+     */
+    @Test
+    void testImportBooksCsv() {
+        String csv = """
+                isbn,title,author
+                111,Clean Code,Robert C. Martin
+                222,,Nobody
+                333,Refactoring,Martin Fowler
+                444,Domain-Driven Design,Eric Evans
+                """;
+
+        ImportReport report = bulkImportService.importBooks(stream(csv), "text/csv");
+
+        assertEquals(3, report.getAccepted());
+        assertEquals(1, report.getRejected());
+        // The second data row has a blank title
+        assertEquals(2, report.getErrors().get(0).getRow());
+        assertTrue(report.getErrors().get(0).getMessage().contains("title"));
+        // Three valid rows with a batch size of two: one full batch and one partial batch
+        verify(bookRepository, times(2)).saveAllAndFlush(anyList());
+        // Each saved batch is announced so in-memory indexes can pick up the new books
+        verify(eventPublisher, times(2)).publishEvent(any(BooksRegisteredEvent.class));
+        // And detached in its own transaction, after its flush and before the next batch
+        InOrder inOrder = inOrder(bookRepository, entityManager);
+        inOrder.verify(bookRepository).saveAllAndFlush(anyList());
+        inOrder.verify(entityManager).clear();
+        inOrder.verify(bookRepository).saveAllAndFlush(anyList());
+        inOrder.verify(entityManager).clear();
+    }
+
+    /**
+     * Test case for a JSON array import, which must not trust ids or borrowed flags
+     */
+    @Test
+    void testImportBooksJsonIgnoresIdAndBorrowed() {
+        String json = "[{\"id\":7,\"isbn\":\"111\",\"title\":\"Clean Code\",\"author\":\"Robert C. Martin\",\"borrowed\":true}]";
+
+        List<Book> saved = new ArrayList<>();
+        // The batch list is reused, so copy its contents at the time of the call
+        when(bookRepository.saveAllAndFlush(anyList())).thenAnswer(invocation -> {
+            saved.addAll(invocation.getArgument(0));
+            return saved;
+        });
+
+        ImportReport report = bulkImportService.importBooks(stream(json), "application/json");
+
+        assertEquals(1, report.getAccepted());
+        assertNull(saved.get(0).getId());
+        assertFalse(saved.get(0).isBorrowed());
+    }
+
+    /**
+     * Test case for a batch rejected by the database, e.g. a duplicate email
+     */
+    @Test
+    void testImportBorrowersFallsBackToRowByRow() {
+        String ndjson = """
+                {"name":"Alice","email":"alice@example.com"}
+                {"name":"Bob","email":"taken@example.com"}
+                """;
+        when(borrowerRepository.saveAllAndFlush(anyList()))
+                .thenThrow(new DataIntegrityViolationException("duplicate key"));
+        when(borrowerRepository.saveAndFlush(argThat((Borrower b) -> "taken@example.com".equals(b.getEmail()))))
+                .thenThrow(new DataIntegrityViolationException("duplicate key"));
+
+        ImportReport report = bulkImportService.importBorrowers(stream(ndjson), "application/x-ndjson");
+
+        assertEquals(1, report.getAccepted());
+        assertEquals(1, report.getRejected());
+        assertEquals(2, report.getErrors().get(0).getRow());
+        // The database message is not passed on to the client
+        assertEquals("Row conflicts with existing data", report.getErrors().get(0).getMessage());
+        verify(entityManager).clear();
+    }
+
+    /**
+     * Test case for rejecting registered and repeated emails before the batch reaches the database
+     */
+    @Test
+    void testImportBorrowersRejectsDuplicateEmailsUpFront() {
+        String ndjson = """
+                {"name":"Alice","email":"alice@example.com"}
+                {"name":"Bob","email":"taken@example.com"}
+                {"name":"Alice again","email":"alice@example.com"}
+                """;
+        ReflectionTestUtils.setField(bulkImportService, "batchSize", 3);
+        when(borrowerEmails.findRegistered(anyList())).thenReturn(Set.of("taken@example.com"));
+        List<String> saved = new ArrayList<>();
+        when(borrowerRepository.saveAllAndFlush(anyList())).thenAnswer(invocation -> {
+            List<Borrower> batch = invocation.getArgument(0);
+            batch.forEach(borrower -> saved.add(borrower.getEmail()));
+            return batch;
+        });
+
+        ImportReport report = bulkImportService.importBorrowers(stream(ndjson), "application/x-ndjson");
+
+        assertEquals(1, report.getAccepted());
+        assertEquals(2, report.getRejected());
+        assertEquals(List.of(2L, 3L), report.getErrors().stream().map(ImportReport.RowError::getRow).toList());
+        // Only the new email is inserted, in one batch, and it joins the filter
+        assertEquals(List.of("alice@example.com"), saved);
+        verify(borrowerRepository, never()).saveAndFlush(any());
+        verify(borrowerEmails).addAll(List.of("alice@example.com"));
+    }
+
+    private static InputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
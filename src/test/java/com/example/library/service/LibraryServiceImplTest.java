@@ -1,19 +1,55 @@
 package com.example.library.service;
 
+import com.example.library.availability.AvailabilityCounters;
+import com.example.library.config.CacheConfig;
+import com.example.library.dedup.BorrowerEmails;
+import com.example.library.dto.BatchLoanResult;
+import com.example.library.dto.BookChanges;
+import com.example.library.dto.BookPage;
+import com.example.library.dto.BookSearchPage;
+import com.example.library.dto.HoldStatus;
+import com.example.library.dto.LoanStatus;
+import com.example.library.dto.LoanSummary;
+import com.example.library.event.BooksRegisteredEvent;
+import com.example.library.event.HoldClosedEvent;
+import com.example.library.event.LoansChangedEvent;
 import com.example.library.exception.BookAlreadyBorrowedException;
+import com.example.library.exception.DuplicateResourceException;
+import com.example.library.exception.ResourceNotFoundException;
+import com.example.library.hold.HoldQueues;
 import com.example.library.model.Book;
 import com.example.library.model.Borrower;
+import com.example.library.model.BookCirculation;
 import com.example.library.model.BorrowingRecord;
+import com.example.library.model.Hold;
+import com.example.library.model.LoanEvent;
+import com.example.library.outbox.LoanEventOutbox;
+import com.example.library.repository.BookCirculationRepository;
 import com.example.library.repository.BookRepository;
+import com.example.library.repository.BorrowerActivityRepository;
 import com.example.library.repository.BorrowerRepository;
 import com.example.library.repository.BorrowingRecordRepository;
+import com.example.library.repository.HoldRepository;
+import com.example.library.search.BookSearchIndex;
 import com.example.library.service.impl.LibraryServiceImpl;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.Period;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -30,6 +66,38 @@ public class LibraryServiceImplTest {
     @Mock
     private BorrowingRecordRepository borrowingRecordRepository;
 
+    @Mock
+    private BookSearchIndex bookSearchIndex;
+
+    @Mock
+    private AvailabilityCounters availabilityCounters;
+
+    @Mock
+    private LoanEventOutbox loanEventOutbox;
+
+    @Mock
+    private BookCirculationRepository bookCirculationRepository;
+
+    @Mock
+    private BorrowerActivityRepository borrowerActivityRepository;
+
+    @Mock
+    private HoldRepository holdRepository;
+
+    @Mock
+    private BorrowerEmails borrowerEmails;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    // Real hold queues; they only touch the database when warmed on startup
+    @Spy
+    private HoldQueues holdQueues = new HoldQueues();
+
+    // Simple in-memory stand-in for the catalogue cache
+    @Spy
+    private CacheManager cacheManager = new ConcurrentMapCacheManager(CacheConfig.BOOKS);
+
     // The service class with mocked dependencies injected
     @InjectMocks
     private LibraryServiceImpl libraryService;
@@ -38,6 +106,8 @@ public class LibraryServiceImplTest {
     @BeforeEach
     void setup() {
         MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(libraryService, "loanPeriod", Period.ofDays(14));
+        ReflectionTestUtils.setField(libraryService, "syncLag", Duration.ofSeconds(5));
     }
 
     /**
@@ -56,23 +126,159 @@ public class LibraryServiceImplTest {
         assertEquals("Test 1", saved.getTitle());
         // Verify that save was called once
         verify(bookRepository).save(book);
+        // Verify that the new book is announced to the search index
+        verify(eventPublisher).publishEvent(any(BooksRegisteredEvent.class));
+    }
+
+    /**
+     * Test case for registering a borrower with a new email
+     */
+    @Test
+    void testRegisterBorrower() {
+        Borrower borrower = new Borrower(null, "Alice", "alice@example.com");
+        when(borrowerRepository.save(borrower)).thenReturn(borrower);
+
+        assertSame(borrower, libraryService.registerBorrower(borrower));
+        // The email joins the filter, so a second registration with it is looked up
+        verify(borrowerEmails).addAll(List.of("alice@example.com"));
+    }
+
+    /**
+     * Test case for rejecting a borrower whose email is already registered, without inserting anything
+     */
+    @Test
+    void testRegisterBorrowerDuplicateEmail() {
+        when(borrowerEmails.findRegistered(List.of("alice@example.com"))).thenReturn(Set.of("alice@example.com"));
+
+        assertThrows(DuplicateResourceException.class,
+                () -> libraryService.registerBorrower(new Borrower(null, "Alice", "alice@example.com")));
+        verify(borrowerRepository, never()).save(any());
+    }
+
+    /**
+     * Test case for a duplicate email the filter did not know about, caught by the unique index
+     */
+    @Test
+    void testRegisterBorrowerDuplicateEmailFromDatabase() {
+        when(borrowerRepository.save(any())).thenThrow(new DataIntegrityViolationException("duplicate key"));
+
+        assertThrows(DuplicateResourceException.class,
+                () -> libraryService.registerBorrower(new Borrower(null, "Alice", "alice@example.com")));
+    }
+
+    /**
+     * Test case for retrieving the first page of books
+     */
+    @Test
+    void testGetBooksFirstPage() {
+        Book first = new Book();
+        first.setId(1L);
+        Book second = new Book();
+        second.setId(2L);
+
+        // A full page means there may be more books after the last ID
+        when(bookRepository.findIdsAfter(0L, Limit.of(2))).thenReturn(List.of(1L, 2L));
+        when(bookRepository.findAllById(List.of(1L, 2L))).thenReturn(List.of(second, first));
+
+        BookPage page = libraryService.getBooks(null, 2);
+
+        // Books come back in ID order whatever order the database returned them in
+        assertEquals(List.of(first, second), page.getItems());
+        assertNotNull(page.getNextCursor());
+        // The next page seeks past the last ID of this one
+        assertEquals(2L, LibraryServiceImpl.decodeCursor(page.getNextCursor()));
+    }
+
+    /**
+     * Test case for retrieving the last page of books
+     */
+    @Test
+    void testGetBooksLastPage() {
+        Book book = new Book();
+        book.setId(3L);
+
+        when(bookRepository.findIdsAfter(2L, Limit.of(2))).thenReturn(List.of(3L));
+        when(bookRepository.findAllById(List.of(3L))).thenReturn(List.of(book));
+
+        BookPage page = libraryService.getBooks(LibraryServiceImpl.encodeCursor(2L), 2);
+
+        assertEquals(1, page.getItems().size());
+        assertNull(page.getNextCursor());
+    }
+
+    /**
+     * Test case for a page served from the catalogue cache
+     */
+    @Test
+    void testGetBooksUsesCache() {
+        Book cached = new Book();
+        cached.setId(1L);
+        Book uncached = new Book();
+        uncached.setId(2L);
+        cacheManager.getCache(CacheConfig.BOOKS).put(1L, cached);
+
+        when(bookRepository.findIdsAfter(0L, Limit.of(10))).thenReturn(List.of(1L, 2L));
+        when(bookRepository.findAllById(List.of(2L))).thenReturn(List.of(uncached));
+
+        BookPage page = libraryService.getBooks(null, 10);
+
+        assertEquals(List.of(cached, uncached), page.getItems());
+        // Only the miss is loaded, and it is cached for the next reader
+        verify(bookRepository).findAllById(List.of(2L));
+        assertSame(uncached, cacheManager.getCache(CacheConfig.BOOKS).get(2L, Book.class));
+    }
+
+    /**
+     * Test case for searching books
+     */
+    @Test
+    void testSearchBooks() {
+        Book book = new Book();
+        book.setId(5L);
+
+        when(bookSearchIndex.search("clean", 20, 10)).thenReturn(new BookSearchIndex.Hits(List.of(5L), 21, false));
+        when(bookRepository.findAllById(List.of(5L))).thenReturn(List.of(book));
+
+        BookSearchPage page = libraryService.searchBooks("clean", 2, 10);
+
+        assertEquals(List.of(book), page.getItems());
+        assertEquals(21, page.getTotal());
     }
 
     /**
-     * Test case for retrieving all books
+     * Test case for a malformed cursor
      */
     @Test
-    void testGetAllBooks() {
-        // Create a list of two books
-        List<Book> books = List.of(new Book(), new Book());
+    void testGetBooksInvalidCursor() {
+        assertThrows(IllegalArgumentException.class,
+                () -> libraryService.getBooks("not-a-cursor", 10));
+    }
+
+    /**
+     * Test case for retrieving a borrower's active loans within a date range
+     */
+    @Test
+    void testGetActiveLoans() {
+        LocalDate from = LocalDate.of(2024, 1, 1);
+        LocalDate to = LocalDate.of(2024, 12, 31);
+        LoanSummary loan = new LoanSummary(7L, 5L, "978-0132350884", "Clean Code", LocalDate.of(2024, 3, 1), null);
+
+        when(borrowerRepository.existsById(1L)).thenReturn(true);
+        when(borrowingRecordRepository.findActiveLoans(1L, from, to, PageRequest.of(0, 20))).thenReturn(List.of(loan));
 
-        // Mock findAll to return this list
-        when(bookRepository.findAll()).thenReturn(books);
+        assertEquals(List.of(loan), libraryService.getLoans(1L, LoanStatus.ACTIVE, from, to, 0, 20));
+        verify(borrowingRecordRepository, never()).findLoans(any(), any(), any(), any());
+    }
 
-        List<Book> result = libraryService.getAllBooks();
+    /**
+     * Test case for retrieving the loans of a borrower that does not exist
+     */
+    @Test
+    void testGetLoansBorrowerNotFound() {
+        when(borrowerRepository.existsById(1L)).thenReturn(false);
 
-        // Assert that the result has size 2
-        assertEquals(2, result.size());
+        assertThrows(ResourceNotFoundException.class,
+                () -> libraryService.getLoans(1L, LoanStatus.ALL, null, null, 0, 20));
     }
 
     /**
@@ -82,21 +288,58 @@ public class LibraryServiceImplTest {
     void testBorrowBookSuccess() {
         Book book = new Book();
         book.setId(1L);
+        book.setIsbn("978-0132350884");
         book.setBorrowed(false); // Book is available
 
         Borrower borrower = new Borrower();
         borrower.setId(1L);
 
         // Mock repository methods
-        when(bookRepository.findById(1L)).thenReturn(Optional.of(book));
         when(borrowerRepository.findById(1L)).thenReturn(Optional.of(borrower));
-        when(bookRepository.save(book)).thenReturn(book);
+        when(bookRepository.markBorrowedIfAvailable(1L)).thenReturn(1); // The conditional update claims the book
+        when(bookRepository.getReferenceById(1L)).thenReturn(book);
         when(borrowingRecordRepository.save(any())).thenReturn(new BorrowingRecord());
 
         String result = libraryService.borrowBook(1L, 1L);
 
         // Assert expected success message
         assertEquals("Book borrowed successfully.", result);
+        // The book is never read and written back, which would lose concurrent updates
+        verify(bookRepository, never()).save(any());
+        // The loan is due one loan period after borrowing
+        ArgumentCaptor<BorrowingRecord> saved = ArgumentCaptor.forClass(BorrowingRecord.class);
+        verify(borrowingRecordRepository).save(saved.capture());
+        assertEquals(LocalDate.now().plusDays(14), saved.getValue().getDueDate());
+    }
+
+    /**
+     * Test case for a successful borrow moving one copy of its ISBN to on-loan
+     */
+    @Test
+    void testBorrowBookPublishesLoansChanged() {
+        Book book = new Book(1L, "978-0132350884", "Clean Code", "Robert C. Martin", false, null);
+        cacheManager.getCache(CacheConfig.BOOKS).put(1L, book);
+
+        when(borrowerRepository.findById(1L)).thenReturn(Optional.of(new Borrower()));
+        when(bookRepository.markBorrowedIfAvailable(1L)).thenReturn(1);
+        when(bookRepository.getReferenceById(1L)).thenReturn(book);
+
+        libraryService.borrowBook(1L, 1L);
+
+        // The ISBN comes from the catalogue cache, not another query
+        verify(eventPublisher).publishEvent(new LoansChangedEvent(List.of("978-0132350884"), true));
+        verify(bookRepository, never()).findAllById(any());
+    }
+
+    /**
+     * Test case for the availability of an ISBN the library does not own
+     */
+    @Test
+    void testGetAvailabilityUnknownIsbn() {
+        when(availabilityCounters.get("978-0000000000")).thenReturn(Optional.empty());
+
+        assertThrows(ResourceNotFoundException.class,
+                () -> libraryService.getAvailability("978-0000000000"));
     }
 
     /**
@@ -112,12 +355,30 @@ public class LibraryServiceImplTest {
         borrower.setId(1L);
 
         // Mock repository methods
-        when(bookRepository.findById(1L)).thenReturn(Optional.of(book));
         when(borrowerRepository.findById(1L)).thenReturn(Optional.of(borrower));
+        when(bookRepository.markBorrowedIfAvailable(1L)).thenReturn(0); // Nothing updated: already borrowed
+        when(bookRepository.existsById(1L)).thenReturn(true);
 
         // Expect an exception to be thrown
         assertThrows(BookAlreadyBorrowedException.class,
                 () -> libraryService.borrowBook(1L, 1L));
+        verify(borrowingRecordRepository, never()).save(any());
+    }
+
+    /**
+     * Test case for borrowing a book that does not exist
+     */
+    @Test
+    void testBorrowBookNotFound() {
+        Borrower borrower = new Borrower();
+        borrower.setId(1L);
+
+        when(borrowerRepository.findById(1L)).thenReturn(Optional.of(borrower));
+        when(bookRepository.markBorrowedIfAvailable(1L)).thenReturn(0);
+        when(bookRepository.existsById(1L)).thenReturn(false);
+
+        assertThrows(ResourceNotFoundException.class,
+                () -> libraryService.borrowBook(1L, 1L));
     }
 
     /**
@@ -129,19 +390,306 @@ public class LibraryServiceImplTest {
         book.setId(1L);
         book.setBorrowed(true); // Book is borrowed
 
+        Borrower borrower = new Borrower();
+        borrower.setId(1L);
+
         BorrowingRecord record = new BorrowingRecord();
+        record.setId(7L);
+        record.setBorrower(borrower);
         record.setBook(book);
         record.setReturnDate(null); // Not yet returned
 
         // Mock repository methods
-        when(bookRepository.findById(1L)).thenReturn(Optional.of(book));
-        when(bookRepository.save(book)).thenReturn(book);
-        when(borrowingRecordRepository.findAll()).thenReturn(List.of(record));
+        when(bookRepository.markReturnedIfBorrowed(1L)).thenReturn(1);
+        when(borrowingRecordRepository.findActiveByBookId(1L)).thenReturn(Optional.of(record));
         when(borrowingRecordRepository.save(record)).thenReturn(record);
 
         String result = libraryService.returnBook(1L, 1L);
 
         // Assert expected success message
         assertEquals("Book returned successfully.", result);
+        // The open loan is looked up by book, never by scanning every record
+        verify(borrowingRecordRepository, never()).findAll();
+        // The return is appended to the loan event log
+        verify(loanEventOutbox).append(argThat((LoanEvent event) -> event.getType() == LoanEvent.Type.RETURNED
+                && event.getLoanId() == 7L && event.getBookId() == 1L && event.getBorrowerId() == 1L));
+    }
+
+    /**
+     * Test case for the circulation of a book that has never been borrowed
+     */
+    @Test
+    void testGetCirculationNeverBorrowed() {
+        when(bookCirculationRepository.findById(1L)).thenReturn(Optional.empty());
+        when(bookRepository.existsById(1L)).thenReturn(true);
+
+        BookCirculation circulation = libraryService.getCirculation(1L);
+
+        assertFalse(circulation.isOnLoan());
+        assertEquals(0, circulation.getTimesBorrowed());
+    }
+
+    /**
+     * Test case for returning a book that is not borrowed
+     */
+    @Test
+    void testReturnBookNotBorrowed() {
+        when(bookRepository.markReturnedIfBorrowed(1L)).thenReturn(0);
+        when(bookRepository.existsById(1L)).thenReturn(true);
+
+        assertThrows(IllegalStateException.class,
+                () -> libraryService.returnBook(1L, 1L));
+    }
+
+    /**
+     * Test case for returning a book that has no open borrowing record
+     */
+    @Test
+    void testReturnBookWithoutActiveRecord() {
+        when(bookRepository.markReturnedIfBorrowed(1L)).thenReturn(1);
+        when(borrowingRecordRepository.findActiveByBookId(1L)).thenReturn(Optional.empty());
+
+        assertThrows(IllegalStateException.class,
+                () -> libraryService.returnBook(1L, 1L));
+    }
+
+    /**
+     * Test case for an uncached book, whose ISBN is read without caching the book mid-transaction
+     */
+    @Test
+    void testBorrowBookResolvesIsbnWithoutCaching() {
+        when(borrowerRepository.findById(1L)).thenReturn(Optional.of(new Borrower()));
+        when(bookRepository.markBorrowedIfAvailable(2L)).thenReturn(1);
+        when(bookRepository.getReferenceById(2L)).thenReturn(new Book(2L, null, null, null, true, null));
+        when(bookRepository.findIsbnsByIds(List.of(2L))).thenReturn(List.of("978-0201485677"));
+
+        libraryService.borrowBook(1L, 2L);
+
+        verify(eventPublisher).publishEvent(new LoansChangedEvent(List.of("978-0201485677"), true));
+        // The borrowed flag read inside the transaction is not committed yet
+        assertNull(cacheManager.getCache(CacheConfig.BOOKS).get(2L));
+    }
+
+    /**
+     * Test case for borrowing a batch of books where some cannot be borrowed
+     */
+    @Test
+    void testBorrowBooksReportsEachBook() {
+        Borrower borrower = new Borrower();
+        borrower.setId(1L);
+        Book cached = new Book(10L, "978-0132350884", "Clean Code", "Robert C. Martin", false, null);
+        cacheManager.getCache(CacheConfig.BOOKS).put(10L, cached);
+
+        when(borrowerRepository.findById(1L)).thenReturn(Optional.of(borrower));
+        // Duplicates are claimed once
+        when(bookRepository.markAllBorrowedIfAvailable(List.of(10L, 11L, 12L))).thenReturn(new int[]{1, 0, 0});
+        when(bookRepository.getReferenceById(10L)).thenReturn(cached);
+        when(bookRepository.findExistingIds(Set.of(11L, 12L))).thenReturn(List.of(11L));
+
+        BatchLoanResult result = libraryService.borrowBooks(1L, List.of(10L, 11L, 10L, 12L));
+
+        assertEquals(1, result.getSucceeded());
+        assertEquals(2, result.getFailed());
+        assertEquals(List.of(BatchLoanResult.Outcome.BORROWED, BatchLoanResult.Outcome.ALREADY_BORROWED,
+                        BatchLoanResult.Outcome.NOT_FOUND),
+                result.getItems().stream().map(BatchLoanResult.Item::getOutcome).toList());
+        // All loans are saved together so Hibernate can batch the inserts
+        verify(borrowingRecordRepository).saveAll(argThat(records ->
+                ((List<BorrowingRecord>) records).size() == 1));
+        assertNull(cacheManager.getCache(CacheConfig.BOOKS).get(10L));
+    }
+
+    /**
+     * Test case for a batch larger than allowed
+     */
+    @Test
+    void testBorrowBooksTooMany() {
+        List<Long> ids = java.util.stream.LongStream.rangeClosed(1, 101).boxed().toList();
+
+        assertThrows(IllegalArgumentException.class, () -> libraryService.borrowBooks(1L, ids));
+        verify(bookRepository, never()).markAllBorrowedIfAvailable(any());
+    }
+
+    /**
+     * Test case for returning a batch of books where one is not borrowed
+     */
+    @Test
+    void testReturnBooksReportsEachBook() {
+        Book book = new Book(10L, "978-0132350884", "Clean Code", "Robert C. Martin", true, null);
+        BorrowingRecord record = new BorrowingRecord(5L, new Borrower(), book, LocalDate.now().minusDays(3), LocalDate.now().plusDays(11), null);
+
+        when(bookRepository.markAllReturnedIfBorrowed(List.of(10L, 11L))).thenReturn(new int[]{1, 0});
+        when(borrowingRecordRepository.findActiveByBookIds(List.of(10L))).thenReturn(List.of(record));
+        when(bookRepository.findExistingIds(Set.of(11L))).thenReturn(List.of(11L));
+
+        BatchLoanResult result = libraryService.returnBooks(1L, List.of(10L, 11L));
+
+        assertEquals(LocalDate.now(), record.getReturnDate());
+        assertEquals(List.of(BatchLoanResult.Outcome.RETURNED, BatchLoanResult.Outcome.NOT_BORROWED),
+                result.getItems().stream().map(BatchLoanResult.Item::getOutcome).toList());
+    }
+
+    /**
+     * Test case for returning a held book, which lends it to the oldest waiting hold
+     */
+    @Test
+    void testReturnBookHandsOffToHold() {
+        BorrowingRecord record = new BorrowingRecord(7L, new Borrower(1L, "Returner", "r@example.com"),
+                new Book(1L, "978-0132350884", "Clean Code", "Robert C. Martin", true, null), LocalDate.now().minusDays(3), LocalDate.now().plusDays(11), null);
+        // The holds are only in the database, e.g. placed on another node
+        when(holdRepository.findWaitingForBook(eq(1L), eq(0L), any())).thenReturn(List.of(waitingHold(20L, record.getBook(), 2L)));
+
+        when(bookRepository.markReturnedIfBorrowed(1L)).thenReturn(1);
+        when(borrowingRecordRepository.findActiveByBookId(1L)).thenReturn(Optional.of(record));
+        when(holdRepository.closeIfWaiting(eq(20L), eq(Hold.Status.FULFILLED), any())).thenReturn(1);
+        when(bookRepository.markBorrowedIfAvailable(1L)).thenReturn(1);
+        when(bookRepository.getReferenceById(1L)).thenReturn(record.getBook());
+
+        String result = libraryService.returnBook(1L, 1L);
+
+        assertEquals("Book returned successfully and lent to the next borrower on hold.", result);
+        // The book is claimed again for the holder and a loan is opened in their name
+        verify(bookRepository).markBorrowedIfAvailable(1L);
+        verify(borrowingRecordRepository).save(argThat(loan -> loan.getBorrower().getId() == 2L && loan.getReturnDate() == null));
+        verify(loanEventOutbox).append(argThat((LoanEvent event) -> event.getType() == LoanEvent.Type.BORROWED && event.getBorrowerId() == 2L));
+        // Only the first hold is served
+        verify(holdRepository, never()).closeIfWaiting(eq(21L), any(), any());
+        verify(eventPublisher).publishEvent(new HoldClosedEvent(1L, 20L));
+    }
+
+    /**
+     * Test case for a held book that cannot be claimed for the holder, which fails the return
+     * rather than open a loan on a book that is already lent
+     */
+    @Test
+    void testReturnBookFailsIfHandOffCannotClaimBook() {
+        BorrowingRecord record = new BorrowingRecord(7L, new Borrower(1L, "Returner", "r@example.com"),
+                new Book(1L, "978-0132350884", "Clean Code", "Robert C. Martin", true, null), LocalDate.now().minusDays(3), LocalDate.now().plusDays(11), null);
+        when(holdRepository.findWaitingForBook(eq(1L), eq(0L), any())).thenReturn(List.of(waitingHold(20L, record.getBook(), 2L)));
+
+        when(bookRepository.markReturnedIfBorrowed(1L)).thenReturn(1);
+        when(borrowingRecordRepository.findActiveByBookId(1L)).thenReturn(Optional.of(record));
+        when(holdRepository.closeIfWaiting(eq(20L), eq(Hold.Status.FULFILLED), any())).thenReturn(1);
+        when(bookRepository.markBorrowedIfAvailable(1L)).thenReturn(0);
+
+        assertThrows(BookAlreadyBorrowedException.class, () -> libraryService.returnBook(1L, 1L));
+        verify(borrowingRecordRepository, never()).save(argThat(loan -> loan.getReturnDate() == null));
+    }
+
+    /**
+     * Test case for skipping a hold that was cancelled after it was queued
+     */
+    @Test
+    void testReturnBookSkipsClosedHold() {
+        BorrowingRecord record = new BorrowingRecord(7L, new Borrower(1L, "Returner", "r@example.com"),
+                new Book(1L, "978-0132350884", "Clean Code", "Robert C. Martin", true, null), LocalDate.now().minusDays(3), LocalDate.now().plusDays(11), null);
+        when(holdRepository.findWaitingForBook(eq(1L), eq(0L), any())).thenReturn(List.of(waitingHold(20L, record.getBook(), 2L)));
+        when(holdRepository.findWaitingForBook(eq(1L), eq(20L), any())).thenReturn(List.of(waitingHold(21L, record.getBook(), 3L)));
+
+        when(bookRepository.markReturnedIfBorrowed(1L)).thenReturn(1);
+        when(borrowingRecordRepository.findActiveByBookId(1L)).thenReturn(Optional.of(record));
+        when(holdRepository.closeIfWaiting(eq(20L), eq(Hold.Status.FULFILLED), any())).thenReturn(0);
+        when(holdRepository.closeIfWaiting(eq(21L), eq(Hold.Status.FULFILLED), any())).thenReturn(1);
+        when(bookRepository.markBorrowedIfAvailable(1L)).thenReturn(1);
+        when(bookRepository.getReferenceById(1L)).thenReturn(record.getBook());
+
+        libraryService.returnBook(1L, 1L);
+
+        verify(borrowingRecordRepository).save(argThat(loan -> loan.getBorrower().getId() == 3L));
+        // The skipped hold's closing was announced by whoever closed it
+        verify(eventPublisher, never()).publishEvent(new HoldClosedEvent(1L, 20L));
+        verify(eventPublisher).publishEvent(new HoldClosedEvent(1L, 21L));
+    }
+
+    /**
+     * Test case for placing a hold on a borrowed book
+     */
+    @Test
+    void testPlaceHold() {
+        Borrower borrower = new Borrower(2L, "Holder", "h@example.com");
+        when(borrowerRepository.findById(2L)).thenReturn(Optional.of(borrower));
+        when(bookRepository.lockIfBorrowed(1L)).thenReturn(1);
+        when(borrowingRecordRepository.findActiveByBookId(1L)).thenReturn(Optional.of(
+                new BorrowingRecord(7L, new Borrower(1L, "Returner", "r@example.com"), new Book(), LocalDate.now(), LocalDate.now(), null)));
+        when(holdRepository.save(any(Hold.class))).thenAnswer(invocation -> {
+            Hold hold = invocation.getArgument(0);
+            hold.setId(30L);
+            return hold;
+        });
+        holdQueues.add(1L, 20L, 3L);
+
+        HoldStatus status = libraryService.placeHold(2L, 1L);
+
+        assertEquals(30L, status.getHoldId());
+        assertEquals(2, status.getPosition());
+        assertEquals(2, status.getQueueLength());
+        verify(holdRepository).existsWaiting(1L, 2L);
+    }
+
+    /**
+     * Test case for placing a hold on a book that is available
+     */
+    @Test
+    void testPlaceHoldOnAvailableBook() {
+        when(borrowerRepository.findById(2L)).thenReturn(Optional.of(new Borrower()));
+        when(bookRepository.lockIfBorrowed(1L)).thenReturn(0);
+        when(bookRepository.existsById(1L)).thenReturn(true);
+
+        assertThrows(IllegalStateException.class, () -> libraryService.placeHold(2L, 1L));
+        verify(holdRepository, never()).save(any());
+    }
+
+    /**
+     * Test case for cancelling a hold that was already fulfilled
+     */
+    @Test
+    void testCancelClosedHold() {
+        Hold hold = new Hold(20L, new Book(), new Borrower(), Hold.Status.FULFILLED, null, null);
+        when(holdRepository.findById(20L)).thenReturn(Optional.of(hold));
+        when(holdRepository.closeIfWaiting(eq(20L), eq(Hold.Status.CANCELLED), any())).thenReturn(0);
+
+        assertThrows(IllegalStateException.class, () -> libraryService.cancelHold(20L));
+    }
+
+    /**
+     * Test case for delta sync continuing after the last changed book, up to the sync lag
+     */
+    @Test
+    void testGetBookChanges() {
+        Instant changed = Instant.parse("2026-01-01T10:00:00Z");
+        Book first = new Book(3L, "978-0132350884", "Clean Code", "Robert C. Martin", true, changed);
+        Book second = new Book(1L, "978-0201485677", "Refactoring", "Martin Fowler", false, changed.plusSeconds(1));
+        when(bookRepository.findChangedAfter(eq(Instant.EPOCH), eq(0L), any(), eq(Limit.of(2))))
+                .thenReturn(List.of(first, second));
+
+        Instant before = Instant.now();
+        BookChanges changes = libraryService.getBookChanges(null, 2);
+
+        assertEquals(List.of(first, second), changes.getItems());
+        assertFalse(changes.isComplete());
+        assertEquals(new LibraryServiceImpl.SyncPosition(changed.plusSeconds(1), 1L),
+                LibraryServiceImpl.decodeSyncToken(changes.getNext()));
+        // Changes younger than the sync lag are left for the next call
+        verify(bookRepository).findChangedAfter(any(), any(), argThat(horizon -> !horizon.isAfter(before.minusSeconds(4))), any());
+    }
+
+    /**
+     * Test case for a sync with nothing new, which hands back the same token
+     */
+    @Test
+    void testGetBookChangesNothingNew() {
+        String token = LibraryServiceImpl.encodeSyncToken(new LibraryServiceImpl.SyncPosition(Instant.parse("2026-01-01T10:00:00Z"), 7L));
+        when(bookRepository.findChangedAfter(any(), any(), any(), any())).thenReturn(List.of());
+
+        BookChanges changes = libraryService.getBookChanges(token, 100);
+
+        assertTrue(changes.getItems().isEmpty());
+        assertTrue(changes.isComplete());
+        assertEquals(token, changes.getNext());
+        assertThrows(IllegalArgumentException.class, () -> libraryService.getBookChanges("bogus", 100));
+    }
+
+    private static Hold waitingHold(Long id, Book book, Long borrowerId) {
+        return new Hold(id, book, new Borrower(borrowerId, "Holder", "h@example.com"), Hold.Status.WAITING, Instant.now(), null);
     }
-}
\ No newline at end of file
+}
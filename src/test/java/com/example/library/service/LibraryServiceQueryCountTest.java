@@ -0,0 +1,195 @@
+package com.example.library.service;
+
+import com.example.library.dto.LoanStatus;
+import com.example.library.model.Book;
+import com.example.library.model.Borrower;
+import com.example.library.model.Hold;
+import com.example.library.repository.BookRepository;
+import com.example.library.repository.BorrowerRepository;
+import com.example.library.repository.BorrowingRecordRepository;
+import com.example.library.repository.HoldRepository;
+import com.example.library.repository.LoanEventRepository;
+import com.example.library.repository.OutboxEntryRepository;
+import com.example.library.support.SqlStatementCountConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.example.library.support.SqlStatementCounter.assertStatements;
+import static com.example.library.support.SqlStatementCounter.reset;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pins the number of SQL statements each LibraryService operation sends, so an N+1 or an extra round trip
+ * fails the build. Caches are warmed first unless the test says otherwise, as they would be in steady state.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(SqlStatementCountConfig.class)
+public class LibraryServiceQueryCountTest {
+
+    @Autowired
+    private LibraryService libraryService;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private BorrowerRepository borrowerRepository;
+    @Autowired
+    private BorrowingRecordRepository borrowingRecordRepository;
+    @Autowired
+    private LoanEventRepository loanEventRepository;
+    @Autowired
+    private HoldRepository holdRepository;
+    @Autowired
+    private OutboxEntryRepository outboxEntryRepository;
+
+    private Long borrowerId;
+    private final List<Long> bookIds = new ArrayList<>();
+
+    @BeforeEach
+    void setup() {
+        borrowerId = borrowerRepository.save(new Borrower(null, "Patron", "patron@example.com")).getId();
+        for (int i = 0; i < 5; i++) {
+            bookIds.add(bookRepository.save(new Book(null, "978000000000" + i, "Book " + i, "Author", false, null)).getId());
+        }
+        warmCaches();
+    }
+
+    @AfterEach
+    void cleanup() {
+        // In bulk: the outbox consumers running in the background delete entries too
+        outboxEntryRepository.deleteAllInBatch();
+        loanEventRepository.deleteAll();
+        holdRepository.deleteAll();
+        borrowingRecordRepository.deleteAll();
+        bookRepository.deleteAll();
+        borrowerRepository.deleteAll();
+    }
+
+    /**
+     * Placing a hold locks the borrowed book, checks for an existing hold and who has the book, and
+     * inserts the hold
+     */
+    @Test
+    void testPlaceHold() {
+        Long holderId = borrowerRepository.save(new Borrower(null, "Holder", "holder@example.com")).getId();
+        libraryService.borrowBook(borrowerId, bookIds.get(0));
+        borrowerRepository.findById(holderId);
+
+        reset();
+        libraryService.placeHold(holderId, bookIds.get(0));
+        assertStatements(2, 1, 1, 0);
+    }
+
+    /**
+     * Returning a held book lends it to the oldest hold in the database in the same transaction
+     */
+    @Test
+    void testReturnBookToHold() {
+        Long holderId = borrowerRepository.save(new Borrower(null, "Holder", "holder@example.com")).getId();
+        libraryService.borrowBook(borrowerId, bookIds.get(0));
+        Long holdId = libraryService.placeHold(holderId, bookIds.get(0)).getHoldId();
+        warmCaches();
+
+        reset();
+        assertEquals("Book returned successfully and lent to the next borrower on hold.",
+                libraryService.returnBook(borrowerId, bookIds.get(0)));
+        assertStatements(2, 3, 4, 0);
+
+        assertEquals(Hold.Status.FULFILLED, libraryService.getHold(holdId).getStatus());
+        assertEquals(1, libraryService.getLoans(holderId, LoanStatus.ACTIVE, null, null, 0, 50).size());
+        assertTrue(bookRepository.findById(bookIds.get(0)).orElseThrow().isBorrowed());
+    }
+
+    /**
+     * Borrowing claims the book and inserts the loan, its event and the event's outbox entries; nothing is read
+     */
+    @Test
+    void testBorrowBook() {
+        reset();
+        libraryService.borrowBook(borrowerId, bookIds.get(0));
+        assertStatements(0, 3, 1, 0);
+    }
+
+    /**
+     * Returning reads only the open loan, without its book or borrower, and the book's oldest hold
+     */
+    @Test
+    void testReturnBook() {
+        libraryService.borrowBook(borrowerId, bookIds.get(0));
+        warmCaches();
+
+        reset();
+        libraryService.returnBook(borrowerId, bookIds.get(0));
+        assertStatements(2, 2, 2, 0);
+    }
+
+    /**
+     * A batch costs the same as a single book: one batched update and one batched insert per table
+     */
+    @Test
+    void testBorrowBooks() {
+        reset();
+        libraryService.borrowBooks(borrowerId, bookIds);
+        assertStatements(0, 3, 1, 0);
+    }
+
+    /**
+     * A batch return reads all open loans and the books' oldest holds at once, and writes the loans
+     * back in one batch
+     */
+    @Test
+    void testReturnBooks() {
+        libraryService.borrowBooks(borrowerId, bookIds);
+        warmCaches();
+
+        reset();
+        libraryService.returnBooks(borrowerId, bookIds);
+        assertStatements(2, 2, 2, 0);
+    }
+
+    /**
+     * A page reads the IDs, then only the books missing from the cache, in one query
+     */
+    @Test
+    void testGetBooks() {
+        reset();
+        assertEquals(5, libraryService.getBooks(null, 50).getItems().size());
+        assertStatements(1, 0, 0, 0);
+    }
+
+    /**
+     * A delta sync is one indexed range query, whatever it returns
+     */
+    @Test
+    void testGetBookChanges() {
+        reset();
+        libraryService.getBookChanges(null, 500);
+        assertStatements(1, 0, 0, 0);
+    }
+
+    /**
+     * The loan history is an existence check and one projection query, however many loans it returns
+     */
+    @Test
+    void testGetLoans() {
+        libraryService.borrowBooks(borrowerId, bookIds);
+        libraryService.returnBooks(borrowerId, bookIds.subList(0, 2));
+
+        reset();
+        assertEquals(5, libraryService.getLoans(borrowerId, LoanStatus.ALL, null, null, 0, 50).size());
+        assertStatements(2, 0, 0, 0);
+    }
+
+    private void warmCaches() {
+        borrowerRepository.findById(borrowerId);
+        bookIds.forEach(bookRepository::findById);
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.library.support;
+
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+import javax.sql.DataSource;
+
+/**
+ * Routes every JDBC statement, from Hibernate and JdbcTemplate alike, through {@link SqlStatementCounter}.
+ * Import it in integration tests that assert statement counts; tests importing the same configuration
+ * share one application context.
+ */
+@TestConfiguration
+public class SqlStatementCountConfig {
+
+    @Bean
+    static BeanPostProcessor sqlStatementCountingDataSource() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource) {
+                    return ProxyDataSourceBuilder.create(dataSource)
+                            .name("sql-statement-count")
+                            .listener(new SqlStatementCounter())
+                            .build();
+                }
+                return bean;
+            }
+        };
+    }
+}
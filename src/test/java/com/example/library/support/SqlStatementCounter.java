@@ -0,0 +1,78 @@
+package com.example.library.support;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Counts the SQL statements the current thread sends to the database, by kind. A JDBC batch counts once,
+ * since it is one round trip. Sequence fetches are not counted: a pooled sequence is read once per 50 IDs,
+ * which would make counts depend on what ran before.
+ * <p>
+ * Usage: {@link #reset()}, run the operation, then {@link #assertStatements(int, int, int, int)}.
+ */
+public class SqlStatementCounter implements QueryExecutionListener {
+
+    private static final ThreadLocal<Counts> COUNTS = ThreadLocal.withInitial(Counts::new);
+
+    public static void reset() {
+        COUNTS.set(new Counts());
+    }
+
+    public static Counts counts() {
+        return COUNTS.get();
+    }
+
+    public static void assertStatements(int selects, int inserts, int updates, int deletes) {
+        Counts counts = COUNTS.get();
+        assertEquals(selects, counts.selects, () -> "selects: " + counts);
+        assertEquals(inserts, counts.inserts, () -> "inserts: " + counts);
+        assertEquals(updates, counts.updates, () -> "updates: " + counts);
+        assertEquals(deletes, counts.deletes, () -> "deletes: " + counts);
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        Counts counts = COUNTS.get();
+        for (QueryInfo queryInfo : queryInfoList) {
+            String sql = queryInfo.getQuery().trim().toLowerCase(Locale.ROOT);
+            if (sql.contains("next value for") || sql.contains("nextval(")) {
+                continue;
+            }
+            counts.statements.add(queryInfo.getQuery());
+            if (sql.startsWith("select") || sql.startsWith("with")) {
+                counts.selects++;
+            } else if (sql.startsWith("insert")) {
+                counts.inserts++;
+            } else if (sql.startsWith("update")) {
+                counts.updates++;
+            } else if (sql.startsWith("delete")) {
+                counts.deletes++;
+            }
+        }
+    }
+
+    public static class Counts {
+        int selects;
+        int inserts;
+        int updates;
+        int deletes;
+        final List<String> statements = new ArrayList<>();
+
+        @Override
+        public String toString() {
+            return selects + " selects, " + inserts + " inserts, " + updates + " updates, " + deletes
+                    + " deletes " + statements;
+        }
+    }
+}